@@ -0,0 +1,207 @@
+package top.yhl.springboot.monitor.threadpool;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 根据任务耗时和排队时间自动调整线程池的核心线程数
+ * <p>
+ * 每个采样周期从线程池的累计统计中取出这个周期内的平均执行耗时（短期耗时）和平均排队时间，
+ * 长期耗时是短期耗时的指数移动平均，代表线程数合适时任务本来的耗时：
+ * <ul>
+ *     <li>短期耗时明显高于长期耗时，说明增加的线程已经在争抢CPU、锁或者下游资源，减少线程</li>
+ *     <li>耗时正常但任务平均排队时间超过执行时间，说明线程不够用，增加线程</li>
+ *     <li>耗时正常也没有排队，保持不变</li>
+ * </ul>
+ * IO密集型的任务增加线程不会变慢，线程数会一直增长到不再排队；CPU密集型的任务线程数超过核数后耗时变长，
+ * 线程数停在拐点附近。通过配置或endpoint修改线程数时要调用{@link #setPoolSize(int, int)}，
+ * 修改后的核心线程数作为调整的新起点，不会在下一个周期被改回去。
+ */
+@Slf4j
+public class AdaptiveConcurrencyController {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "adaptive-concurrency");
+        t.setDaemon(true);
+        return t;
+    });
+    //长期耗时的平滑系数，约等于最近60个周期的平均
+    private static final double LONG_ALPHA = 2.0 / 61;
+
+    private final String poolName;
+    private final ThreadPoolExecutorForMonitor tpe;
+    private final AdaptiveProperties properties;
+    private final int minLimit;
+    private volatile int maxLimit;
+    private ScheduledFuture<?> task;
+
+    //以下字段在持有this锁时修改（采样周期或者setPoolSize），endpoint读取时可能看到稍旧的值
+    private volatile double limit;
+    private volatile double shortCost;
+    private volatile double longCost;
+    private volatile double queueWait;
+    private volatile double throughput;
+    private volatile boolean saturated;
+    private long lastCount;
+    private long lastCostNanos;
+    private long lastWaitCount;
+    private long lastWaitNanos;
+    private long lastSampleTime;
+
+    public AdaptiveConcurrencyController(String poolName, ThreadPoolExecutorForMonitor tpe, AdaptiveProperties properties) {
+        if (properties.getMaxCorePoolSize() > tpe.getMaximumPoolSize()) {
+            //调整时不会为了核心线程数去提高线程池的最大线程数
+            throw new IllegalArgumentException("自适应核心线程数上限" + properties.getMaxCorePoolSize()
+                    + "超过了线程池的最大线程数" + tpe.getMaximumPoolSize());
+        }
+        int maxCore = maxCore(properties, tpe.getMaximumPoolSize());
+        if (properties.getSampleIntervalMillis() <= 0 || properties.getTolerance() < 1
+                || properties.getSmoothing() <= 0 || properties.getSmoothing() > 1
+                || properties.getBackoffRatio() <= 0 || properties.getBackoffRatio() >= 1) {
+            throw new IllegalArgumentException("自适应参数不合法：" + properties);
+        }
+        this.poolName = poolName;
+        this.tpe = tpe;
+        this.properties = properties;
+        this.minLimit = properties.getMinCorePoolSize();
+        this.maxLimit = maxCore;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, tpe.getCorePoolSize()));
+    }
+
+    /**
+     * 修改线程池的核心和最大线程数，并以新的核心线程数作为调整的起点。
+     * 和采样周期互斥，正在进行的调整不会覆盖这次修改
+     */
+    public synchronized void setPoolSize(int corePoolSize, int maximumPoolSize) {
+        int newMaxLimit = maxCore(properties, maximumPoolSize);
+        tpe.setPoolSize(corePoolSize, maximumPoolSize);
+        maxLimit = newMaxLimit;
+        limit = Math.max(minLimit, Math.min(maxLimit, corePoolSize));
+    }
+
+    /**
+     * 核心线程数的上限，不超过线程池的最大线程数
+     */
+    private static int maxCore(AdaptiveProperties properties, int maximumPoolSize) {
+        int maxCore = properties.getMaxCorePoolSize() > 0
+                ? Math.min(properties.getMaxCorePoolSize(), maximumPoolSize) : maximumPoolSize;
+        if (properties.getMinCorePoolSize() <= 0 || properties.getMinCorePoolSize() > maxCore) {
+            throw new IllegalArgumentException("自适应线程数范围不合法：min=" + properties.getMinCorePoolSize() + ", max=" + maxCore);
+        }
+        return maxCore;
+    }
+
+    public synchronized void start() {
+        if (task != null) {
+            return;
+        }
+        lastCount = tpe.getCostTime().getCount();
+        lastCostNanos = tpe.getCostTime().getTotalNanos();
+        lastWaitCount = tpe.getQueueWaitTime().getCount();
+        lastWaitNanos = tpe.getQueueWaitTime().getTotalNanos();
+        lastSampleTime = System.nanoTime();
+        long interval = properties.getSampleIntervalMillis();
+        task = SCHEDULER.scheduleAtFixedRate(this::sample, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    /**
+     * 当前的状态，耗时单位毫秒
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("algorithm", properties.getAlgorithm());
+        status.put("limit", Math.round(limit * 100) / 100.0);
+        status.put("min", minLimit);
+        status.put("max", maxLimit);
+        status.put("shortCostTime", toMillis(shortCost));
+        status.put("longCostTime", toMillis(longCost));
+        status.put("queueWaitTime", toMillis(queueWait));
+        status.put("throughput", Math.round(throughput * 100) / 100.0);
+        status.put("saturated", saturated);
+        return status;
+    }
+
+    private synchronized void sample() {
+        try {
+            if (tpe.isShutdown()) {
+                stop();
+                return;
+            }
+            long now = System.nanoTime();
+            long count = tpe.getCostTime().getCount();
+            long costNanos = tpe.getCostTime().getTotalNanos();
+            long waitCount = tpe.getQueueWaitTime().getCount();
+            long waitNanos = tpe.getQueueWaitTime().getTotalNanos();
+            long completed = count - lastCount;
+            if (completed < properties.getMinSamples()) {
+                //样本太少，累积到下一个周期
+                return;
+            }
+            shortCost = (double) (costNanos - lastCostNanos) / completed;
+            queueWait = waitCount == lastWaitCount ? 0 : (double) (waitNanos - lastWaitNanos) / (waitCount - lastWaitCount);
+            throughput = completed * 1e9 / (now - lastSampleTime);
+            lastCount = count;
+            lastCostNanos = costNanos;
+            lastWaitCount = waitCount;
+            lastWaitNanos = waitNanos;
+            lastSampleTime = now;
+            //平均排队时间超过一个任务的执行时间说明线程不够，负载不高时偶尔的排队不算
+            saturated = queueWait > shortCost;
+            update();
+        } catch (Throwable e) {
+            log.error("线程池" + poolName + "自适应调整失败", e);
+        }
+    }
+
+    private void update() {
+        if (longCost == 0) {
+            longCost = shortCost;
+        } else {
+            longCost += (shortCost - longCost) * LONG_ALPHA;
+        }
+        //负载下降后任务变快，让长期耗时更快地跟上，不然会一直认为耗时正常
+        if (longCost > shortCost * 2) {
+            longCost *= 0.95;
+        }
+        double newLimit;
+        if (properties.getAlgorithm() == AdaptiveProperties.Algorithm.AIMD) {
+            if (shortCost > longCost * properties.getTolerance()) {
+                newLimit = limit * properties.getBackoffRatio();
+            } else if (saturated) {
+                newLimit = limit + 1;
+            } else {
+                newLimit = limit;
+            }
+        } else {
+            double gradient = Math.max(0.5, Math.min(1.0, properties.getTolerance() * longCost / shortCost));
+            double headroom = saturated ? Math.sqrt(limit) : 0;
+            newLimit = limit * gradient + headroom;
+            newLimit = limit * (1 - properties.getSmoothing()) + newLimit * properties.getSmoothing();
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        int core = (int) Math.round(limit);
+        if (core != tpe.getCorePoolSize()) {
+            if (log.isDebugEnabled()) {
+                log.debug("线程池" + poolName + "核心线程数" + tpe.getCorePoolSize() + " -> " + core + "，" + getStatus());
+            }
+            tpe.setPoolSize(core, tpe.getMaximumPoolSize());
+        }
+    }
+
+    private static double toMillis(double nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+}
@@ -0,0 +1,62 @@
+package top.yhl.springboot.monitor.threadpool;
+
+import lombok.Data;
+
+/**
+ * 自适应调整核心线程数的配置，默认关闭
+ */
+@Data
+public class AdaptiveProperties {
+
+    public enum Algorithm {
+        /**
+         * Gradient2风格：参照Netflix concurrency-limits的Gradient2，按长短期任务耗时之比缩放线程数。
+         * 并不等价，饱和时的余量固定为sqrt(当前线程数)，没有按队列长度计算的余量，平滑方式和梯度的上下限也不同
+         */
+        GRADIENT,
+        /**
+         * 耗时超过容忍范围时按backoffRatio乘性减少，任务排队时加1
+         */
+        AIMD
+    }
+
+    private boolean enabled = false;
+    private Algorithm algorithm = Algorithm.GRADIENT;
+    private int minCorePoolSize = 1;
+    /**
+     * 核心线程数的上限，0表示使用线程池的maxmumPoolSize。
+     * 不能大于创建时的maximumPoolSize；之后maximumPoolSize被改小时按新的maximumPoolSize封顶
+     */
+    private int maxCorePoolSize = 0;
+    private long sampleIntervalMillis = 1000;
+    /**
+     * 一个采样周期内完成的任务数少于这个值时不调整
+     */
+    private int minSamples = 10;
+    /**
+     * 短期耗时超过长期耗时的倍数，超过后认为增加线程已经让任务变慢
+     */
+    private double tolerance = 1.5;
+    /**
+     * GRADIENT每次只向计算出的新值移动这个比例，避免抖动
+     */
+    private double smoothing = 0.2;
+    /**
+     * AIMD耗时超过容忍范围时线程数乘以这个比例
+     */
+    private double backoffRatio = 0.9;
+
+    AdaptiveProperties copy() {
+        AdaptiveProperties copy = new AdaptiveProperties();
+        copy.setEnabled(enabled);
+        copy.setAlgorithm(algorithm);
+        copy.setMinCorePoolSize(minCorePoolSize);
+        copy.setMaxCorePoolSize(maxCorePoolSize);
+        copy.setSampleIntervalMillis(sampleIntervalMillis);
+        copy.setMinSamples(minSamples);
+        copy.setTolerance(tolerance);
+        copy.setSmoothing(smoothing);
+        copy.setBackoffRatio(backoffRatio);
+        return copy;
+    }
+}
@@ -0,0 +1,153 @@
+package top.yhl.springboot.monitor.threadpool;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的耗时统计，单位纳秒
+ * <p>
+ * 累计值（次数、总耗时、最小、最大）用分段的LongAdder/LongAccumulator，多个线程同时记录不会争用同一个变量；
+ * 分布用HdrHistogram的Recorder，记录是wait-free的，读取时切换到另一个直方图，不影响正在记录的线程。
+ * 滑动窗口由slices个时间片组成，每个时间片结束时把Recorder的区间直方图归入该时间片，
+ * 窗口内的分位数是最近slices个时间片的合计，覆盖最近(slices-1)/slices到1个窗口长度的数据。
+ */
+public class LatencyRecorder {
+
+    public static final long DEFAULT_WINDOW_MILLIS = 60_000;
+    public static final int DEFAULT_SLICES = 6;
+
+    private static final ScheduledExecutorService ROTATOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "latency-recorder-rotator");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator minNanos = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final Recorder recorder = new Recorder(2);
+    private final Histogram[] slices;
+    private final long windowMillis;
+    private final ScheduledFuture<?> rotateTask;
+    private Histogram interval;
+    private int current;
+
+    public LatencyRecorder() {
+        this(DEFAULT_WINDOW_MILLIS, DEFAULT_SLICES);
+    }
+
+    public LatencyRecorder(long windowMillis, int slices) {
+        if (windowMillis <= 0 || slices <= 0) {
+            throw new IllegalArgumentException("windowMillis和slices必须大于0");
+        }
+        this.windowMillis = windowMillis;
+        this.slices = new Histogram[slices];
+        for (int i = 0; i < slices; i++) {
+            this.slices[i] = new Histogram(2);
+        }
+        long sliceMillis = Math.max(1, windowMillis / slices);
+        this.rotateTask = ROTATOR.scheduleAtFixedRate(this::rotate, sliceMillis, sliceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        count.increment();
+        totalNanos.add(nanos);
+        minNanos.accumulate(nanos);
+        maxNanos.accumulate(nanos);
+        recorder.recordValue(nanos);
+    }
+
+    /**
+     * 启动以来的记录次数
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * 启动以来的最短耗时，没有记录时为0
+     */
+    public long getMinNanos() {
+        long min = minNanos.get();
+        return min == Long.MAX_VALUE ? 0 : min;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public long getAverageNanos() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / n;
+    }
+
+    /**
+     * 滑动窗口内的耗时分布，返回的是副本
+     */
+    public synchronized Histogram getWindowHistogram() {
+        drainInterval();
+        Histogram window = new Histogram(2);
+        for (Histogram slice : slices) {
+            window.add(slice);
+        }
+        return window;
+    }
+
+    /**
+     * 滑动窗口内的次数和p50/p95/p99/p999/max，耗时单位毫秒
+     */
+    public Map<String, Object> getWindowSummary() {
+        Histogram window = getWindowHistogram();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("window.seconds", windowMillis / 1000.0);
+        summary.put("count", window.getTotalCount());
+        summary.put("p50", toMillis(window.getValueAtPercentile(50)));
+        summary.put("p95", toMillis(window.getValueAtPercentile(95)));
+        summary.put("p99", toMillis(window.getValueAtPercentile(99)));
+        summary.put("p999", toMillis(window.getValueAtPercentile(99.9)));
+        summary.put("max", toMillis(window.getMaxValue()));
+        return summary;
+    }
+
+    /**
+     * 停止滑动窗口的定时切换，线程池终止后调用
+     */
+    public void close() {
+        rotateTask.cancel(false);
+    }
+
+    private synchronized void rotate() {
+        drainInterval();
+        current = (current + 1) % slices.length;
+        slices[current].reset();
+    }
+
+    /**
+     * 把Recorder里还没有取出的记录归入当前时间片
+     */
+    private void drainInterval() {
+        interval = recorder.getIntervalHistogram(interval);
+        slices[current].add(interval);
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+}
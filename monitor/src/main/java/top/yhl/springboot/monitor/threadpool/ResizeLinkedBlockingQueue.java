@@ -1,16 +1,467 @@
 package top.yhl.springboot.monitor.threadpool;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class ResizeLinkedBlockingQueue<E> extends LinkedBlockingQueue<E> {
+/**
+ * 容量可以在运行时修改的有界阻塞队列
+ * <p>
+ * 结构和{@link java.util.concurrent.LinkedBlockingQueue}相同：单向链表，入队和出队各用一把锁，
+ * 生产者和消费者互不阻塞。容量是volatile的，只在入队时检查：
+ * 扩容后立即唤醒等待的生产者；缩容时已经在队列里的元素都保留，元素数降到新容量以下之前入队失败或者等待。
+ * <p>
+ * 迭代器返回的是调用时的快照，线程池只在purge和remove时遍历队列，不影响正常的入队出队。
+ */
+public class ResizeLinkedBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
 
-    private final int capacity;
+    static class Node<E> {
+        E item;
+        Node<E> next;
+
+        Node(E item) {
+            this.item = item;
+        }
+    }
+
+    private volatile int capacity;
+    private final AtomicInteger count = new AtomicInteger();
+    //head.item始终为null
+    private Node<E> head;
+    private Node<E> last;
+
+    private final ReentrantLock takeLock = new ReentrantLock();
+    private final Condition notEmpty = takeLock.newCondition();
+    private final ReentrantLock putLock = new ReentrantLock();
+    private final Condition notFull = putLock.newCondition();
+
+    public ResizeLinkedBlockingQueue() {
+        this(Integer.MAX_VALUE);
+    }
 
     public ResizeLinkedBlockingQueue(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("队列容量必须大于0：" + queueCapacity);
+        }
         this.capacity = queueCapacity;
+        last = head = new Node<>(null);
     }
 
     public int getCapacity() {
         return capacity;
     }
+
+    /**
+     * 修改容量，不会丢弃已经在队列里的元素
+     */
+    public void setCapacity(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("队列容量必须大于0：" + queueCapacity);
+        }
+        putLock.lock();
+        try {
+            int old = capacity;
+            capacity = queueCapacity;
+            if (queueCapacity > old && count.get() < queueCapacity) {
+                notFull.signalAll();
+            }
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return count.get();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - count.get());
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        checkNotNull(e);
+        int c;
+        Node<E> node = new Node<>(e);
+        putLock.lockInterruptibly();
+        try {
+            while (count.get() >= capacity) {
+                notFull.await();
+            }
+            enqueue(node);
+            c = count.getAndIncrement();
+            if (c + 1 < capacity) {
+                notFull.signal();
+            }
+        } finally {
+            putLock.unlock();
+        }
+        if (c == 0) {
+            signalNotEmpty();
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotNull(e);
+        long nanos = unit.toNanos(timeout);
+        int c;
+        putLock.lockInterruptibly();
+        try {
+            while (count.get() >= capacity) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(new Node<>(e));
+            c = count.getAndIncrement();
+            if (c + 1 < capacity) {
+                notFull.signal();
+            }
+        } finally {
+            putLock.unlock();
+        }
+        if (c == 0) {
+            signalNotEmpty();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        checkNotNull(e);
+        if (count.get() >= capacity) {
+            return false;
+        }
+        int c = -1;
+        putLock.lock();
+        try {
+            if (count.get() < capacity) {
+                enqueue(new Node<>(e));
+                c = count.getAndIncrement();
+                if (c + 1 < capacity) {
+                    notFull.signal();
+                }
+            }
+        } finally {
+            putLock.unlock();
+        }
+        if (c == 0) {
+            signalNotEmpty();
+        }
+        return c >= 0;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E x;
+        int c;
+        takeLock.lockInterruptibly();
+        try {
+            while (count.get() == 0) {
+                notEmpty.await();
+            }
+            x = dequeue();
+            c = count.getAndDecrement();
+            if (c > 1) {
+                notEmpty.signal();
+            }
+        } finally {
+            takeLock.unlock();
+        }
+        //缩容后元素数可能大于容量，只要出队前是满的就唤醒生产者
+        if (c >= capacity) {
+            signalNotFull();
+        }
+        return x;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E x;
+        int c;
+        long nanos = unit.toNanos(timeout);
+        takeLock.lockInterruptibly();
+        try {
+            while (count.get() == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            x = dequeue();
+            c = count.getAndDecrement();
+            if (c > 1) {
+                notEmpty.signal();
+            }
+        } finally {
+            takeLock.unlock();
+        }
+        if (c >= capacity) {
+            signalNotFull();
+        }
+        return x;
+    }
+
+    @Override
+    public E poll() {
+        if (count.get() == 0) {
+            return null;
+        }
+        E x = null;
+        int c = -1;
+        takeLock.lock();
+        try {
+            if (count.get() > 0) {
+                x = dequeue();
+                c = count.getAndDecrement();
+                if (c > 1) {
+                    notEmpty.signal();
+                }
+            }
+        } finally {
+            takeLock.unlock();
+        }
+        if (c >= capacity) {
+            signalNotFull();
+        }
+        return x;
+    }
+
+    @Override
+    public E peek() {
+        if (count.get() == 0) {
+            return null;
+        }
+        takeLock.lock();
+        try {
+            Node<E> first = head.next;
+            return first == null ? null : first.item;
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) {
+            return false;
+        }
+        fullyLock();
+        try {
+            for (Node<E> trail = head, p = trail.next; p != null; trail = p, p = p.next) {
+                if (o.equals(p.item)) {
+                    unlink(p, trail);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return false;
+        }
+        fullyLock();
+        try {
+            for (Node<E> p = head.next; p != null; p = p.next) {
+                if (o.equals(p.item)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        fullyLock();
+        try {
+            for (Node<E> p, h = head; (p = h.next) != null; h = p) {
+                h.next = h;
+                p.item = null;
+            }
+            head = last;
+            if (count.getAndSet(0) >= capacity) {
+                notFull.signalAll();
+            }
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        checkNotNull(c);
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        if (maxElements <= 0) {
+            return 0;
+        }
+        boolean signalNotFull = false;
+        takeLock.lock();
+        try {
+            int n = Math.min(maxElements, count.get());
+            Node<E> h = head;
+            int i = 0;
+            try {
+                while (i < n) {
+                    Node<E> p = h.next;
+                    c.add(p.item);
+                    p.item = null;
+                    h.next = h;
+                    h = p;
+                    ++i;
+                }
+                return n;
+            } finally {
+                //c.add抛出异常时也要把已经取出的元素从队列中去掉
+                if (i > 0) {
+                    head = h;
+                    signalNotFull = count.getAndAdd(-i) >= capacity;
+                }
+            }
+        } finally {
+            takeLock.unlock();
+            if (signalNotFull) {
+                signalNotFull();
+            }
+        }
+    }
+
+    /**
+     * 调用时队列内容的快照，remove会从队列中删除对应的元素
+     */
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<>(count.get());
+        fullyLock();
+        try {
+            for (Node<E> p = head.next; p != null; p = p.next) {
+                snapshot.add(p.item);
+            }
+        } finally {
+            fullyUnlock();
+        }
+        Iterator<E> it = snapshot.iterator();
+        return new Iterator<E>() {
+            private E lastRet;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                lastRet = it.next();
+                return lastRet;
+            }
+
+            @Override
+            public void remove() {
+                if (lastRet == null) {
+                    throw new IllegalStateException();
+                }
+                removeIdentical(lastRet);
+                lastRet = null;
+            }
+        };
+    }
+
+    private void removeIdentical(Object o) {
+        fullyLock();
+        try {
+            for (Node<E> trail = head, p = trail.next; p != null; trail = p, p = p.next) {
+                if (p.item == o) {
+                    unlink(p, trail);
+                    return;
+                }
+            }
+        } finally {
+            fullyUnlock();
+        }
+    }
+
+    private void enqueue(Node<E> node) {
+        last = last.next = node;
+    }
+
+    private E dequeue() {
+        Node<E> h = head;
+        Node<E> first = h.next;
+        //帮助GC
+        h.next = h;
+        head = first;
+        E x = first.item;
+        first.item = null;
+        return x;
+    }
+
+    private void unlink(Node<E> p, Node<E> trail) {
+        p.item = null;
+        trail.next = p.next;
+        if (last == p) {
+            last = trail;
+        }
+        if (count.getAndDecrement() >= capacity) {
+            notFull.signal();
+        }
+    }
+
+    private void signalNotEmpty() {
+        takeLock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    private void signalNotFull() {
+        putLock.lock();
+        try {
+            notFull.signal();
+        } finally {
+            putLock.unlock();
+        }
+    }
+
+    private void fullyLock() {
+        putLock.lock();
+        takeLock.lock();
+    }
+
+    private void fullyUnlock() {
+        takeLock.unlock();
+        putLock.unlock();
+    }
+
+    private static void checkNotNull(Object o) {
+        if (o == null) {
+            throw new NullPointerException();
+        }
+    }
 }
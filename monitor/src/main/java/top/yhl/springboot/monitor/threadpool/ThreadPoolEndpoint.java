@@ -1,14 +1,19 @@
 package top.yhl.springboot.monitor.threadpool;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
 import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
 import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.Nullable;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @Endpoint(id = "thread-pool")
@@ -22,24 +27,65 @@ public class ThreadPoolEndpoint {
         Map<String, Object> metricMap = new HashMap<>();
         List<Map> threadPools = new ArrayList<>();
         threadPoolForMonitorManager.getThreadPoolExecutorForMonitorConcurrentHashMap().forEach((k, v) -> {
-            ThreadPoolExecutorForMonitor tpe = (ThreadPoolExecutorForMonitor) v;
-            Map<String, Object> poolInfo = new HashMap<>();
-            poolInfo.put("thead.pool.name", k);
-            poolInfo.put("thread.pool.core.size", tpe.getCorePoolSize());
-            poolInfo.put("thread.pool.largest.size", tpe.getLargestPoolSize());
-            poolInfo.put("thread.pool.max.size", tpe.getMaximumPoolSize());
-            poolInfo.put("thread.pool.thread.count", tpe.getPoolSize());
-            poolInfo.put("thread.pool.max.costTime", tpe.getMaxCostTime());
-            poolInfo.put("thread.pool.average.costTime", tpe.getAverageCostTime());
-            poolInfo.put("thread.pool.min.costTime", tpe.getMinCostTime());
-            poolInfo.put("thread.pool.active.count", tpe.getActiveCount());
-            poolInfo.put("thread.pool.completed.taskCount", tpe.getCompletedTaskCount());
-            poolInfo.put("thread.pool.queue.name", tpe.getQueue().getClass().getName());
-            poolInfo.put("thread.pool.rejected.name", tpe.getRejectedExecutionHandler().getClass().getName());
-            poolInfo.put("thread.pool.task.count", tpe.getTaskCount());
-            threadPools.add(poolInfo);
+            threadPools.add(poolInfo(k, v));
         });
         metricMap.put("threadPools", threadPools);
         return metricMap;
     }
+
+    /**
+     * 修改运行中线程池的参数，没有传的参数保持不变。
+     * 例如：POST /actuator/thread-pool/first-monitor-thread-pool {"corePoolSize":8,"queueCapacity":500}
+     */
+    @WriteOperation
+    public Map<String, Object> updateThreadPool(@Selector String poolName, @Nullable Integer corePoolSize,
+                                                @Nullable Integer maximumPoolSize, @Nullable Long keepAliveSeconds,
+                                                @Nullable Integer queueCapacity) {
+        ThreadPoolExecutorForMonitor tpe = threadPoolForMonitorManager.getThreadPoolExecutor(poolName);
+        try {
+            if (corePoolSize != null || maximumPoolSize != null) {
+                threadPoolForMonitorManager.setPoolSize(poolName, tpe,
+                        corePoolSize != null ? corePoolSize : tpe.getCorePoolSize(),
+                        maximumPoolSize != null ? maximumPoolSize : tpe.getMaximumPoolSize());
+            }
+            if (keepAliveSeconds != null) {
+                tpe.setKeepAliveTime(keepAliveSeconds, TimeUnit.SECONDS);
+            }
+            if (queueCapacity != null) {
+                tpe.setQueueCapacity(queueCapacity);
+            }
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            //返回400而不是500
+            throw new InvalidEndpointRequestException(e.getMessage(), e.getMessage());
+        }
+        return poolInfo(poolName, tpe);
+    }
+
+    private Map<String, Object> poolInfo(String poolName, ThreadPoolExecutorForMonitor tpe) {
+        Map<String, Object> poolInfo = new HashMap<>();
+        poolInfo.put("thead.pool.name", poolName);
+        poolInfo.put("thread.pool.core.size", tpe.getCorePoolSize());
+        poolInfo.put("thread.pool.largest.size", tpe.getLargestPoolSize());
+        poolInfo.put("thread.pool.max.size", tpe.getMaximumPoolSize());
+        poolInfo.put("thread.pool.keepAlive.seconds", tpe.getKeepAliveTime(TimeUnit.SECONDS));
+        poolInfo.put("thread.pool.thread.count", tpe.getPoolSize());
+        poolInfo.put("thread.pool.max.costTime", tpe.getMaxCostTime());
+        poolInfo.put("thread.pool.average.costTime", tpe.getAverageCostTime());
+        poolInfo.put("thread.pool.min.costTime", tpe.getMinCostTime());
+        poolInfo.put("thread.pool.costTime.window", tpe.getCostTime().getWindowSummary());
+        poolInfo.put("thread.pool.queueWaitTime.window", tpe.getQueueWaitTime().getWindowSummary());
+        poolInfo.put("thread.pool.sojournTime.window", tpe.getSojournTime().getWindowSummary());
+        poolInfo.put("thread.pool.active.count", tpe.getActiveCount());
+        poolInfo.put("thread.pool.completed.taskCount", tpe.getCompletedTaskCount());
+        poolInfo.put("thread.pool.queue.name", tpe.getQueue().getClass().getName());
+        poolInfo.put("thread.pool.queue.size", tpe.getQueue().size());
+        poolInfo.put("thread.pool.queue.capacity", tpe.getQueueCapacity());
+        poolInfo.put("thread.pool.rejected.name", tpe.getRejectedExecutionHandler().getClass().getName());
+        poolInfo.put("thread.pool.task.count", tpe.getTaskCount());
+        AdaptiveConcurrencyController controller = threadPoolForMonitorManager.getController(poolName);
+        if (controller != null) {
+            poolInfo.put("thread.pool.adaptive", controller.getStatus());
+        }
+        return poolInfo;
+    }
 }
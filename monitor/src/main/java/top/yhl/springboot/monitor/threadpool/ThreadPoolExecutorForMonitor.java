@@ -1,8 +1,9 @@
 package top.yhl.springboot.monitor.threadpool;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 public class ThreadPoolExecutorForMonitor extends ThreadPoolExecutor {
 
@@ -23,14 +24,43 @@ public class ThreadPoolExecutorForMonitor extends ThreadPoolExecutor {
     }
 
 
-    //最短执行时间
-    private long minCostTime;
-    //最长执行时间
-    private long maxCostTime;
-    //总的耗时
-    private AtomicLong totalCostTime = new AtomicLong();
+    //任务执行耗时，纳秒
+    private final LatencyRecorder costTime = new LatencyRecorder();
+    //任务在队列中等待的时间，纳秒
+    private final LatencyRecorder queueWaitTime = new LatencyRecorder();
+    //从提交到执行结束的总时间，纳秒
+    private final LatencyRecorder sojournTime = new LatencyRecorder();
 
-    private ThreadLocal<Long> startTimeThreadLocal = new ThreadLocal<>();
+    /**
+     * 提交的任务都包装成TimedTask，记录入队时间
+     */
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+        super.execute(command instanceof TimedTask ? command : new TimedTask(command));
+    }
+
+    @Override
+    public boolean remove(Runnable task) {
+        for (Runnable queued : getQueue()) {
+            if (queued instanceof TimedTask && ((TimedTask) queued).task == task) {
+                return super.remove(queued);
+            }
+        }
+        return super.remove(task);
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> tasks = super.shutdownNow();
+        List<Runnable> unwrapped = new ArrayList<>(tasks.size());
+        for (Runnable task : tasks) {
+            unwrapped.add(task instanceof TimedTask ? ((TimedTask) task).task : task);
+        }
+        return unwrapped;
+    }
 
     @Override
     public void shutdown() {
@@ -39,43 +69,125 @@ public class ThreadPoolExecutorForMonitor extends ThreadPoolExecutor {
 
     @Override
     protected void beforeExecute(Thread t, Runnable r) {
-        startTimeThreadLocal.set(System.currentTimeMillis());
+        if (r instanceof TimedTask) {
+            TimedTask task = (TimedTask) r;
+            task.startTime = System.nanoTime();
+            queueWaitTime.record(task.startTime - task.enqueueTime);
+        }
         super.beforeExecute(t, r);
     }
 
     @Override
     protected void afterExecute(Runnable r, Throwable t) {
-        long costTime = System.currentTimeMillis() - startTimeThreadLocal.get();
-        startTimeThreadLocal.remove();
-        maxCostTime = Math.max(maxCostTime, costTime);
-        if (getCompletedTaskCount() == 0) {
-            minCostTime = costTime;
+        if (r instanceof TimedTask) {
+            TimedTask task = (TimedTask) r;
+            long endTime = System.nanoTime();
+            costTime.record(endTime - task.startTime);
+            sojournTime.record(endTime - task.enqueueTime);
         }
-        minCostTime = Math.min(minCostTime, costTime);
-        totalCostTime.addAndGet(costTime);
         super.afterExecute(r, t);
     }
 
+    /**
+     * 同时修改核心线程数和最大线程数，按照新旧值的大小关系决定修改顺序，任何时刻都不会出现核心线程数大于最大线程数
+     */
+    public synchronized void setPoolSize(int corePoolSize, int maximumPoolSize) {
+        if (corePoolSize < 0 || maximumPoolSize <= 0 || corePoolSize > maximumPoolSize) {
+            throw new IllegalArgumentException("线程数不合法：core=" + corePoolSize + ", max=" + maximumPoolSize);
+        }
+        if (maximumPoolSize >= getCorePoolSize()) {
+            setMaximumPoolSize(maximumPoolSize);
+            setCorePoolSize(corePoolSize);
+        } else {
+            setCorePoolSize(corePoolSize);
+            setMaximumPoolSize(maximumPoolSize);
+        }
+    }
+
+    /**
+     * 修改队列容量，队列不是ResizeLinkedBlockingQueue时抛出UnsupportedOperationException
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        BlockingQueue<Runnable> queue = getQueue();
+        if (!(queue instanceof ResizeLinkedBlockingQueue)) {
+            throw new UnsupportedOperationException("队列不支持修改容量：" + queue.getClass().getName());
+        }
+        ((ResizeLinkedBlockingQueue<Runnable>) queue).setCapacity(queueCapacity);
+    }
+
+    /**
+     * 队列容量，队列不是ResizeLinkedBlockingQueue时返回-1
+     */
+    public int getQueueCapacity() {
+        BlockingQueue<Runnable> queue = getQueue();
+        return queue instanceof ResizeLinkedBlockingQueue ? ((ResizeLinkedBlockingQueue<Runnable>) queue).getCapacity() : -1;
+    }
+
+    /**
+     * 启动以来的最短执行时间，毫秒
+     */
     public long getMinCostTime() {
-        return minCostTime;
+        return TimeUnit.NANOSECONDS.toMillis(costTime.getMinNanos());
     }
 
+    /**
+     * 启动以来的最长执行时间，毫秒
+     */
     public long getMaxCostTime() {
-        return maxCostTime;
+        return TimeUnit.NANOSECONDS.toMillis(costTime.getMaxNanos());
     }
 
-    public long getAverageCostTime() {//平均耗时
-        if (getCompletedTaskCount() == 0 || totalCostTime.get() == 0) {
-            return 0;
-        }
-        return totalCostTime.get() / getCompletedTaskCount();
+    public long getAverageCostTime() {//平均耗时，毫秒
+        return TimeUnit.NANOSECONDS.toMillis(costTime.getAverageNanos());
+    }
+
+    /**
+     * 任务执行耗时的统计，分位数取最近一个滑动窗口
+     */
+    public LatencyRecorder getCostTime() {
+        return costTime;
+    }
+
+    /**
+     * 任务在队列中等待的时间，持续升高说明线程数不够，而不是任务变慢
+     */
+    public LatencyRecorder getQueueWaitTime() {
+        return queueWaitTime;
+    }
+
+    /**
+     * 任务从提交到执行结束的总时间，等于排队时间加执行时间
+     */
+    public LatencyRecorder getSojournTime() {
+        return sojournTime;
     }
 
     @Override
     protected void terminated() {
+        costTime.close();
+        queueWaitTime.close();
+        sojournTime.close();
         super.terminated();
     }
 
+    /**
+     * 记录入队和开始执行时间的任务包装，执行时间只在执行它的线程上读写
+     */
+    static class TimedTask implements Runnable {
+        final Runnable task;
+        final long enqueueTime = System.nanoTime();
+        long startTime;
+
+        TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
+
     static class MonitorThreadFactory implements ThreadFactory {
         private static final AtomicInteger poolNumber = new AtomicInteger(1);
         private final ThreadGroup group;
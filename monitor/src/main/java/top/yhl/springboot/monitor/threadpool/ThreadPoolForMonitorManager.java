@@ -1,34 +1,182 @@
 package top.yhl.springboot.monitor.threadpool;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * 按monitor.threadpool配置创建线程池，配置变化时（/actuator/refresh、配置中心推送等触发EnvironmentChangeEvent）
+ * 把新的配置和运行中的线程池做对比：新增的线程池直接创建，删除的线程池不再对外提供并优雅关闭，
+ * 已有线程池的参数在原地修改。
+ * <p>
+ * 只有配置中变化了的参数才会应用到线程池上，通过ThreadPoolEndpoint手动修改的参数在对应的配置项变化之前保持不变。
+ *
  * @author yang_hl3
  */
+@Slf4j
 @Component
-public class ThreadPoolForMonitorManager {
+public class ThreadPoolForMonitorManager implements ApplicationListener<EnvironmentChangeEvent> {
+
+    private static final String PREFIX = "monitor.threadpool";
 
     @Autowired
     ThreadPoolConfigurationProperties poolConfigurationProperties;
+    @Autowired
+    Environment environment;
     private final ConcurrentHashMap<String, ThreadPoolExecutorForMonitor> threadPoolExecutorForMonitorConcurrentHashMap = new ConcurrentHashMap<>();
+    //每个线程池最近一次从配置中应用的参数
+    private final Map<String, ThreadPoolProperties> appliedProperties = new HashMap<>();
+    //开启了自适应调整的线程池
+    private final Map<String, AdaptiveConcurrencyController> controllers = new ConcurrentHashMap<>();
 
     @PostConstruct
     public void init() {
-        poolConfigurationProperties.getExecutor().stream().filter(threadPoolProperties -> !threadPoolExecutorForMonitorConcurrentHashMap.containsKey(threadPoolProperties.getPoolName())).forEach(threadPoolProperties -> {
-            ThreadPoolExecutorForMonitor executorForMonitor = new ThreadPoolExecutorForMonitor(
-                    threadPoolProperties.getCorePoolSize(),
-                    threadPoolProperties.getMaxmumPoolSize(),
-                    threadPoolProperties.getKeepAliveTime(),
-                    threadPoolProperties.getUnit(),
-                    new ResizeLinkedBlockingQueue<>(threadPoolProperties.getQueueCapacity()),
-                    threadPoolProperties.getPoolName()
-            );
-            threadPoolExecutorForMonitorConcurrentHashMap.put(threadPoolProperties.getPoolName(), executorForMonitor);
+        apply(poolConfigurationProperties.getExecutor());
+    }
+
+    @Override
+    public void onApplicationEvent(EnvironmentChangeEvent event) {
+        if (event.getKeys().stream().noneMatch(ThreadPoolForMonitorManager::isPoolKey)) {
+            return;
+        }
+        //直接从Environment绑定，不依赖ConfigurationPropertiesRebinder和这个监听器的先后顺序
+        ThreadPoolConfigurationProperties latest = Binder.get(environment)
+                .bind(PREFIX, ThreadPoolConfigurationProperties.class)
+                .orElseGet(ThreadPoolConfigurationProperties::new);
+        apply(latest.getExecutor());
+    }
+
+    /**
+     * 让运行中的线程池和配置保持一致
+     */
+    public synchronized void apply(List<ThreadPoolProperties> executors) {
+        Map<String, ThreadPoolProperties> latest = new LinkedHashMap<>();
+        for (ThreadPoolProperties properties : executors) {
+            if (properties.getPoolName() == null) {
+                log.warn("忽略没有poolName的线程池配置：" + properties);
+                continue;
+            }
+            latest.putIfAbsent(properties.getPoolName(), copy(properties));
+        }
+        latest.forEach((poolName, properties) -> {
+            ThreadPoolExecutorForMonitor tpe = threadPoolExecutorForMonitorConcurrentHashMap.get(poolName);
+            if (tpe == null) {
+                create(properties);
+            } else {
+                update(tpe, appliedProperties.get(poolName), properties);
+            }
         });
+        for (String poolName : new ArrayList<>(threadPoolExecutorForMonitorConcurrentHashMap.keySet())) {
+            if (!latest.containsKey(poolName)) {
+                retire(poolName);
+            }
+        }
+    }
+
+    private void create(ThreadPoolProperties properties) {
+        ThreadPoolExecutorForMonitor executorForMonitor;
+        try {
+            executorForMonitor = new ThreadPoolExecutorForMonitor(
+                    properties.getCorePoolSize(),
+                    properties.getMaxmumPoolSize(),
+                    properties.getKeepAliveTime(),
+                    properties.getUnit(),
+                    new ResizeLinkedBlockingQueue<>(properties.getQueueCapacity()),
+                    properties.getPoolName()
+            );
+        } catch (IllegalArgumentException | NullPointerException e) {
+            //一个线程池的配置有误不影响其他线程池的创建和修改
+            log.error("线程池" + properties.getPoolName() + "的配置无法创建：" + properties, e);
+            return;
+        }
+        threadPoolExecutorForMonitorConcurrentHashMap.put(properties.getPoolName(), executorForMonitor);
+        appliedProperties.put(properties.getPoolName(), properties);
+        log.info("创建线程池：" + properties);
+        startController(properties.getPoolName(), executorForMonitor, properties.getAdaptive());
+    }
+
+    private void startController(String poolName, ThreadPoolExecutorForMonitor tpe, AdaptiveProperties adaptive) {
+        if (!adaptive.isEnabled()) {
+            return;
+        }
+        try {
+            AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(poolName, tpe, adaptive);
+            controller.start();
+            controllers.put(poolName, controller);
+        } catch (IllegalArgumentException e) {
+            log.error("线程池" + poolName + "的自适应配置无法应用：" + adaptive, e);
+        }
+    }
+
+    private void stopController(String poolName) {
+        AdaptiveConcurrencyController controller = controllers.remove(poolName);
+        if (controller != null) {
+            controller.stop();
+        }
+    }
+
+    private void update(ThreadPoolExecutorForMonitor tpe, ThreadPoolProperties old, ThreadPoolProperties properties) {
+        if (properties.equals(old)) {
+            return;
+        }
+        try {
+            boolean coreChanged = old.getCorePoolSize() != properties.getCorePoolSize();
+            boolean maxChanged = old.getMaxmumPoolSize() != properties.getMaxmumPoolSize();
+            if (coreChanged || maxChanged) {
+                setPoolSize(properties.getPoolName(), tpe,
+                        coreChanged ? properties.getCorePoolSize() : tpe.getCorePoolSize(),
+                        maxChanged ? properties.getMaxmumPoolSize() : tpe.getMaximumPoolSize());
+            }
+            if (old.getKeepAliveTime() != properties.getKeepAliveTime() || old.getUnit() != properties.getUnit()) {
+                tpe.setKeepAliveTime(properties.getKeepAliveTime(), properties.getUnit());
+            }
+            if (old.getQueueCapacity() != properties.getQueueCapacity()) {
+                tpe.setQueueCapacity(properties.getQueueCapacity());
+            }
+            if (!old.getAdaptive().equals(properties.getAdaptive())) {
+                stopController(properties.getPoolName());
+                startController(properties.getPoolName(), tpe, properties.getAdaptive());
+            }
+            appliedProperties.put(properties.getPoolName(), properties);
+            log.info("修改线程池：" + old + " -> " + properties);
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            log.error("线程池" + properties.getPoolName() + "的新配置无法应用：" + properties, e);
+        }
+    }
+
+    /**
+     * 从表中移除后不会再有新任务提交进来，已经提交的任务执行完后线程池终止
+     */
+    private void retire(String poolName) {
+        ThreadPoolExecutorForMonitor tpe = threadPoolExecutorForMonitorConcurrentHashMap.remove(poolName);
+        appliedProperties.remove(poolName);
+        stopController(poolName);
+        tpe.shutdown();
+        log.info("关闭线程池" + poolName + "，还有" + tpe.getQueue().size() + "个排队的任务会继续执行");
+    }
+
+    /**
+     * 修改线程数，开启了自适应调整的线程池交给调整器修改，新的核心线程数作为调整的起点
+     */
+    public void setPoolSize(String poolName, ThreadPoolExecutorForMonitor tpe, int corePoolSize, int maximumPoolSize) {
+        AdaptiveConcurrencyController controller = controllers.get(poolName);
+        if (controller == null) {
+            tpe.setPoolSize(corePoolSize, maximumPoolSize);
+        } else {
+            controller.setPoolSize(corePoolSize, maximumPoolSize);
+        }
     }
 
     public ThreadPoolExecutorForMonitor getThreadPoolExecutor(String poolName) {
@@ -39,8 +187,34 @@ public class ThreadPoolForMonitorManager {
         return threadPoolExecutorForMonitor;
     }
 
+    /**
+     * 线程池的自适应调整器，没有开启时返回null
+     */
+    public AdaptiveConcurrencyController getController(String poolName) {
+        return controllers.get(poolName);
+    }
+
     public ConcurrentHashMap<String, ThreadPoolExecutorForMonitor> getThreadPoolExecutorForMonitorConcurrentHashMap() {
         return threadPoolExecutorForMonitorConcurrentHashMap;
     }
 
+    /**
+     * monitor.threadpool下的配置项，兼容环境变量等宽松写法
+     */
+    private static boolean isPoolKey(String key) {
+        return key.toLowerCase().replaceAll("[^a-z0-9]", "").startsWith("monitorthreadpool");
+    }
+
+    private static ThreadPoolProperties copy(ThreadPoolProperties properties) {
+        ThreadPoolProperties copy = new ThreadPoolProperties();
+        copy.setPoolName(properties.getPoolName());
+        copy.setCorePoolSize(properties.getCorePoolSize());
+        copy.setMaxmumPoolSize(properties.getMaxmumPoolSize());
+        copy.setKeepAliveTime(properties.getKeepAliveTime());
+        copy.setUnit(properties.getUnit());
+        copy.setQueueCapacity(properties.getQueueCapacity());
+        copy.setAdaptive(properties.getAdaptive().copy());
+        return copy;
+    }
+
 }
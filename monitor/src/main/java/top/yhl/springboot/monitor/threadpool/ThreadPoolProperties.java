@@ -12,4 +12,8 @@ public class ThreadPoolProperties {
     private long keepAliveTime = 60;
     private TimeUnit unit = TimeUnit.SECONDS;
     private int queueCapacity = Integer.MAX_VALUE;
+    /**
+     * 自适应调整核心线程数，默认关闭
+     */
+    private AdaptiveProperties adaptive = new AdaptiveProperties();
 }
@@ -0,0 +1,312 @@
+package top.yhl.springboot.monitor.threadpool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResizeLinkedBlockingQueueTests {
+
+    //断言生产者仍然阻塞时等待的时间，只会把bug漏掉，不会误报
+    private static final long BLOCKED_MILLIS = 100;
+    private static final long TIMEOUT_SECONDS = 5;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new ResizeLinkedBlockingQueue<>(0));
+        ResizeLinkedBlockingQueue<Integer> queue = new ResizeLinkedBlockingQueue<>(1);
+        assertThrows(IllegalArgumentException.class, () -> queue.setCapacity(0));
+        assertEquals(1, queue.getCapacity());
+    }
+
+    @Test
+    void shrinkBelowSizeKeepsElementsAndUnblocksProducersAsConsumersDrain() throws Exception {
+        ResizeLinkedBlockingQueue<Integer> queue = new ResizeLinkedBlockingQueue<>(10);
+        for (int i = 0; i < 8; i++) {
+            queue.put(i);
+        }
+        queue.setCapacity(3);
+        assertEquals(8, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+        assertFalse(queue.offer(100));
+        assertFalse(queue.offer(100, 10, TimeUnit.MILLISECONDS));
+
+        Future<?> producer = executor.submit(() -> {
+            queue.put(100);
+            return null;
+        });
+        //元素数降到容量之前生产者一直阻塞
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, queue.take());
+        }
+        assertBlocked(producer);
+        assertEquals(5, queue.poll());
+        producer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(3, queue.size());
+        assertEquals(Arrays.asList(6, 7, 100), new ArrayList<>(queue));
+    }
+
+    @Test
+    void growWakesBlockedPutAndTimedOffer() throws Exception {
+        ResizeLinkedBlockingQueue<Integer> queue = new ResizeLinkedBlockingQueue<>(2);
+        queue.put(1);
+        queue.put(2);
+        Future<?> put = executor.submit(() -> {
+            queue.put(3);
+            return null;
+        });
+        Future<Boolean> offer = executor.submit(() -> queue.offer(4, TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertBlocked(put);
+        assertBlocked(offer);
+
+        queue.setCapacity(4);
+        put.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertTrue(offer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(4, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+    }
+
+    @Test
+    void growOnlyWakesAsManyProducersAsThereIsRoom() throws Exception {
+        ResizeLinkedBlockingQueue<Integer> queue = new ResizeLinkedBlockingQueue<>(1);
+        queue.put(0);
+        List<Future<?>> producers = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            int value = i;
+            producers.add(executor.submit(() -> {
+                queue.put(value);
+                return null;
+            }));
+        }
+        queue.setCapacity(3);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (queue.size() < 3 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(BLOCKED_MILLIS);
+        assertEquals(3, queue.size());
+        assertEquals(1, producers.stream().filter(f -> !f.isDone()).count());
+
+        queue.take();
+        for (Future<?> producer : producers) {
+            producer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        assertEquals(3, queue.size());
+    }
+
+    @Test
+    void removeKeepsCountAndWakesProducer() throws Exception {
+        ResizeLinkedBlockingQueue<String> queue = new ResizeLinkedBlockingQueue<>(3);
+        queue.put("a");
+        queue.put("b");
+        queue.put("c");
+        Future<?> producer = executor.submit(() -> {
+            queue.put("d");
+            return null;
+        });
+        assertBlocked(producer);
+
+        assertFalse(queue.remove("x"));
+        assertTrue(queue.remove("c"));
+        producer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(3, queue.size());
+        assertEquals(Arrays.asList("a", "b", "d"), new ArrayList<>(queue));
+
+        //删除最后一个元素后，新的元素仍然接在队尾
+        assertTrue(queue.remove("d"));
+        queue.put("e");
+        assertEquals(Arrays.asList("a", "b", "e"), new ArrayList<>(queue));
+        assertEquals("a", queue.take());
+        assertEquals("b", queue.take());
+        assertEquals("e", queue.take());
+        assertEquals(0, queue.size());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void iteratorRemoveKeepsCount() throws Exception {
+        ResizeLinkedBlockingQueue<Integer> queue = new ResizeLinkedBlockingQueue<>(4);
+        for (int i = 0; i < 4; i++) {
+            queue.put(i);
+        }
+        queue.removeIf(i -> i % 2 == 0);
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.remainingCapacity());
+        assertEquals(Arrays.asList(1, 3), new ArrayList<>(queue));
+    }
+
+    @Test
+    void drainToKeepsCountAndWakesProducer() throws Exception {
+        ResizeLinkedBlockingQueue<Integer> queue = new ResizeLinkedBlockingQueue<>(5);
+        for (int i = 0; i < 5; i++) {
+            queue.put(i);
+        }
+        Future<?> producer = executor.submit(() -> {
+            queue.put(5);
+            return null;
+        });
+        assertBlocked(producer);
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, queue.drainTo(drained, 2));
+        producer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(4, queue.size());
+
+        assertEquals(4, queue.drainTo(drained));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), drained);
+        assertEquals(0, queue.size());
+        assertTrue(queue.isEmpty());
+        assertEquals(0, queue.drainTo(drained));
+
+        queue.put(6);
+        assertEquals(6, queue.take());
+    }
+
+    @Test
+    void drainToAfterShrinkWakesProducer() throws Exception {
+        ResizeLinkedBlockingQueue<Integer> queue = new ResizeLinkedBlockingQueue<>(8);
+        for (int i = 0; i < 8; i++) {
+            queue.put(i);
+        }
+        queue.setCapacity(3);
+        Future<?> producer = executor.submit(() -> {
+            queue.put(8);
+            return null;
+        });
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(5, queue.drainTo(drained, 5));
+        assertBlocked(producer);
+        assertEquals(1, queue.drainTo(drained, 1));
+        producer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList(6, 7, 8), new ArrayList<>(queue));
+    }
+
+    @Test
+    void clearResetsCountAndWakesProducers() throws Exception {
+        ResizeLinkedBlockingQueue<Integer> queue = new ResizeLinkedBlockingQueue<>(2);
+        queue.put(1);
+        queue.put(2);
+        Future<?> first = executor.submit(() -> {
+            queue.put(3);
+            return null;
+        });
+        Future<?> second = executor.submit(() -> {
+            queue.put(4);
+            return null;
+        });
+        assertBlocked(first);
+        assertBlocked(second);
+
+        queue.clear();
+        first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(2, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+        assertTrue(queue.contains(3));
+        assertTrue(queue.contains(4));
+        assertFalse(queue.contains(1));
+
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.peek());
+        queue.put(5);
+        assertEquals(5, queue.peek());
+        assertEquals(5, queue.take());
+    }
+
+    @Test
+    void concurrentProducersConsumersAndResizeLoseNothing() throws Exception {
+        ResizeLinkedBlockingQueue<Long> queue = new ResizeLinkedBlockingQueue<>(16);
+        int producers = 4;
+        int perProducer = 20_000;
+        AtomicLong sum = new AtomicLong();
+        AtomicLong consumed = new AtomicLong();
+        AtomicBoolean resizing = new AtomicBoolean(true);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long base = (long) p * perProducer;
+            tasks.add(executor.submit(() -> {
+                for (long i = 1; i <= perProducer; i++) {
+                    if ((i & 1) == 0) {
+                        queue.put(base + i);
+                    } else {
+                        while (!queue.offer(base + i, 1, TimeUnit.MILLISECONDS)) {
+                            Thread.yield();
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        List<Future<?>> consumers = new ArrayList<>();
+        for (int c = 0; c < 3; c++) {
+            consumers.add(executor.submit(() -> {
+                List<Long> batch = new ArrayList<>();
+                while (consumed.get() < (long) producers * perProducer) {
+                    Long x = queue.poll(1, TimeUnit.MILLISECONDS);
+                    if (x != null) {
+                        sum.addAndGet(x);
+                        consumed.incrementAndGet();
+                    }
+                    batch.clear();
+                    int n = queue.drainTo(batch, 3);
+                    for (Long y : batch) {
+                        sum.addAndGet(y);
+                    }
+                    consumed.addAndGet(n);
+                }
+                return null;
+            }));
+        }
+        Future<?> resizer = executor.submit(() -> {
+            while (resizing.get()) {
+                queue.setCapacity(ThreadLocalRandom.current().nextInt(1, 32));
+                Thread.sleep(1);
+            }
+            return null;
+        });
+
+        for (Future<?> task : tasks) {
+            task.get(30, TimeUnit.SECONDS);
+        }
+        for (Future<?> consumer : consumers) {
+            consumer.get(30, TimeUnit.SECONDS);
+        }
+        resizing.set(false);
+        resizer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        long total = (long) producers * perProducer;
+        assertEquals(total, consumed.get());
+        assertEquals(total * (total + 1) / 2, sum.get());
+        assertEquals(0, queue.size());
+        assertNull(queue.poll());
+    }
+
+    private static void assertBlocked(Future<?> future) throws InterruptedException {
+        Thread.sleep(BLOCKED_MILLIS);
+        assertFalse(future.isDone(), "应该仍然阻塞");
+    }
+}
@@ -0,0 +1,93 @@
+package top.yhl.springboot.monitor.threadpool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ThreadPoolExecutorForMonitorTests {
+
+    private final CheckedPool pool = new CheckedPool(2, 4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void growsPastCurrentMaximum() {
+        pool.setPoolSize(10, 20);
+        assertEquals(10, pool.getCorePoolSize());
+        assertEquals(20, pool.getMaximumPoolSize());
+    }
+
+    @Test
+    void shrinksBelowCurrentCore() {
+        pool.setPoolSize(10, 20);
+        pool.setPoolSize(1, 2);
+        assertEquals(1, pool.getCorePoolSize());
+        assertEquals(2, pool.getMaximumPoolSize());
+    }
+
+    @Test
+    void movesCoreAndMaximumInOppositeDirections() {
+        pool.setPoolSize(4, 4);
+        assertEquals(4, pool.getCorePoolSize());
+        assertEquals(4, pool.getMaximumPoolSize());
+        pool.setPoolSize(1, 8);
+        assertEquals(1, pool.getCorePoolSize());
+        assertEquals(8, pool.getMaximumPoolSize());
+    }
+
+    @Test
+    void rejectsInvalidSizesWithoutChangingThePool() {
+        assertThrows(IllegalArgumentException.class, () -> pool.setPoolSize(5, 3));
+        assertThrows(IllegalArgumentException.class, () -> pool.setPoolSize(-1, 3));
+        assertThrows(IllegalArgumentException.class, () -> pool.setPoolSize(0, 0));
+        assertEquals(2, pool.getCorePoolSize());
+        assertEquals(4, pool.getMaximumPoolSize());
+    }
+
+    @Test
+    void queueCapacityFollowsSetQueueCapacity() {
+        pool.setQueueCapacity(3);
+        assertEquals(3, pool.getQueueCapacity());
+        ThreadPoolExecutorForMonitor plain = new ThreadPoolExecutorForMonitor(1, 1, 0, TimeUnit.SECONDS,
+                new java.util.concurrent.LinkedBlockingQueue<>());
+        try {
+            assertThrows(UnsupportedOperationException.class, () -> plain.setQueueCapacity(3));
+            assertEquals(-1, plain.getQueueCapacity());
+        } finally {
+            plain.shutdownNow();
+        }
+    }
+
+    /**
+     * 每次修改线程数后检查核心线程数没有超过最大线程数。
+     * JDK8的setCorePoolSize不检查这一点，顺序错了也不会抛出异常，只能在这里检查
+     */
+    private static class CheckedPool extends ThreadPoolExecutorForMonitor {
+
+        CheckedPool(int corePoolSize, int maximumPoolSize) {
+            super(corePoolSize, maximumPoolSize, 0, TimeUnit.SECONDS, new ResizeLinkedBlockingQueue<>(10));
+        }
+
+        @Override
+        public void setCorePoolSize(int corePoolSize) {
+            super.setCorePoolSize(corePoolSize);
+            assertTrue(getCorePoolSize() <= getMaximumPoolSize(),
+                    "core=" + getCorePoolSize() + " > max=" + getMaximumPoolSize());
+        }
+
+        @Override
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            super.setMaximumPoolSize(maximumPoolSize);
+            assertTrue(getCorePoolSize() <= getMaximumPoolSize(),
+                    "core=" + getCorePoolSize() + " > max=" + getMaximumPoolSize());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.netty.example.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * benchmarks.jar的入口，接受所有JMH命令行参数，并默认开启gc profiler输出分配速率
+ * <pre>
+ * mvn -pl netty-message-mic-benchmark -am package
+ * java -jar netty-message-mic-benchmark/target/benchmarks.jar MessageRecordCodecBenchmark -p bodySize=16,1048576
+ * </pre>
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,79 @@
+package com.netty.example.benchmark;
+
+import com.netty.example.mic.codec.body.BodyCodecRegistry;
+import com.netty.example.mic.codec.body.CompactBinaryCodec;
+import com.netty.example.mic.codec.body.JdkSerializationCodec;
+import com.netty.example.mic.codec.body.RawBytesCodec;
+import com.netty.example.mic.codec.body.Utf8StringCodec;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基准测试中使用的消息体类型，每种对应一个codec，生成编码后约为指定字节数的消息体
+ */
+public enum BodyKind {
+    RAW(RawBytesCodec.ID) {
+        @Override
+        public Object newBody(int size) {
+            byte[] bytes = new byte[size];
+            Arrays.fill(bytes, (byte) 'a');
+            return Unpooled.unreleasableBuffer(Unpooled.directBuffer(size).writeBytes(bytes));
+        }
+    },
+    UTF8(Utf8StringCodec.ID) {
+        @Override
+        public Object newBody(int size) {
+            char[] chars = new char[size];
+            Arrays.fill(chars, 'a');
+            return new String(chars);
+        }
+    },
+    COMPACT(CompactBinaryCodec.ID) {
+        @Override
+        public Object newBody(int size) {
+            //每个int编码为1个字节的类型标记+4个字节的varint
+            int count = Math.max(1, size / 5);
+            List<Integer> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(1 << 25 | i);
+            }
+            return values;
+        }
+    },
+    JDK(JdkSerializationCodec.ID) {
+        @Override
+        public Object newBody(int size) {
+            return UTF8.newBody(size);
+        }
+    };
+
+    /**
+     * 包含java序列化的注册表，用于和旧实现对比
+     */
+    public static final BodyCodecRegistry REGISTRY = BodyCodecRegistry.DEFAULT.with(JdkSerializationCodec.INSTANCE);
+
+    private final byte codecId;
+
+    BodyKind(byte codecId) {
+        this.codecId = codecId;
+    }
+
+    public byte codecId() {
+        return codecId;
+    }
+
+    /**
+     * RAW返回的ByteBuf不可释放，可以在每次迭代中重复编码
+     */
+    public abstract Object newBody(int size);
+
+    public static void release(Object body) {
+        if (body instanceof ByteBuf) {
+            ((ByteBuf) body).unwrap().release();
+        }
+    }
+}
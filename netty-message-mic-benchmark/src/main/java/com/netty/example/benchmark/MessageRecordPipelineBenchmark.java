@@ -0,0 +1,87 @@
+package com.netty.example.benchmark;
+
+import com.netty.example.mic.codec.MessageRecordDecoder;
+import com.netty.example.mic.codec.MessageRecordEncoder;
+import com.netty.example.mic.opcode.OpCode;
+import com.netty.example.mic.proto.Header;
+import com.netty.example.mic.proto.MessageRecord;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import server.ServerHandler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端的服务端pipeline吞吐：MessageRecordDecoder -> ServerHandler -> MessageRecordEncoder，
+ * 用EmbeddedChannel驱动，不经过网络。chunks大于1时一条消息分成多次写入，模拟大消息分多次到达时解码器的累积开销。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class MessageRecordPipelineBenchmark {
+
+    @Param({"16", "256", "4096", "65536", "1048576"})
+    public int bodySize;
+
+    @Param({"1", "16"})
+    public int chunks;
+
+    @Param({"RAW", "UTF8", "COMPACT", "JDK"})
+    public BodyKind codec;
+
+    private EmbeddedChannel channel;
+    private ByteBuf frame;
+
+    @Setup
+    public void setup() throws Exception {
+        channel = new EmbeddedChannel(
+                new MessageRecordEncoder(BodyKind.REGISTRY),
+                new MessageRecordDecoder(BodyKind.REGISTRY),
+                new ServerHandler());
+        channel.config().setAllocator(PooledByteBufAllocator.DEFAULT);
+
+        Header header = new Header();
+        header.setSessionId(1L);
+        header.setType(OpCode.BUSI_REQ.code());
+        header.setCodec(codec.codecId());
+        Object body = codec.newBody(bodySize);
+        frame = PooledByteBufAllocator.DEFAULT.directBuffer(bodySize * 2 + 64);
+        new MessageRecordEncoder(BodyKind.REGISTRY).encode(null, new MessageRecord(header, body), frame);
+        BodyKind.release(body);
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+        frame.release();
+    }
+
+    @Benchmark
+    public int roundTrip() {
+        int length = frame.readableBytes();
+        int chunkSize = (length + chunks - 1) / chunks;
+        for (int offset = 0; offset < length; offset += chunkSize) {
+            channel.writeInbound(frame.retainedSlice(offset, Math.min(chunkSize, length - offset)));
+        }
+        ByteBuf response = channel.readOutbound();
+        int responseLength = response.readableBytes();
+        response.release();
+        return responseLength;
+    }
+}
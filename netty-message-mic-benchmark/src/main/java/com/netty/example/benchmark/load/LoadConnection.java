@@ -0,0 +1,265 @@
+package com.netty.example.benchmark.load;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoop;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ScheduledFuture;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个压测连接，所有状态只在绑定的EventLoop上访问
+ * <p>
+ * 延迟从请求"应该发出"的时间开始计算：闭环时就是实际发送时间；开环时按固定速率排出发送计划，
+ * 服务端变慢、流水线占满导致请求没能按时发出，排队的时间也计入延迟，避免coordinated omission。
+ * 对不支持长连接的目标，每个请求新建一个连接，连接关闭时请求结束。
+ * <p>
+ * 请求从计划发送时间起超过timeout没有响应就计为错误：响应无序时只丢弃这个请求，连接继续发送；
+ * 响应有序时后面的响应已经无法和请求对应，在途请求全部计为错误并关闭连接。
+ */
+class LoadConnection implements LoadTarget.ResponseListener {
+
+    private static final long TICK_MICROS = 1000;
+    private static final AttributeKey<Boolean> TIMED_OUT = AttributeKey.valueOf("load.timedOut");
+
+    private final LoadTarget target;
+    private final LoadOptions options;
+    private final EventLoop loop;
+    private final Bootstrap bootstrap;
+    private final Recorder recorder;
+    private final LongAdder errors;
+    private final byte[] payload;
+    private final int depth;
+
+    private Channel channel;
+    private ScheduledFuture<?> ticker;
+    private ScheduledFuture<?> timeoutChecker;
+    private volatile boolean running;
+    private long nextId;
+    private int outstanding;
+    private long nextIntended;
+    /**
+     * 响应有序时按发送顺序保存计划发送时间
+     */
+    private final ArrayDeque<Long> inflight = new ArrayDeque<>();
+    /**
+     * 响应无序时按请求id保存计划发送时间
+     */
+    private final Map<Long, Long> inflightById = new HashMap<>();
+    /**
+     * 响应无序时已经超时的请求id，迟到的响应直接忽略，不再计一次错误
+     */
+    private final Set<Long> expiredIds = new HashSet<>();
+
+    LoadConnection(LoadTarget target, LoadOptions options, EventLoop loop, Bootstrap bootstrap, int index,
+                   Recorder recorder, LongAdder errors, byte[] payload) {
+        this.target = target;
+        this.options = options;
+        this.loop = loop;
+        this.recorder = recorder;
+        this.errors = errors;
+        this.payload = payload;
+        this.depth = Math.min(options.pipeline, target.maxPipelineDepth());
+        //id的高位区分连接，方便在服务端日志里定位
+        this.nextId = (long) index << 32;
+        this.bootstrap = bootstrap.clone(loop).handler(new ChannelInitializer<Channel>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                target.initChannel(ch, LoadConnection.this);
+            }
+        });
+    }
+
+    /**
+     * 建立连接，连接成功后开始发送请求
+     */
+    Future<?> start() {
+        running = true;
+        if (target.connectionPerRequest()) {
+            return loop.submit(this::begin);
+        }
+        return bootstrap.connect(options.host, options.port).addListener((ChannelFutureListener) f -> {
+            if (!f.isSuccess()) {
+                errors.increment();
+                running = false;
+                return;
+            }
+            channel = f.channel();
+            channel.closeFuture().addListener(c -> {
+                if (running) {
+                    errors.increment();
+                    running = false;
+                }
+            });
+            begin();
+        });
+    }
+
+    void stop() {
+        running = false;
+        loop.execute(() -> {
+            if (ticker != null) {
+                ticker.cancel(false);
+            }
+            if (timeoutChecker != null) {
+                timeoutChecker.cancel(false);
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        });
+    }
+
+    private void begin() {
+        if (!target.connectionPerRequest()) {
+            long period = Math.max(1, options.timeout / 10);
+            timeoutChecker = loop.scheduleAtFixedRate(this::expire, period, period, TimeUnit.MILLISECONDS);
+        }
+        if (options.openLoop()) {
+            nextIntended = System.nanoTime();
+            ticker = loop.scheduleAtFixedRate(this::sendDue, 0, TICK_MICROS, TimeUnit.MICROSECONDS);
+        } else {
+            sendDue();
+        }
+    }
+
+    /**
+     * 在流水线深度允许的范围内发出所有到期的请求
+     */
+    private void sendDue() {
+        if (!running) {
+            return;
+        }
+        long now = System.nanoTime();
+        boolean sent = false;
+        while (outstanding < depth) {
+            long intended;
+            if (options.openLoop()) {
+                if (nextIntended - now > 0) {
+                    break;
+                }
+                intended = nextIntended;
+                nextIntended += options.intervalNanos();
+            } else {
+                intended = now;
+            }
+            send(intended);
+            sent = true;
+        }
+        if (sent && channel != null) {
+            channel.flush();
+        }
+    }
+
+    private void send(long intended) {
+        outstanding++;
+        long id = nextId++;
+        if (target.connectionPerRequest()) {
+            sendOnNewConnection(id, intended);
+            return;
+        }
+        if (target.ordered()) {
+            inflight.add(intended);
+        } else {
+            inflightById.put(id, intended);
+        }
+        target.write(channel, id, payload);
+    }
+
+    private void sendOnNewConnection(long id, long intended) {
+        bootstrap.connect(options.host, options.port).addListener((ChannelFutureListener) f -> {
+            if (!f.isSuccess()) {
+                errors.increment();
+                complete(intended, false);
+                return;
+            }
+            Channel ch = f.channel();
+            long remaining = options.timeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - intended);
+            ScheduledFuture<?> deadline = loop.schedule(() -> {
+                //超时的请求先计为错误，之后的关闭不再记录延迟
+                errors.increment();
+                ch.attr(TIMED_OUT).set(Boolean.TRUE);
+                ch.close();
+            }, Math.max(0, remaining), TimeUnit.MILLISECONDS);
+            target.write(ch, id, payload);
+            ch.flush();
+            ch.closeFuture().addListener(c -> {
+                deadline.cancel(false);
+                complete(intended, ch.attr(TIMED_OUT).get() == null);
+            });
+        });
+    }
+
+    /**
+     * 处理超时的请求，在EventLoop上定期执行
+     */
+    private void expire() {
+        if (!running) {
+            return;
+        }
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(options.timeout);
+        long now = System.nanoTime();
+        if (target.ordered()) {
+            Long oldest = inflight.peek();
+            if (oldest != null && now - oldest > timeoutNanos) {
+                errors.add(inflight.size());
+                inflight.clear();
+                outstanding = 0;
+                //之后的关闭是预期内的，不再计一次错误
+                running = false;
+                channel.close();
+            }
+            return;
+        }
+        Iterator<Map.Entry<Long, Long>> it = inflightById.entrySet().iterator();
+        int expired = 0;
+        while (it.hasNext()) {
+            Map.Entry<Long, Long> entry = it.next();
+            if (now - entry.getValue() > timeoutNanos) {
+                it.remove();
+                expiredIds.add(entry.getKey());
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            errors.add(expired);
+            outstanding -= expired;
+            sendDue();
+        }
+    }
+
+    @Override
+    public void onResponse(long requestId) {
+        Long intended = target.ordered() ? inflight.poll() : inflightById.remove(requestId);
+        if (intended == null) {
+            if (!target.ordered() && expiredIds.remove(requestId)) {
+                return;
+            }
+            //不是这个连接发出的请求，说明响应和请求对不上
+            errors.increment();
+            return;
+        }
+        complete(intended, true);
+    }
+
+    private void complete(long intended, boolean success) {
+        outstanding--;
+        if (success && running) {
+            recorder.recordValue(System.nanoTime() - intended);
+        }
+        sendDue();
+    }
+}
@@ -0,0 +1,119 @@
+package com.netty.example.benchmark.load;
+
+import com.netty.example.transport.TransportConfig;
+import com.netty.example.transport.TransportFactory;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.Future;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * netty-message-mic各个服务端的压测工具，输出吞吐量和p50/p99/p999延迟
+ * <pre>
+ * mvn -pl netty-message-mic-benchmark -am package
+ * java -cp netty-message-mic-benchmark/target/benchmarks.jar com.netty.example.benchmark.load.LoadGenerator \
+ *     --target=mic --connections=16 --pipeline=8 --size=256 --rate=20000 --duration=30
+ * </pre>
+ * target可选mic（ProtocolServer）、basic（NettyBasicServerExample）、package（PackageNettyServer）、
+ * reactor（MultiplyReactor）、reactor-dispatch（MultiplyReactor dispatch）。
+ * <p>
+ * 指定--rate时为开环压测，按固定速率发送，延迟从计划发送时间算起，已经包含了coordinated omission的影响；
+ * 不指定时为闭环压测，每个连接保持pipeline个请求在途，服务端变慢时发送也跟着变慢，
+ * 延迟分位数偏乐观，只能用来比较吞吐量，要看给定负载下的排队延迟请用开环压测。
+ * 超过--timeout（默认5000ms）没有响应的请求计为错误，响应有序的目标无法再对应后续的响应，连接会被关闭。
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        LoadTarget target = Targets.of(options.target);
+        if (options.port == 0) {
+            options.port = target.defaultPort();
+        }
+        if (options.pipeline > target.maxPipelineDepth()) {
+            System.out.println(options.target + "不支持流水线，pipeline按" + target.maxPipelineDepth() + "处理");
+            options.pipeline = target.maxPipelineDepth();
+        }
+        System.out.println(options);
+
+        TransportFactory transport = new TransportFactory(new TransportConfig());
+        EventLoopGroup group = transport.newEventLoopGroup(options.threads, "load");
+        Bootstrap bootstrap = transport.newBootstrap(group);
+        Recorder recorder = new Recorder(3);
+        LongAdder errors = new LongAdder();
+        byte[] payload = new byte[options.size];
+        Arrays.fill(payload, target.payloadByte());
+
+        List<LoadConnection> connections = new ArrayList<>(options.connections);
+        try {
+            List<Future<?>> started = new ArrayList<>(options.connections);
+            for (int i = 0; i < options.connections; i++) {
+                EventLoop loop = group.next();
+                LoadConnection connection = new LoadConnection(target, options, loop, bootstrap, i, recorder, errors, payload);
+                connections.add(connection);
+                started.add(connection.start());
+            }
+            for (Future<?> future : started) {
+                future.awaitUninterruptibly();
+            }
+            if (errors.sum() > 0) {
+                System.out.println(errors.sum() + "个连接建立失败");
+            }
+
+            TimeUnit.SECONDS.sleep(options.warmup);
+            recorder.getIntervalHistogram();
+            long warmupErrors = errors.sum();
+
+            Histogram total = null;
+            Histogram interval = null;
+            long start = System.nanoTime();
+            for (int second = 1; second <= options.duration; second++) {
+                TimeUnit.NANOSECONDS.sleep(start + TimeUnit.SECONDS.toNanos(second) - System.nanoTime());
+                interval = recorder.getIntervalHistogram(interval);
+                if (total == null) {
+                    total = interval.copy();
+                } else {
+                    total.add(interval);
+                }
+                System.out.printf("%3ds  %10d req/s  p50=%8.1fus  p99=%8.1fus  max=%8.1fus%n", second,
+                        interval.getTotalCount(), micros(interval.getValueAtPercentile(50)),
+                        micros(interval.getValueAtPercentile(99)), micros(interval.getMaxValue()));
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            report(options, total, seconds, errors.sum() - warmupErrors);
+        } finally {
+            for (LoadConnection connection : connections) {
+                connection.stop();
+            }
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+    }
+
+    private static void report(LoadOptions options, Histogram histogram, double seconds, long errors) {
+        System.out.println("----");
+        System.out.printf("requests=%d  errors=%d  throughput=%.1f req/s%n",
+                histogram.getTotalCount(), errors, histogram.getTotalCount() / seconds);
+        printPercentiles(options.openLoop() ? "latency" : "latency(closed-loop)", histogram);
+        if (!options.openLoop()) {
+            System.out.println("闭环压测的延迟没有计入服务端变慢时少发的请求，排队延迟请用--rate开环压测");
+        }
+    }
+
+    private static void printPercentiles(String name, Histogram histogram) {
+        System.out.printf("%-20s p50=%.1fus  p99=%.1fus  p999=%.1fus  max=%.1fus%n", name,
+                micros(histogram.getValueAtPercentile(50)), micros(histogram.getValueAtPercentile(99)),
+                micros(histogram.getValueAtPercentile(99.9)), micros(histogram.getMaxValue()));
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
@@ -0,0 +1,101 @@
+package com.netty.example.benchmark.load;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压测参数，命令行格式为--name=value
+ */
+public class LoadOptions {
+    String target = "mic";
+    String host = "127.0.0.1";
+    int port;
+    int connections = 16;
+    /**
+     * 每个连接上最多同时未完成的请求数
+     */
+    int pipeline = 1;
+    int size = 64;
+    /**
+     * 所有连接合计每秒发送的请求数，0表示闭环：收到响应后立即发送下一个请求
+     */
+    int rate;
+    int duration = 30;
+    int warmup = 5;
+    /**
+     * 请求从计划发送时间起超过这个毫秒数还没有响应，就算作一个错误，不再占用流水线的位置
+     */
+    int timeout = 5000;
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("参数格式应为--name=value：" + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "target":
+                    options.target = value;
+                    break;
+                case "host":
+                    options.host = value;
+                    break;
+                case "port":
+                    options.port = Integer.parseInt(value);
+                    break;
+                case "connections":
+                    options.connections = Integer.parseInt(value);
+                    break;
+                case "pipeline":
+                    options.pipeline = Integer.parseInt(value);
+                    break;
+                case "size":
+                    options.size = Integer.parseInt(value);
+                    break;
+                case "rate":
+                    options.rate = Integer.parseInt(value);
+                    break;
+                case "duration":
+                    options.duration = Integer.parseInt(value);
+                    break;
+                case "warmup":
+                    options.warmup = Integer.parseInt(value);
+                    break;
+                case "timeout":
+                    options.timeout = Integer.parseInt(value);
+                    break;
+                case "threads":
+                    options.threads = Integer.parseInt(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数：" + name);
+            }
+        }
+        if (options.connections <= 0 || options.pipeline <= 0 || options.size <= 0 || options.duration <= 0
+                || options.timeout <= 0 || options.rate < 0 || options.warmup < 0) {
+            throw new IllegalArgumentException("connections/pipeline/size/duration/timeout必须大于0，rate/warmup不能为负数");
+        }
+        return options;
+    }
+
+    boolean openLoop() {
+        return rate > 0;
+    }
+
+    /**
+     * 开环时单个连接上两个请求之间计划的间隔
+     */
+    long intervalNanos() {
+        return TimeUnit.SECONDS.toNanos(connections) / rate;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("target=%s %s:%d connections=%d pipeline=%d size=%d rate=%s duration=%ds warmup=%ds timeout=%dms threads=%d",
+                target, host, port, connections, pipeline, size, openLoop() ? rate + "/s" : "closed-loop",
+                duration, warmup, timeout, threads);
+    }
+}
@@ -0,0 +1,59 @@
+package com.netty.example.benchmark.load;
+
+import io.netty.channel.Channel;
+
+/**
+ * 压测目标的协议适配：怎么发请求、怎么从响应流里识别出一个完整的响应
+ */
+public interface LoadTarget {
+
+    /**
+     * 收到一个完整响应时的回调，在连接所在的EventLoop上调用
+     */
+    interface ResponseListener {
+        /**
+         * @param requestId 响应对应的请求id，协议不带id（按顺序响应）时为-1
+         */
+        void onResponse(long requestId);
+    }
+
+    int defaultPort();
+
+    /**
+     * 配置连接的pipeline，解析出完整响应后调用listener
+     */
+    void initChannel(Channel channel, ResponseListener listener);
+
+    /**
+     * 发送一个请求，payload是指定大小的消息体，适配器不能修改它
+     */
+    void write(Channel channel, long requestId, byte[] payload);
+
+    /**
+     * 同一个连接上的响应是否和请求的顺序一致，不一致时按requestId匹配
+     */
+    default boolean ordered() {
+        return true;
+    }
+
+    /**
+     * 每个请求都新建一个连接，服务端写完响应后关闭连接表示请求结束
+     */
+    default boolean connectionPerRequest() {
+        return false;
+    }
+
+    /**
+     * 协议能支持的最大流水线深度
+     */
+    default int maxPipelineDepth() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * 消息体中不能出现的字节，比如按行拆包的协议不能包含换行
+     */
+    default byte payloadByte() {
+        return 'a';
+    }
+}
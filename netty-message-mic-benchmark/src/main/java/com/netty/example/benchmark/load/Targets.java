@@ -0,0 +1,204 @@
+package com.netty.example.benchmark.load;
+
+import com.netty.example.mic.codec.MessageRecordDecoder;
+import com.netty.example.mic.codec.MessageRecordEncoder;
+import com.netty.example.mic.opcode.OpCode;
+import com.netty.example.mic.proto.Header;
+import com.netty.example.mic.proto.MessageRecord;
+import com.netty.example.pk.frame.FrameConfig;
+import com.netty.example.pk.frame.VarintFrameDecoder;
+import com.netty.example.pk.frame.VarintFrameEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.handler.codec.LineBasedFrameDecoder;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * netty-message-mic中各个服务端的协议适配
+ */
+public final class Targets {
+
+    private static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+    private Targets() {
+    }
+
+    public static LoadTarget of(String name) {
+        switch (name) {
+            case "mic":
+                return new MicTarget();
+            case "basic":
+                return new BasicTarget();
+            case "package":
+                return new PackageTarget();
+            case "reactor":
+                return new ReactorTarget();
+            case "reactor-dispatch":
+                return new ReactorDispatchTarget();
+            default:
+                throw new IllegalArgumentException("未知的target：" + name + "，可选mic/basic/package/reactor/reactor-dispatch");
+        }
+    }
+
+    /**
+     * ProtocolServer：请求带sessionId，业务线程按sessionId分lane处理，响应可能乱序
+     */
+    static class MicTarget implements LoadTarget {
+        @Override
+        public int defaultPort() {
+            return 8080;
+        }
+
+        @Override
+        public void initChannel(Channel channel, ResponseListener listener) {
+            channel.pipeline()
+                    .addLast(new MessageRecordEncoder())
+                    .addLast(new MessageRecordDecoder())
+                    .addLast(new SimpleChannelInboundHandler<MessageRecord>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, MessageRecord record) {
+                            if (record.getHeader().getType() == OpCode.BUSI_RESP.code()) {
+                                listener.onResponse(record.getHeader().getSessionId());
+                            }
+                        }
+                    });
+        }
+
+        @Override
+        public void write(Channel channel, long requestId, byte[] payload) {
+            Header header = new Header();
+            header.setSessionId(requestId);
+            header.setType(OpCode.BUSI_REQ.code());
+            channel.write(new MessageRecord(header, Unpooled.wrappedBuffer(payload)));
+        }
+
+        @Override
+        public boolean ordered() {
+            return false;
+        }
+    }
+
+    /**
+     * NettyBasicServerExample：读完一批数据后回写并关闭连接，每个请求一个连接
+     */
+    static class BasicTarget implements LoadTarget {
+        @Override
+        public int defaultPort() {
+            return 8080;
+        }
+
+        @Override
+        public void initChannel(Channel channel, ResponseListener listener) {
+            channel.pipeline().addLast(new SimpleChannelInboundHandler<ByteBuf>() {
+                @Override
+                protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                    //响应内容不关心，连接关闭才表示请求结束
+                }
+            });
+        }
+
+        @Override
+        public void write(Channel channel, long requestId, byte[] payload) {
+            channel.write(Unpooled.wrappedBuffer(payload));
+        }
+
+        @Override
+        public boolean connectionPerRequest() {
+            return true;
+        }
+
+        @Override
+        public int maxPipelineDepth() {
+            return 1;
+        }
+    }
+
+    /**
+     * PackageNettyServer：varint长度帧，每收到一帧回复一个UUID
+     */
+    static class PackageTarget implements LoadTarget {
+        private final FrameConfig frameConfig = new FrameConfig();
+        private final VarintFrameEncoder frameEncoder = new VarintFrameEncoder(frameConfig);
+
+        @Override
+        public int defaultPort() {
+            return 8080;
+        }
+
+        @Override
+        public void initChannel(Channel channel, ResponseListener listener) {
+            channel.pipeline()
+                    .addLast(new VarintFrameDecoder(frameConfig))
+                    .addLast(frameEncoder)
+                    .addLast(new SimpleChannelInboundHandler<ByteBuf>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                            listener.onResponse(-1);
+                        }
+                    });
+        }
+
+        @Override
+        public void write(Channel channel, long requestId, byte[] payload) {
+            channel.write(Unpooled.wrappedBuffer(payload));
+        }
+    }
+
+    /**
+     * MultiplyReactor + AsyncHandler：按行回显，每个响应以提示符"reactor> "结尾，连接建立时先收到欢迎语
+     */
+    static class ReactorTarget implements LoadTarget {
+        @Override
+        public int defaultPort() {
+            return 8888;
+        }
+
+        @Override
+        public void initChannel(Channel channel, ResponseListener listener) {
+            ByteBuf prompt = Unpooled.copiedBuffer("reactor> ", StandardCharsets.US_ASCII);
+            channel.pipeline()
+                    .addLast(new DelimiterBasedFrameDecoder(MAX_LINE_LENGTH, prompt))
+                    .addLast(new SimpleChannelInboundHandler<ByteBuf>() {
+                        private boolean welcomed;
+
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                            if (welcomed) {
+                                listener.onResponse(-1);
+                            } else {
+                                welcomed = true;
+                            }
+                        }
+                    });
+        }
+
+        @Override
+        public void write(Channel channel, long requestId, byte[] payload) {
+            channel.write(Unpooled.wrappedBuffer(payload, LINE_END));
+        }
+    }
+
+    /**
+     * MultiplyReactor dispatch + MultiDispatchHandler：每个响应一行
+     */
+    static class ReactorDispatchTarget extends ReactorTarget {
+        @Override
+        public void initChannel(Channel channel, ResponseListener listener) {
+            channel.pipeline()
+                    .addLast(new LineBasedFrameDecoder(MAX_LINE_LENGTH))
+                    .addLast(new SimpleChannelInboundHandler<ByteBuf>() {
+                        @Override
+                        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+                            listener.onResponse(-1);
+                        }
+                    });
+        }
+    }
+
+    private static final byte[] LINE_END = {'\n'};
+}
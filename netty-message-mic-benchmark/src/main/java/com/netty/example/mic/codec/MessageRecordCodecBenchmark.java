@@ -0,0 +1,89 @@
+package com.netty.example.mic.codec;
+
+import com.netty.example.benchmark.BodyKind;
+import com.netty.example.mic.opcode.OpCode;
+import com.netty.example.mic.proto.Header;
+import com.netty.example.mic.proto.MessageRecord;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageRecordEncoder/MessageRecordDecoder单独的编解码开销，不经过pipeline。
+ * 放在codec包下以便直接调用protected的decode方法。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class MessageRecordCodecBenchmark {
+
+    @Param({"16", "256", "4096", "65536", "1048576"})
+    public int bodySize;
+
+    @Param({"RAW", "UTF8", "COMPACT", "JDK"})
+    public BodyKind codec;
+
+    private MessageRecordEncoder encoder;
+    private MessageRecordDecoder decoder;
+    private MessageRecord record;
+    private ByteBuf out;
+    private ByteBuf frame;
+    private final List<Object> decoded = new ArrayList<>(1);
+
+    @Setup
+    public void setup() throws Exception {
+        encoder = new MessageRecordEncoder(BodyKind.REGISTRY);
+        decoder = new MessageRecordDecoder(BodyKind.REGISTRY);
+        Header header = new Header();
+        header.setSessionId(1L);
+        header.setType(OpCode.BUSI_REQ.code());
+        header.setCodec(codec.codecId());
+        record = new MessageRecord(header, codec.newBody(bodySize));
+        out = PooledByteBufAllocator.DEFAULT.directBuffer(bodySize * 2 + 64);
+        frame = PooledByteBufAllocator.DEFAULT.directBuffer(bodySize * 2 + 64);
+        encoder.encode(null, record, frame);
+    }
+
+    @TearDown
+    public void tearDown() {
+        out.release();
+        frame.release();
+        BodyKind.release(record.getBody());
+    }
+
+    @Benchmark
+    public int encode() throws Exception {
+        out.clear();
+        encoder.encode(null, record, out);
+        return out.writerIndex();
+    }
+
+    @Benchmark
+    public void decode(Blackhole bh) throws Exception {
+        frame.readerIndex(0);
+        decoder.decode(null, frame, decoded);
+        MessageRecord result = (MessageRecord) decoded.get(0);
+        bh.consume(result.getBody());
+        result.release();
+        decoded.clear();
+    }
+}
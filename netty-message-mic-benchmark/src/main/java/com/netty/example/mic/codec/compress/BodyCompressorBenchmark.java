@@ -0,0 +1,78 @@
+package com.netty.example.mic.codec.compress;
+
+import com.netty.example.benchmark.BodyKind;
+import com.netty.example.mic.codec.body.BodyCodecRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息体压缩和解压的吞吐，输入是COMPACT编码后的消息体。
+ * 压缩率在setup中打印，和吞吐一起用来选择压缩阈值和级别。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class BodyCompressorBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int bodySize;
+
+    @Param({"LZ4", "ZSTD"})
+    public Compression compression;
+
+    @Param({"0", "9"})
+    public int level;
+
+    private BodyCompressor compressor;
+    private ByteBuf plain;
+    private ByteBuf compressed;
+    private ByteBuf out;
+
+    @Setup
+    public void setup() throws Exception {
+        compressor = compression.newCompressor(level);
+        plain = PooledByteBufAllocator.DEFAULT.directBuffer(bodySize);
+        BodyCodecRegistry.DEFAULT.get(BodyKind.COMPACT.codecId()).encode(BodyKind.COMPACT.newBody(bodySize), plain);
+        compressed = PooledByteBufAllocator.DEFAULT.directBuffer(bodySize);
+        compressor.compress(plain.duplicate(), compressed);
+        out = PooledByteBufAllocator.DEFAULT.directBuffer(plain.readableBytes() * 2);
+        System.out.println(compression + " level " + level + ": " + plain.readableBytes() + " -> " + compressed.readableBytes());
+    }
+
+    @TearDown
+    public void tearDown() {
+        plain.release();
+        compressed.release();
+        out.release();
+    }
+
+    @Benchmark
+    public int compress() {
+        out.clear();
+        return compressor.compress(plain.duplicate(), out);
+    }
+
+    @Benchmark
+    public int decompress() {
+        out.clear();
+        compressor.decompress(compressed.duplicate(), out, plain.readableBytes());
+        return out.writerIndex();
+    }
+}
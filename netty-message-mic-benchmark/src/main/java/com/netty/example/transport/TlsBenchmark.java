@@ -0,0 +1,170 @@
+package com.netty.example.transport;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TlsContextFactory创建的引擎在内存中两两对接，不经过网络：
+ * handshake测握手速率，resume=true时客户端每次连同一个对端地址，可以恢复会话；
+ * bulk测握手完成后单向加密+解密的吞吐量，每次操作传输size字节。
+ * <pre>
+ * mvn -pl netty-message-mic-benchmark -am -Popenssl package
+ * java -jar netty-message-mic-benchmark/target/benchmarks.jar TlsBenchmark -p provider=JDK,OPENSSL
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class TlsBenchmark {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    @Param({"JDK", "OPENSSL"})
+    public String provider;
+
+    @Param({"false", "true"})
+    public boolean resume;
+
+    @Param({"1024", "16384"})
+    public int size;
+
+    private final ByteBufAllocator alloc = PooledByteBufAllocator.DEFAULT;
+    private SslContext serverContext;
+    private SslContext clientContext;
+    private int peerPort;
+    private SSLEngine bulkClient;
+    private SSLEngine bulkServer;
+    private ByteBuffer payload;
+    private ByteBuffer network;
+    private ByteBuffer application;
+
+    @Setup
+    public void setup() throws Exception {
+        boolean openSsl = "OPENSSL".equals(provider);
+        if (openSsl && !OpenSsl.isAvailable()) {
+            throw new IllegalStateException("OpenSSL不可用，需要用-Popenssl打包", OpenSsl.unavailabilityCause());
+        }
+        TlsConfig config = new TlsConfig();
+        config.setEnabled(true);
+        config.setPreferOpenSsl(openSsl);
+        TlsContextFactory factory = new TlsContextFactory(config);
+        serverContext = factory.newServerContext();
+        clientContext = factory.newClientContext();
+        bulkClient = clientContext.newEngine(alloc, "localhost", 1);
+        bulkServer = serverContext.newEngine(alloc);
+        handshake(bulkClient, bulkServer);
+        payload = ByteBuffer.allocateDirect(size);
+        network = ByteBuffer.allocateDirect(bulkClient.getSession().getPacketBufferSize() * (size / 16384 + 2));
+        application = ByteBuffer.allocateDirect(bulkServer.getSession().getApplicationBufferSize() + size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ReferenceCountUtil.release(bulkClient);
+        ReferenceCountUtil.release(bulkServer);
+        ReferenceCountUtil.release(serverContext);
+        ReferenceCountUtil.release(clientContext);
+    }
+
+    @Benchmark
+    public boolean handshake() throws SSLException {
+        //不恢复会话时每次用不同的对端端口，客户端会话缓存不会命中
+        SSLEngine client = clientContext.newEngine(alloc, "localhost", resume ? 2 : 1024 + (peerPort++ & 0x7FFF));
+        SSLEngine server = serverContext.newEngine(alloc);
+        try {
+            handshake(client, server);
+            return client.getSession().isValid();
+        } finally {
+            ReferenceCountUtil.release(client);
+            ReferenceCountUtil.release(server);
+        }
+    }
+
+    @Benchmark
+    public int bulk() throws SSLException {
+        payload.clear();
+        network.clear();
+        while (payload.hasRemaining()) {
+            bulkClient.wrap(payload, network);
+        }
+        network.flip();
+        application.clear();
+        while (network.hasRemaining()) {
+            SSLEngineResult result = bulkServer.unwrap(network, application);
+            if (result.bytesConsumed() == 0) {
+                break;
+            }
+        }
+        return application.position();
+    }
+
+    /**
+     * 交替wrap/unwrap直到两端握手完成，之后再交换两轮，让TLS 1.3在握手后发送的会话票据到达客户端
+     */
+    static void handshake(SSLEngine client, SSLEngine server) throws SSLException {
+        int packetSize = Math.max(client.getSession().getPacketBufferSize(), server.getSession().getPacketBufferSize());
+        ByteBuffer clientToServer = ByteBuffer.allocate(packetSize * 4);
+        ByteBuffer serverToClient = ByteBuffer.allocate(packetSize * 4);
+        ByteBuffer clientApp = ByteBuffer.allocate(packetSize * 4);
+        ByteBuffer serverApp = ByteBuffer.allocate(packetSize * 4);
+        client.beginHandshake();
+        server.beginHandshake();
+        int extraRounds = 2;
+        for (int i = 0; i < 100 && extraRounds > 0; i++) {
+            if (finished(client) && finished(server)) {
+                extraRounds--;
+            }
+            client.wrap(EMPTY, clientToServer);
+            runTasks(client);
+            server.wrap(EMPTY, serverToClient);
+            runTasks(server);
+            clientToServer.flip();
+            serverToClient.flip();
+            server.unwrap(clientToServer, serverApp);
+            runTasks(server);
+            client.unwrap(serverToClient, clientApp);
+            runTasks(client);
+            clientToServer.compact();
+            serverToClient.compact();
+        }
+        if (!finished(client) || !finished(server)) {
+            throw new SSLException("握手没有完成");
+        }
+    }
+
+    private static boolean finished(SSLEngine engine) {
+        SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+        return status == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING || status == SSLEngineResult.HandshakeStatus.FINISHED;
+    }
+
+    private static void runTasks(SSLEngine engine) {
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            task.run();
+        }
+    }
+}
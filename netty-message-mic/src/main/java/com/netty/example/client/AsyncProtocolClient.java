@@ -0,0 +1,167 @@
+package com.netty.example.client;
+
+import com.netty.example.mic.codec.DecoderLimits;
+import com.netty.example.mic.codec.MessageRecordDecoder;
+import com.netty.example.mic.codec.MessageRecordEncoder;
+import com.netty.example.mic.codec.body.BodyCodecRegistry;
+import com.netty.example.mic.codec.compress.CompressionConfig;
+import com.netty.example.mic.heartbeat.ConnectionRegistry;
+import com.netty.example.mic.heartbeat.HeartbeatConfig;
+import com.netty.example.mic.heartbeat.HeartbeatHandler;
+import com.netty.example.mic.stream.StreamConfig;
+import com.netty.example.mic.stream.StreamMultiplexer;
+import com.netty.example.transport.TlsContextFactory;
+import com.netty.example.transport.TransportFactory;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.util.HashedWheelTimer;
+
+import javax.net.ssl.SSLException;
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 异步的mic协议客户端
+ * <p>
+ * 同一个客户端建立的所有连接共享sessionId序列，保证sessionId唯一；
+ * 请求超时统一由一个时间轮处理，几千个在途请求也只有一个定时线程。
+ */
+public class AsyncProtocolClient implements Closeable {
+
+    private final EventLoopGroup group;
+    private final HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+    private final AtomicLong sessionIds = new AtomicLong();
+    private final ConnectionRegistry connectionRegistry = new ConnectionRegistry();
+    private final long requestTimeoutMillis;
+    private final ConnectionPoolConfig poolConfig;
+    private final Bootstrap bootstrap;
+    private final boolean tlsEnabled;
+
+    public AsyncProtocolClient() {
+        this(new ClientConfig());
+    }
+
+    public AsyncProtocolClient(ClientConfig config) {
+        TransportFactory transport = new TransportFactory(config.getTransport());
+        HeartbeatConfig heartbeat = config.getHeartbeat();
+        CompressionConfig compression = config.getCompression();
+        DecoderLimits decoderLimits = config.getDecoder();
+        StreamConfig streams = config.getStreams();
+        this.requestTimeoutMillis = config.getRequestTimeoutMillis();
+        this.poolConfig = config.getPool();
+        this.group = transport.newWorkerGroup("mic-client");
+        this.bootstrap = transport.newBootstrap(group);
+        TlsContextFactory tls = config.getTls().isEnabled() ? new TlsContextFactory(config.getTls()) : null;
+        SslContext sslContext = tls == null ? null : newClientContext(tls);
+        this.tlsEnabled = sslContext != null;
+        bootstrap.handler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel socketChannel) throws Exception {
+                ChannelPipeline pipeline = socketChannel.pipeline();
+                if (sslContext != null) {
+                    pipeline.addLast(tls.newClientHandler(sslContext, socketChannel));
+                }
+                if (heartbeat.isEnabled()) {
+                    pipeline.addLast(HeartbeatHandler.newIdleStateHandler(true, heartbeat));
+                }
+                pipeline.addLast(new MessageRecordEncoder(BodyCodecRegistry.DEFAULT, compression))
+                        .addLast(new MessageRecordDecoder(BodyCodecRegistry.DEFAULT, decoderLimits));
+                if (heartbeat.isEnabled()) {
+                    pipeline.addLast(new HeartbeatHandler(true, heartbeat.getMaxMissed(), connectionRegistry));
+                }
+                //客户端不接受服务端发起的流
+                pipeline.addLast(new StreamMultiplexer(streams, null))
+                        .addLast(new ClientHandler(new InFlightRequests(timer)));
+            }
+        });
+    }
+
+    private static SslContext newClientContext(TlsContextFactory tls) {
+        try {
+            return tls.newClientContext();
+        } catch (SSLException e) {
+            throw new IllegalStateException("创建SslContext失败", e);
+        }
+    }
+
+    /**
+     * 建立连接，阻塞直到连接成功，开启TLS时等到握手完成
+     */
+    public ProtocolConnection connect(String host, int port) throws InterruptedException {
+        Channel channel = doConnect(host, port).sync().channel();
+        if (tlsEnabled) {
+            channel.pipeline().get(SslHandler.class).handshakeFuture().sync();
+        }
+        return newConnection(channel);
+    }
+
+    /**
+     * 异步建立连接
+     */
+    public CompletableFuture<ProtocolConnection> connectAsync(String host, int port) {
+        CompletableFuture<ProtocolConnection> future = new CompletableFuture<>();
+        ChannelFuture connectFuture = doConnect(host, port);
+        connectFuture.addListener(f -> {
+            if (!f.isSuccess()) {
+                future.completeExceptionally(f.cause());
+            } else if (tlsEnabled) {
+                connectFuture.channel().pipeline().get(SslHandler.class).handshakeFuture().addListener(h -> {
+                    if (h.isSuccess()) {
+                        future.complete(newConnection(connectFuture.channel()));
+                    } else {
+                        future.completeExceptionally(h.cause());
+                    }
+                });
+            } else {
+                future.complete(newConnection(connectFuture.channel()));
+            }
+        });
+        return future;
+    }
+
+    private ChannelFuture doConnect(String host, int port) {
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        if (!tlsEnabled) {
+            return bootstrap.connect(address);
+        }
+        //对端地址用于TLS会话复用
+        return bootstrap.clone().attr(TlsContextFactory.PEER, address).connect(address);
+    }
+
+    /**
+     * 创建到host:port的连接池，连接在后台异步建立
+     */
+    public ProtocolConnectionPool newPool(String host, int port) {
+        return new ProtocolConnectionPool(this, host, port, poolConfig);
+    }
+
+    EventLoopGroup eventLoopGroup() {
+        return group;
+    }
+
+    private ProtocolConnection newConnection(Channel channel) {
+        ClientHandler handler = channel.pipeline().get(ClientHandler.class);
+        return new ProtocolConnection(channel, handler.inFlightRequests(), handler.goAwayFuture(),
+                sessionIds, requestTimeoutMillis);
+    }
+
+    public ConnectionRegistry getConnectionRegistry() {
+        return connectionRegistry;
+    }
+
+    @Override
+    public void close() {
+        timer.stop();
+        group.shutdownGracefully();
+    }
+}
@@ -0,0 +1,48 @@
+package com.netty.example.client;
+
+import com.netty.example.mic.codec.DecoderLimits;
+import com.netty.example.mic.codec.compress.CompressionConfig;
+import com.netty.example.mic.heartbeat.HeartbeatConfig;
+import com.netty.example.mic.stream.StreamConfig;
+import com.netty.example.transport.TlsConfig;
+import com.netty.example.transport.TransportConfig;
+import lombok.Data;
+
+/**
+ * AsyncProtocolClient的配置
+ */
+@Data
+public class ClientConfig {
+    /**
+     * 传输层配置
+     */
+    private TransportConfig transport = new TransportConfig();
+    /**
+     * TLS配置，默认关闭
+     */
+    private TlsConfig tls = new TlsConfig();
+    /**
+     * 心跳配置，客户端写空闲时发送PING
+     */
+    private HeartbeatConfig heartbeat = new HeartbeatConfig();
+    /**
+     * 请求消息体的压缩配置，单个连接可以通过ProtocolConnection.setCompression调整
+     */
+    private CompressionConfig compression = new CompressionConfig();
+    /**
+     * 响应解码的长度和内存限制
+     */
+    private DecoderLimits decoder = new DecoderLimits();
+    /**
+     * 流复用的配置，initialWindow需要和服务端一致
+     */
+    private StreamConfig streams = new StreamConfig();
+    /**
+     * 默认的请求超时时间
+     */
+    private long requestTimeoutMillis = 3000;
+    /**
+     * 连接池配置
+     */
+    private ConnectionPoolConfig pool = new ConnectionPoolConfig();
+}
@@ -1,22 +1,99 @@
 package com.netty.example.client;
 
+import com.netty.example.mic.codec.SkippedMessageEvent;
+import com.netty.example.mic.metrics.LogSampler;
+import com.netty.example.mic.opcode.OpCode;
 import com.netty.example.mic.proto.MessageRecord;
+import com.netty.example.mic.stream.StreamMultiplexer;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.DecoderException;
+import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.CompletableFuture;
+
 @Slf4j
 public class ClientHandler extends ChannelInboundHandlerAdapter {
+
+    private static final LogSampler LOG_SAMPLER = new LogSampler(1000);
+
+    private final InFlightRequests inFlightRequests;
+    private final CompletableFuture<Long> goAway = new CompletableFuture<>();
+
+    public ClientHandler(InFlightRequests inFlightRequests) {
+        this.inFlightRequests = inFlightRequests;
+    }
+
+    public InFlightRequests inFlightRequests() {
+        return inFlightRequests;
+    }
+
+    /**
+     * 收到第一个GOAWAY时以服务端给出的lastSessionId完成
+     */
+    public CompletableFuture<Long> goAwayFuture() {
+        return goAway;
+    }
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         MessageRecord record = (MessageRecord) msg;
-        log.info("Client Receive message:" + record);
-        super.channelRead(ctx, msg);
+        if (log.isDebugEnabled() && LOG_SAMPLER.sample()) {
+            log.debug("Client Receive message: {}", record);
+        }
+        if (record.getHeader().getType() == OpCode.GOAWAY.code()) {
+            ReferenceCountUtil.release(record);
+            onGoAway(ctx, record.getHeader().getSessionId());
+            return;
+        }
+        //响应交给等待的future，由调用方负责释放
+        if (!inFlightRequests.complete(record)) {
+            log.warn("找不到sessionId对应的请求，可能已经超时：" + record.getHeader().getSessionId());
+            ReferenceCountUtil.release(record);
+        }
+    }
+
+    private void onGoAway(ChannelHandlerContext ctx, long lastSessionId) {
+        if (goAway.isDone()) {
+            //第二个GOAWAY：服务端已经响应了所有处理过的请求，剩下的请求都没有被处理，可以重试
+            inFlightRequests.failAll(new GoAwayException(lastSessionId));
+            return;
+        }
+        log.info(ctx.channel().remoteAddress() + "发送GOAWAY，lastSessionId=" + lastSessionId);
+        //先完成goAway再结束请求，和ProtocolConnection.request中的检查配合，之后登记的请求不会被遗漏
+        goAway.complete(lastSessionId);
+        GoAwayException cause = new GoAwayException(lastSessionId);
+        inFlightRequests.failAbove(lastSessionId, cause);
+        StreamMultiplexer multiplexer = ctx.pipeline().get(StreamMultiplexer.class);
+        if (multiplexer != null) {
+            multiplexer.goAway(lastSessionId);
+        }
+    }
+
+    /**
+     * 响应无法解码时直接结束对应的请求，不用等到超时
+     */
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof SkippedMessageEvent) {
+            SkippedMessageEvent skipped = (SkippedMessageEvent) evt;
+            inFlightRequests.fail(skipped.getHeader().getSessionId(), new DecoderException(skipped.getReason()));
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        inFlightRequests.failAll(new ClosedChannelException());
+        super.channelInactive(ctx);
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-        super.exceptionCaught(ctx, cause);
+        inFlightRequests.failAll(cause);
         ctx.close();
     }
 }
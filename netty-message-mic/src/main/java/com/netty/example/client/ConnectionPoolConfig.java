@@ -0,0 +1,30 @@
+package com.netty.example.client;
+
+import lombok.Data;
+
+/**
+ * ProtocolConnectionPool的配置
+ */
+@Data
+public class ConnectionPoolConfig {
+    /**
+     * 每个服务端地址保持的连接数
+     */
+    private int connectionsPerEndpoint = Runtime.getRuntime().availableProcessors();
+    /**
+     * 健康检查间隔，每次对每个连接发送一个PING
+     */
+    private long healthCheckIntervalMillis = 5000;
+    /**
+     * PING超过这个时间没有收到响应即认为连接不健康
+     */
+    private long healthCheckTimeoutMillis = 1000;
+    /**
+     * 重连的初始等待时间，每失败一次翻倍，连接通过一次健康检查后才恢复到初始值
+     */
+    private long reconnectBaseDelayMillis = 100;
+    /**
+     * 重连等待时间的上限
+     */
+    private long reconnectMaxDelayMillis = 10000;
+}
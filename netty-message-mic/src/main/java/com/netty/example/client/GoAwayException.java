@@ -0,0 +1,22 @@
+package com.netty.example.client;
+
+import java.io.IOException;
+
+/**
+ * 服务端发送GOAWAY后，sessionId大于lastSessionId的请求不会被处理，以这个异常结束；
+ * 服务端响应完所有请求后发送第二个GOAWAY，这时还没有响应的请求也以这个异常结束。
+ * 请求没有产生任何副作用，可以安全地换一个连接重试
+ */
+public class GoAwayException extends IOException {
+
+    private final long lastSessionId;
+
+    public GoAwayException(long lastSessionId) {
+        super("connection is going away, lastSessionId=" + lastSessionId);
+        this.lastSessionId = lastSessionId;
+    }
+
+    public long getLastSessionId() {
+        return lastSessionId;
+    }
+}
@@ -0,0 +1,86 @@
+package com.netty.example.client;
+
+import com.netty.example.mic.proto.MessageRecord;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 一个连接上所有未收到响应的请求，以sessionId为key
+ * <p>
+ * 响应到达时按照消息头中的sessionId找到对应的future完成它；
+ * 每个请求在时间轮上注册一个超时任务，超时后从表中移除并以{@link TimeoutException}结束。
+ */
+public class InFlightRequests {
+
+    private final Map<Long, CompletableFuture<MessageRecord>> pending = new ConcurrentHashMap<>();
+    private final Timer timer;
+
+    public InFlightRequests(Timer timer) {
+        this.timer = timer;
+    }
+
+    /**
+     * 登记一个请求，返回等待响应的future
+     */
+    public CompletableFuture<MessageRecord> register(long sessionId, long timeout, TimeUnit unit) {
+        CompletableFuture<MessageRecord> future = new CompletableFuture<>();
+        if (pending.putIfAbsent(sessionId, future) != null) {
+            throw new IllegalStateException("sessionId重复：" + sessionId);
+        }
+        Timeout task = timer.newTimeout(t -> {
+            if (pending.remove(sessionId, future)) {
+                future.completeExceptionally(new TimeoutException("请求超时，sessionId=" + sessionId));
+            }
+        }, timeout, unit);
+        future.whenComplete((r, e) -> task.cancel());
+        return future;
+    }
+
+    /**
+     * 用响应完成对应的请求，找不到（已超时或者不是本连接发出的）返回false
+     */
+    public boolean complete(MessageRecord response) {
+        CompletableFuture<MessageRecord> future = pending.remove(response.getHeader().getSessionId());
+        return future != null && future.complete(response);
+    }
+
+    /**
+     * 请求发送失败
+     */
+    public void fail(long sessionId, Throwable cause) {
+        CompletableFuture<MessageRecord> future = pending.remove(sessionId);
+        if (future != null) {
+            future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * 收到GOAWAY时结束sessionId大于lastSessionId的请求，服务端不会处理它们
+     */
+    public void failAbove(long lastSessionId, Throwable cause) {
+        for (Long sessionId : pending.keySet()) {
+            if (sessionId > lastSessionId) {
+                fail(sessionId, cause);
+            }
+        }
+    }
+
+    /**
+     * 连接断开时结束所有未完成的请求
+     */
+    public void failAll(Throwable cause) {
+        for (Long sessionId : pending.keySet()) {
+            fail(sessionId, cause);
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+}
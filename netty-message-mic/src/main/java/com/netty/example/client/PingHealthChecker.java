@@ -0,0 +1,40 @@
+package com.netty.example.client;
+
+import com.netty.example.mic.opcode.OpCode;
+import io.netty.channel.Channel;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 发送一个PING请求，在超时时间内收到同一sessionId的响应即认为连接健康。
+ * 服务端开启心跳时回复PONG，没有开启时PING会像普通请求一样得到BUSI_RESP，两种都算健康
+ */
+public class PingHealthChecker implements ChannelHealthChecker {
+
+    private final long timeoutMillis;
+
+    public PingHealthChecker(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public Future<Boolean> isHealthy(Channel channel) {
+        Promise<Boolean> promise = channel.eventLoop().newPromise();
+        ProtocolConnection connection = channel.attr(ProtocolConnection.CONNECTION).get();
+        if (connection == null || !channel.isActive()) {
+            return promise.setSuccess(Boolean.FALSE);
+        }
+        connection.request(OpCode.PING.code(), null, timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((response, cause) -> {
+                    boolean healthy = cause == null;
+                    if (response != null) {
+                        response.release();
+                    }
+                    promise.trySuccess(healthy);
+                });
+        return promise;
+    }
+}
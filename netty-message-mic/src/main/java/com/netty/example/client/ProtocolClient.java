@@ -1,62 +1,53 @@
 package com.netty.example.client;
 
-import com.netty.example.mic.codec.MessageRecordDecoder;
-import com.netty.example.mic.codec.MessageRecordEncoder;
 import com.netty.example.mic.opcode.OpCode;
-import com.netty.example.mic.proto.Header;
 import com.netty.example.mic.proto.MessageRecord;
-import io.netty.bootstrap.Bootstrap;
-import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelInitializer;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 
-import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * 参数为tls时以TLS连接服务端（服务端也要以tls参数启动）
+ */
 public class ProtocolClient {
-    public static void main(String[] args) {
-        //创建工作线程
-        EventLoopGroup group = new NioEventLoopGroup();
-        Bootstrap b = new Bootstrap();
-        b.group(group).channel(NioSocketChannel.class)
-                .handler(new ChannelInitializer<SocketChannel>() {
+    /**
+     * 等待连接池建立第一个连接的时间，服务端没有启动时超时退出
+     */
+    private static final long CONNECT_WAIT_SECONDS = 10;
 
-                    @Override
-                    protected void initChannel(SocketChannel socketChannel) throws Exception {
-                        socketChannel.pipeline().addLast(
-                                        new LengthFieldBasedFrameDecoder(1024,
-                                                9, 4, 0, 0))
-                                .addLast(new MessageRecordEncoder())
-                                .addLast(new MessageRecordDecoder())
-                                .addLast(new ClientHandler());
-                    }
-                });
-        // 发起异步连接操作
-        try {
-            ChannelFuture future = b.connect(new InetSocketAddress("localhost", 8080)).sync();
-            Channel c = future.channel();
-            for (int i = 0; i < 500; i++) {
-                MessageRecord message = new MessageRecord();
-                Header header = new Header();
-                header.setSessionId(10001L);
-                header.setType(OpCode.BUSI_REQ.code());
-                message.setHeader(header);
+    public static void main(String[] args) {
+        ClientConfig config = new ClientConfig();
+        config.getTls().setEnabled(args.length > 0 && "tls".equals(args[0]));
+        int exitCode = 0;
+        try (AsyncProtocolClient client = new AsyncProtocolClient(config)) {
+            ProtocolConnectionPool pool = client.newPool("localhost", 8080);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(CONNECT_WAIT_SECONDS);
+            while (pool.activeCount() == 0) {
+                if (System.nanoTime() - deadline > 0) {
+                    System.err.println(CONNECT_WAIT_SECONDS + "秒内没有连上服务端localhost:8080");
+                    pool.close();
+                    exitCode = 1;
+                    return;
+                }
+                Thread.sleep(10);
+            }
+            // 500个请求同时发出，不等待上一个请求的响应，每个请求发到在途请求最少的连接上
+            CompletableFuture<?>[] futures = new CompletableFuture[500];
+            for (int i = 0; i < futures.length; i++) {
                 String context = "我是请求数据：" + i;
                 System.out.println(context);
-                header.setLength(context.length());
-                message.setBody(context);
-                c.writeAndFlush(message);
+                futures[i] = pool.request(OpCode.BUSI_REQ.code(), context)
+                        .thenAccept(MessageRecord::release);
             }
+            CompletableFuture.allOf(futures).join();
+            System.out.println("全部请求已收到响应");
+            pool.close();
         } catch (InterruptedException e) {
             e.printStackTrace();
         } finally {
-            group.shutdownGracefully();
+            if (exitCode != 0) {
+                System.exit(exitCode);
+            }
         }
-
-
     }
 }
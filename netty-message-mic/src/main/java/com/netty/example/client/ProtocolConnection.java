@@ -0,0 +1,131 @@
+package com.netty.example.client;
+
+import com.netty.example.mic.codec.MessageRecordEncoder;
+import com.netty.example.mic.codec.compress.Compression;
+import com.netty.example.mic.proto.Header;
+import com.netty.example.mic.proto.MessageRecord;
+import com.netty.example.mic.stream.MicStream;
+import com.netty.example.mic.stream.StreamListener;
+import com.netty.example.mic.stream.StreamMultiplexer;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一条mic协议连接，同一时刻可以有任意多个请求在途，响应通过sessionId和请求对应
+ */
+public class ProtocolConnection {
+
+    /**
+     * channel上挂载的ProtocolConnection，用于从Channel找到对应的连接，比如健康检查
+     */
+    public static final AttributeKey<ProtocolConnection> CONNECTION = AttributeKey.valueOf("mic.connection");
+
+    private final Channel channel;
+    private final InFlightRequests inFlightRequests;
+    private final AtomicLong sessionIds;
+    private final long requestTimeoutMillis;
+    private final CompletableFuture<Long> goAway;
+
+    ProtocolConnection(Channel channel, InFlightRequests inFlightRequests, CompletableFuture<Long> goAway,
+                       AtomicLong sessionIds, long requestTimeoutMillis) {
+        this.channel = channel;
+        this.inFlightRequests = inFlightRequests;
+        this.goAway = goAway;
+        this.sessionIds = sessionIds;
+        this.requestTimeoutMillis = requestTimeoutMillis;
+        channel.attr(CONNECTION).set(this);
+    }
+
+    /**
+     * 使用默认超时时间发送请求
+     */
+    public CompletableFuture<MessageRecord> request(byte type, Object body) {
+        return request(type, body, requestTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 发送请求，不等待响应直接返回，响应到达或者超时后future结束。
+     * 服务端已经发送GOAWAY时以{@link GoAwayException}结束。
+     * 引用计数的body总是由这个方法释放，没有写出时也一样
+     */
+    public CompletableFuture<MessageRecord> request(byte type, Object body, long timeout, TimeUnit unit) {
+        if (goAway.isDone()) {
+            ReferenceCountUtil.release(body);
+            CompletableFuture<MessageRecord> future = new CompletableFuture<>();
+            future.completeExceptionally(new GoAwayException(goAway.join()));
+            return future;
+        }
+        long sessionId = sessionIds.incrementAndGet();
+        CompletableFuture<MessageRecord> future = inFlightRequests.register(sessionId, timeout, unit);
+        //登记和收到GOAWAY并发时，IO线程的failAbove可能没有看到这个请求
+        if (goAway.isDone() && sessionId > goAway.join()) {
+            ReferenceCountUtil.release(body);
+            inFlightRequests.fail(sessionId, new GoAwayException(goAway.join()));
+            return future;
+        }
+        Header header = new Header();
+        header.setSessionId(sessionId);
+        header.setType(type);
+        channel.writeAndFlush(new MessageRecord(header, body)).addListener(f -> {
+            if (!f.isSuccess()) {
+                inFlightRequests.fail(sessionId, f.cause());
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 打开一个流，流id和请求的sessionId取自同一个序列，不会冲突。
+     * 流上的大数据分块发送，和这个连接上的其他请求交替进行
+     */
+    public MicStream openStream(StreamListener listener) {
+        StreamMultiplexer multiplexer = channel.pipeline().get(StreamMultiplexer.class);
+        //对端要求流id按打开顺序递增，分配id和交给multiplexer不能被其他线程插队
+        synchronized (multiplexer) {
+            return multiplexer.open(sessionIds.incrementAndGet(), listener);
+        }
+    }
+
+    /**
+     * 在途请求数
+     */
+    public int pendingCount() {
+        return inFlightRequests.size();
+    }
+
+    /**
+     * 调整这个连接上后续请求的压缩方式和级别，不影响其他连接
+     */
+    public void setCompression(Compression compression, int level) {
+        channel.pipeline().get(MessageRecordEncoder.class).setCompression(compression, level);
+    }
+
+    public boolean isActive() {
+        return channel.isActive();
+    }
+
+    /**
+     * 服务端已经发送GOAWAY，连接上不能再发新的请求，等在途请求完成后由服务端关闭
+     */
+    public boolean isDraining() {
+        return goAway.isDone();
+    }
+
+    CompletableFuture<Long> goAwayFuture() {
+        return goAway;
+    }
+
+    public Channel channel() {
+        return channel;
+    }
+
+    public ChannelFuture close() {
+        return channel.close();
+    }
+}
@@ -0,0 +1,237 @@
+package com.netty.example.client;
+
+import com.netty.example.mic.proto.MessageRecord;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.Promise;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 到同一个服务端地址的连接池
+ * <p>
+ * mic协议的连接支持流水线请求，所以池中的连接是共享的：{@link #acquire()}不会独占连接，
+ * 而是返回当前在途请求最少的健康连接，{@link #release(Channel)}不需要做任何事情。
+ * 每个连接定期用PING做健康检查，不健康的连接会被关闭；连接断开后按指数退避重连，
+ * 连接通过健康检查后退避才重置。
+ * 收到GOAWAY的连接立即从池中移出并补建新连接，旧连接上的在途请求继续完成，之后由服务端关闭。
+ */
+@Slf4j
+public class ProtocolConnectionPool implements ChannelPool {
+
+    private final AsyncProtocolClient client;
+    private final String host;
+    private final int port;
+    private final ConnectionPoolConfig config;
+    private final ChannelHealthChecker healthChecker;
+    private final EventLoop executor;
+    private final AtomicReferenceArray<ProtocolConnection> slots;
+    private final int[] reconnectAttempts;
+    private final ScheduledFuture<?> healthCheckTask;
+    private volatile boolean closed;
+
+    ProtocolConnectionPool(AsyncProtocolClient client, String host, int port, ConnectionPoolConfig config) {
+        this.client = client;
+        this.host = host;
+        this.port = port;
+        this.config = config;
+        this.healthChecker = new PingHealthChecker(config.getHealthCheckTimeoutMillis());
+        //连接的建立、重连和健康检查都在同一个EventLoop上执行，reconnectAttempts不需要同步
+        this.executor = client.eventLoopGroup().next();
+        this.slots = new AtomicReferenceArray<>(config.getConnectionsPerEndpoint());
+        this.reconnectAttempts = new int[config.getConnectionsPerEndpoint()];
+        for (int i = 0; i < slots.length(); i++) {
+            int slot = i;
+            executor.execute(() -> connect(slot));
+        }
+        this.healthCheckTask = executor.scheduleWithFixedDelay(this::checkHealth,
+                config.getHealthCheckIntervalMillis(), config.getHealthCheckIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 把请求发送到在途请求最少的连接上。请求因为GOAWAY没有被服务端处理时，换一个连接重试一次
+     */
+    public CompletableFuture<MessageRecord> request(byte type, Object body) {
+        ProtocolConnection connection = leastPending();
+        if (connection == null) {
+            return noConnection();
+        }
+        CompletableFuture<MessageRecord> future = new CompletableFuture<>();
+        //第一次发送会释放body，多持有一个引用留给重试，不重试时再释放
+        ReferenceCountUtil.retain(body);
+        connection.request(type, body).whenComplete((response, cause) -> {
+            if (!(cause instanceof GoAwayException)) {
+                ReferenceCountUtil.release(body);
+                complete(future, response, cause);
+                return;
+            }
+            ProtocolConnection retry = leastPending();
+            if (retry == null) {
+                ReferenceCountUtil.release(body);
+                future.completeExceptionally(cause);
+            } else {
+                retry.request(type, body).whenComplete((r, e) -> complete(future, r, e));
+            }
+        });
+        return future;
+    }
+
+    private CompletableFuture<MessageRecord> noConnection() {
+        CompletableFuture<MessageRecord> future = new CompletableFuture<>();
+        future.completeExceptionally(new IllegalStateException("没有可用的连接：" + host + ":" + port));
+        return future;
+    }
+
+    private static void complete(CompletableFuture<MessageRecord> future, MessageRecord response, Throwable cause) {
+        if (cause != null) {
+            future.completeExceptionally(cause);
+        } else {
+            future.complete(response);
+        }
+    }
+
+    @Override
+    public Future<Channel> acquire() {
+        return acquire(executor.newPromise());
+    }
+
+    @Override
+    public Future<Channel> acquire(Promise<Channel> promise) {
+        ProtocolConnection connection = leastPending();
+        if (connection == null) {
+            return promise.setFailure(new IllegalStateException("没有可用的连接：" + host + ":" + port));
+        }
+        return promise.setSuccess(connection.channel());
+    }
+
+    @Override
+    public Future<Void> release(Channel channel) {
+        return release(channel, executor.newPromise());
+    }
+
+    @Override
+    public Future<Void> release(Channel channel, Promise<Void> promise) {
+        //连接是共享的，归还时什么都不用做
+        return promise.setSuccess(null);
+    }
+
+    /**
+     * 当前可用的连接数
+     */
+    public int activeCount() {
+        int count = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            ProtocolConnection connection = slots.get(i);
+            if (connection != null && connection.isActive() && !connection.isDraining()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        healthCheckTask.cancel(false);
+        for (int i = 0; i < slots.length(); i++) {
+            ProtocolConnection connection = slots.getAndSet(i, null);
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    private ProtocolConnection leastPending() {
+        //从随机位置开始扫描，在途请求数相同时把请求分散到不同连接上
+        int size = slots.length();
+        int start = ThreadLocalRandom.current().nextInt(size);
+        ProtocolConnection best = null;
+        int bestPending = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            ProtocolConnection connection = slots.get((start + i) % size);
+            if (connection != null && connection.isActive() && !connection.isDraining()) {
+                int pending = connection.pendingCount();
+                if (pending < bestPending) {
+                    best = connection;
+                    bestPending = pending;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void connect(int slot) {
+        if (closed) {
+            return;
+        }
+        client.connectAsync(host, port).whenComplete((connection, cause) -> executor.execute(() -> {
+            if (cause != null) {
+                scheduleReconnect(slot, cause);
+                return;
+            }
+            if (closed) {
+                connection.close();
+                return;
+            }
+            //连上之后马上被关闭的服务端不能让重连退回初始间隔，等通过健康检查再重置
+            slots.set(slot, connection);
+            connection.channel().closeFuture().addListener(f -> executor.execute(() -> {
+                if (slots.compareAndSet(slot, connection, null)) {
+                    scheduleReconnect(slot, null);
+                }
+            }));
+            connection.goAwayFuture().thenRun(() -> executor.execute(() -> {
+                if (slots.compareAndSet(slot, connection, null)) {
+                    log.info("连接" + connection.channel() + "收到GOAWAY，建立新连接替换它");
+                    connect(slot);
+                }
+            }));
+        }));
+    }
+
+    private void scheduleReconnect(int slot, Throwable cause) {
+        if (closed) {
+            return;
+        }
+        int attempt = reconnectAttempts[slot]++;
+        long delay = Math.min(config.getReconnectMaxDelayMillis(),
+                config.getReconnectBaseDelayMillis() << Math.min(attempt, 20));
+        //加上随机抖动，避免所有连接同时重连
+        delay += ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        log.warn("连接" + host + ":" + port + "[" + slot + "]断开，" + delay + "ms后第" + (attempt + 1) + "次重连"
+                + (cause == null ? "" : "：" + cause.getMessage()));
+        executor.schedule(() -> connect(slot), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void checkHealth() {
+        for (int i = 0; i < slots.length(); i++) {
+            int slot = i;
+            ProtocolConnection connection = slots.get(slot);
+            if (connection == null) {
+                continue;
+            }
+            Channel channel = connection.channel();
+            healthChecker.isHealthy(channel).addListener(f -> {
+                if (!f.isSuccess() || !Boolean.TRUE.equals(f.getNow())) {
+                    log.warn("连接" + channel + "健康检查失败，关闭后重连");
+                    channel.close();
+                } else {
+                    executor.execute(() -> {
+                        if (slots.get(slot) == connection) {
+                            reconnectAttempts[slot] = 0;
+                        }
+                    });
+                }
+            });
+        }
+    }
+}
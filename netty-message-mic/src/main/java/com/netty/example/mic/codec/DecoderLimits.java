@@ -0,0 +1,34 @@
+package com.netty.example.mic.codec;
+
+import com.netty.example.mic.proto.ProtocolConstants;
+import lombok.Data;
+
+/**
+ * 每个连接的内存限制。
+ * 解码器一次只处理一条消息，{@link #maxMessageMemory}是解码过程中同时持有的内存上限；
+ * 解码出的消息交给业务线程后占用的内存由{@link #maxConnectionMemory}限制，由服务端的业务handler统计
+ */
+@Data
+public class DecoderLimits {
+    /**
+     * 消息头中声明的消息体长度上限，超过时在分配任何内存之前关闭连接
+     */
+    private int maxBodyLength = ProtocolConstants.MAX_BODY_LENGTH;
+    /**
+     * 压缩消息体解压后的长度上限
+     */
+    private int maxDecompressedLength = ProtocolConstants.MAX_DECOMPRESSED_LENGTH;
+    /**
+     * 解码一条消息时同时持有的内存上限：收到的消息体加上解压缓冲区
+     */
+    private int maxMessageMemory = 2 * ProtocolConstants.MAX_BODY_LENGTH;
+    /**
+     * 一个连接上已经解码、还没有处理完的消息按长度合计的上限，包括在业务线程队列里排队的消息。
+     * 超过时暂停读取这个连接，回落到一半以下时恢复
+     */
+    private long maxConnectionMemory = 8L * ProtocolConstants.MAX_BODY_LENGTH;
+    /**
+     * 消息体达到这个长度时改用复合缓冲区累积数据，避免大消息在收取过程中反复扩容拷贝
+     */
+    private int compositeThreshold = 64 * 1024;
+}
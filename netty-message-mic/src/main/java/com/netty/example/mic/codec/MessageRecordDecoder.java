@@ -1,41 +1,188 @@
 package com.netty.example.mic.codec;
 
+import com.netty.example.mic.codec.body.BodyCodec;
+import com.netty.example.mic.codec.body.BodyCodecRegistry;
+import com.netty.example.mic.codec.compress.Compression;
+import com.netty.example.mic.metrics.LogSampler;
 import com.netty.example.mic.proto.Header;
 import com.netty.example.mic.proto.MessageRecord;
+import com.netty.example.mic.proto.ProtocolConstants;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.ByteArrayInputStream;
-import java.io.ObjectInputStream;
 import java.util.List;
 
+/**
+ * mic协议的流式解码器，自己完成拆包，不需要前置LengthFieldBasedFrameDecoder
+ * <p>
+ * 先读满消息头，检查声明的长度没有超过限制后再等待消息体，所以对端声明一个巨大的长度不会导致分配内存；
+ * 大消息体的数据分多次到达时用复合缓冲区累积，不会反复扩容拷贝。
+ * 未注册的codec或压缩方式只丢弃这一条消息并触发{@link SkippedMessageEvent}，连接继续使用；长度超限则直接关闭连接。
+ */
 @Slf4j
 public class MessageRecordDecoder extends ByteToMessageDecoder {
+
+    private enum State {
+        HEADER,
+        BODY,
+        SKIP
+    }
+
+    private static final LogSampler LOG_SAMPLER = new LogSampler(1000);
+
+    private final BodyCodecRegistry codecs;
+    private final DecoderLimits limits;
+
+    private State state = State.HEADER;
+    private Header header;
+    private int skipRemaining;
+
+    public MessageRecordDecoder() {
+        this(BodyCodecRegistry.DEFAULT);
+    }
+
+    public MessageRecordDecoder(BodyCodecRegistry codecs) {
+        this(codecs, new DecoderLimits());
+    }
+
+    public MessageRecordDecoder(BodyCodecRegistry codecs, DecoderLimits limits) {
+        this.codecs = codecs;
+        this.limits = limits;
+    }
+
     @Override
     protected void decode(ChannelHandlerContext channelHandlerContext, ByteBuf byteBuf, List<Object> list) throws Exception {
-        MessageRecord record = new MessageRecord();
+        switch (state) {
+            case HEADER:
+                if (byteBuf.readableBytes() < ProtocolConstants.HEADER_LENGTH) {
+                    return;
+                }
+                header = readHeader(channelHandlerContext, byteBuf);
+                if (header == null) {
+                    //进入SKIP状态，剩下的数据在下一轮decode中跳过
+                    return;
+                }
+                if (header.getLength() >= limits.getCompositeThreshold()) {
+                    setCumulator(COMPOSITE_CUMULATOR);
+                }
+                state = State.BODY;
+                // fall through
+            case BODY:
+                if (byteBuf.readableBytes() < header.getLength()) {
+                    return;
+                }
+                MessageRecord record = new MessageRecord();
+                record.setHeader(header);
+                try {
+                    record.setBody(readBody(channelHandlerContext, header, byteBuf));
+                } finally {
+                    //消息体已经读走，解码失败时也要回到HEADER，否则decodeLast会把后面的数据当成这条消息的消息体
+                    header = null;
+                    state = State.HEADER;
+                    setCumulator(MERGE_CUMULATOR);
+                }
+                list.add(record);
+                if (log.isDebugEnabled() && LOG_SAMPLER.sample()) {
+                    log.debug("序列化出来的结果：{}", record);
+                }
+                return;
+            case SKIP:
+                int skip = Math.min(skipRemaining, byteBuf.readableBytes());
+                byteBuf.skipBytes(skip);
+                skipRemaining -= skip;
+                if (skipRemaining == 0) {
+                    state = State.HEADER;
+                }
+                return;
+            default:
+                throw new IllegalStateException("unknown state: " + state);
+        }
+    }
+
+    /**
+     * 读取消息头，消息需要跳过时返回null
+     */
+    private Header readHeader(ChannelHandlerContext ctx, ByteBuf byteBuf) {
         Header header = new Header();
         //读取8个字节的sessionid
         header.setSessionId(byteBuf.readLong());
         //读取一个字节的操作类型
         header.setType(byteBuf.readByte());
-        record.setHeader(header);
-        //如果byteBuf剩下的长度还有大于4个字节，说明body不为空
-        if (byteBuf.readableBytes() > 4) {
-            int length = byteBuf.readInt();
-            header.setLength(length);
-            byte[] contents = new byte[length];
-            byteBuf.readBytes(contents, 0, length);
-            ByteArrayInputStream bis = new ByteArrayInputStream(contents);
-            ObjectInputStream ois = new ObjectInputStream(bis);
-            record.setBody(ois.readObject());
-            list.add(record);
-            log.info("序列化出来的结果：" + record);
-        } else {
-            log.error("消息内容为空");
+        //读取一个字节的codec编号
+        byte codecId = byteBuf.readByte();
+        header.setCodec(codecId);
+        //读取一个字节的标志位
+        byte flags = byteBuf.readByte();
+        header.setFlags(flags);
+        int length = byteBuf.readInt();
+        header.setLength(length);
+        int maxLength = Math.min(limits.getMaxBodyLength(), limits.getMaxMessageMemory());
+        if (length < 0 || length > maxLength) {
+            //声明的长度不可信，后面的数据无法再对齐帧边界，只能关闭连接
+            byteBuf.skipBytes(byteBuf.readableBytes());
+            ctx.close();
+            throw new TooLongFrameException("消息体长度" + length + "超过上限" + maxLength);
+        }
+        if (codecId != BodyCodecRegistry.NONE
+                && (codecs.get(codecId) == null || Compression.fromFlags(flags) == null)) {
+            //帧边界仍然可信，跳过这条消息的消息体，连接可以继续使用
+            skipRemaining = length;
+            state = State.SKIP;
+            String reason = "未注册的codec：" + codecId + "，或未知的压缩方式，flags=" + flags;
+            if (LOG_SAMPLER.sample()) {
+                log.warn("跳过无法解码的消息，sessionId={}，{}", header.getSessionId(), reason);
+            }
+            ctx.fireUserEventTriggered(new SkippedMessageEvent(header, reason));
+            return null;
         }
+        return header;
+    }
 
+    private Object readBody(ChannelHandlerContext ctx, Header header, ByteBuf byteBuf) throws Exception {
+        int length = header.getLength();
+        if (header.getCodec() == BodyCodecRegistry.NONE) {
+            byteBuf.skipBytes(length);
+            return null;
+        }
+        BodyCodec codec = codecs.get(header.getCodec());
+        Compression compression = Compression.fromFlags(header.getFlags());
+        //消息体是累积缓冲区的一个retained slice，codec直接从中读取，没有中间的byte[]；长度为0时得到空的消息体
+        ByteBuf content = byteBuf.readRetainedSlice(length);
+        try {
+            if (compression != Compression.NONE) {
+                ByteBuf plain = decompress(ctx, compression, content);
+                content.release();
+                content = plain;
+            }
+            return codec.decode(content);
+        } finally {
+            content.release();
+        }
+    }
+
+    /**
+     * 解压到一块池化的缓冲区，调用方负责释放返回值和compressed
+     */
+    private ByteBuf decompress(ChannelHandlerContext ctx, Compression compression, ByteBuf compressed) {
+        ByteBuf plain = null;
+        try {
+            int originalLength = compressed.readInt();
+            if (originalLength < 0 || originalLength > limits.getMaxDecompressedLength()
+                    || (long) originalLength + compressed.readableBytes() > limits.getMaxMessageMemory()) {
+                throw new TooLongFrameException("解压后的长度" + originalLength + "超过上限");
+            }
+            plain = ctx.alloc().buffer(originalLength);
+            compression.decompressor().decompress(compressed, plain, originalLength);
+            return plain;
+        } catch (RuntimeException e) {
+            if (plain != null) {
+                plain.release();
+            }
+            throw e instanceof TooLongFrameException ? e : new CorruptedFrameException("消息体解压失败", e);
+        }
     }
 }
@@ -1,40 +1,113 @@
 package com.netty.example.mic.codec;
 
+import com.netty.example.mic.codec.body.BodyCodec;
+import com.netty.example.mic.codec.body.BodyCodecRegistry;
+import com.netty.example.mic.codec.compress.BodyCompressor;
+import com.netty.example.mic.codec.compress.Compression;
+import com.netty.example.mic.codec.compress.CompressionConfig;
+import com.netty.example.mic.metrics.LogSampler;
 import com.netty.example.mic.proto.Header;
 import com.netty.example.mic.proto.MessageRecord;
+import com.netty.example.mic.proto.ProtocolConstants;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.EncoderException;
 import io.netty.handler.codec.MessageToByteEncoder;
 import lombok.extern.slf4j.Slf4j;
 
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectOutputStream;
-
 @Slf4j
 public class MessageRecordEncoder extends MessageToByteEncoder<MessageRecord> {
+
+    private static final LogSampler LOG_SAMPLER = new LogSampler(1000);
+
+    private final BodyCodecRegistry codecs;
+    private final int compressionThreshold;
+    /**
+     * 每个连接的编码器有自己的压缩器，压缩级别可以按连接调整
+     */
+    private volatile BodyCompressor compressor;
+
+    public MessageRecordEncoder() {
+        this(BodyCodecRegistry.DEFAULT);
+    }
+
+    public MessageRecordEncoder(BodyCodecRegistry codecs) {
+        this(codecs, new CompressionConfig());
+    }
+
+    public MessageRecordEncoder(BodyCodecRegistry codecs, CompressionConfig compression) {
+        this.codecs = codecs;
+        this.compressionThreshold = compression.getThreshold();
+        this.compressor = compression.getCompression().newCompressor(compression.getLevel());
+    }
+
+    /**
+     * 修改这个连接后续消息的压缩方式和级别，Compression.NONE表示不压缩
+     */
+    public void setCompression(Compression compression, int level) {
+        this.compressor = compression.newCompressor(level);
+    }
+
     @Override
     public void encode(ChannelHandlerContext channelHandlerContext, MessageRecord record, ByteBuf byteBuf) throws Exception {
-        log.info("===========开始编码Header部分===========");
         Header header = record.getHeader();
+        if (log.isDebugEnabled() && LOG_SAMPLER.sample()) {
+            log.debug("开始编码：{}", header);
+        }
         //保存8个字节的sessionId
         byteBuf.writeLong(header.getSessionId());
         //写入1个字节的请求类型
         byteBuf.writeByte(header.getType());
+        //压缩位由编码器决定，其余标志位原样写出
+        int flags = header.getFlags() == null ? 0 : header.getFlags() & ~ProtocolConstants.FLAG_COMPRESSION_MASK;
 
-        log.info("===========开始编码Body部分===========");
         Object body = record.getBody();
         if (body != null) {
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            ObjectOutputStream oos = new ObjectOutputStream(bos);
-            oos.writeObject(body);
-            byte[] bytes = bos.toByteArray();
-            //写入消息体长度:占4个字节
-            byteBuf.writeInt(bytes.length);
-            //写入消息体内容
-            byteBuf.writeBytes(bytes);
+            BodyCodec codec = header.getCodec() != null ? codecs.get(header.getCodec()) : codecs.select(body);
+            if (codec == null) {
+                throw new EncoderException("未注册的codec：" + header.getCodec());
+            }
+            //写入1个字节的codec编号
+            byteBuf.writeByte(codec.id());
+            int flagsIndex = byteBuf.writerIndex();
+            byteBuf.writeByte(flags);
+            //先占位4个字节的消息体长度，消息体直接编码进byteBuf后再回填
+            int lengthIndex = byteBuf.writerIndex();
+            byteBuf.writeInt(0);
+            codec.encode(body, byteBuf);
+            BodyCompressor compressor = this.compressor;
+            int bodyLength = byteBuf.writerIndex() - lengthIndex - 4;
+            if (compressor != null && bodyLength >= compressionThreshold
+                    && compress(channelHandlerContext, compressor, byteBuf, lengthIndex + 4, bodyLength)) {
+                byteBuf.setByte(flagsIndex, flags | compressor.compression().flag());
+            }
+            byteBuf.setInt(lengthIndex, byteBuf.writerIndex() - lengthIndex - 4);
         } else {
+            byteBuf.writeByte(BodyCodecRegistry.NONE);
+            byteBuf.writeByte(flags);
             //写入消息长度占4个字节，长度为0
             byteBuf.writeInt(0);
         }
     }
+
+    /**
+     * 把byteBuf中从bodyIndex开始的消息体替换成压缩后的数据，压缩后没有变小时保持原样并返回false
+     */
+    private static boolean compress(ChannelHandlerContext ctx, BodyCompressor compressor, ByteBuf byteBuf,
+                                    int bodyIndex, int bodyLength) {
+        ByteBuf compressed = ctx.alloc().buffer(bodyLength);
+        try {
+            //压缩前的长度，解码端据此分配解压缓冲区
+            compressed.writeInt(bodyLength);
+            compressor.compress(byteBuf.slice(bodyIndex, bodyLength), compressed);
+            if (compressed.readableBytes() >= bodyLength) {
+                return false;
+            }
+            byteBuf.writerIndex(bodyIndex);
+            byteBuf.writeBytes(compressed);
+            return true;
+        } finally {
+            compressed.release();
+        }
+    }
 }
@@ -0,0 +1,16 @@
+package com.netty.example.mic.codec;
+
+import com.netty.example.mic.proto.Header;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * MessageRecordDecoder跳过一条无法解码的消息（未注册的codec或未知的压缩方式）时触发的用户事件。
+ * 帧边界仍然可信，连接继续使用，后面的handler可以据此结束对应sessionId的请求
+ */
+@Data
+@AllArgsConstructor
+public class SkippedMessageEvent {
+    private Header header;
+    private String reason;
+}
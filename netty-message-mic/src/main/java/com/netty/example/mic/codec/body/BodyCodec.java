@@ -0,0 +1,33 @@
+package com.netty.example.mic.codec.body;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 消息体编解码SPI，由消息头中的codec字节选择具体实现
+ * <p>
+ * 实现类直接向目标ByteBuf写入、从ByteBuf读取，不允许经过中间的byte[]。
+ * 实现必须是无状态、线程安全的，同一个实例会被所有连接共享。
+ */
+public interface BodyCodec {
+
+    /**
+     * codec在消息头中的编号，0保留给空消息体
+     */
+    byte id();
+
+    /**
+     * 编码器自动选择codec时，判断能否处理该类型的body
+     */
+    boolean supports(Object body);
+
+    /**
+     * 把body直接写入out
+     */
+    void encode(Object body, ByteBuf out) throws Exception;
+
+    /**
+     * 从in中解析body，in是帧的一个retained slice，只包含消息体部分。
+     * 调用方在decode返回后会释放in，实现如果要持有in中的数据需要自行retain。
+     */
+    Object decode(ByteBuf in) throws Exception;
+}
@@ -0,0 +1,71 @@
+package com.netty.example.mic.codec.body;
+
+import io.netty.handler.codec.EncoderException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * codec注册表，按消息头中的codec编号查找实现。
+ * <p>
+ * 注册表是不可变的，{@link #with(BodyCodec)}返回新的实例，因此可以在所有连接之间共享。
+ * 编码器自动选择codec时，按照注册顺序取第一个{@link BodyCodec#supports(Object)}的实现。
+ */
+public final class BodyCodecRegistry {
+
+    /**
+     * 空消息体使用的codec编号
+     */
+    public static final byte NONE = 0;
+
+    /**
+     * 内置codec：原始字节、UTF-8字符串、紧凑二进制，不包含java序列化
+     */
+    public static final BodyCodecRegistry DEFAULT = new BodyCodecRegistry(
+            RawBytesCodec.INSTANCE, Utf8StringCodec.INSTANCE, CompactBinaryCodec.INSTANCE);
+
+    private final BodyCodec[] byId = new BodyCodec[256];
+    private final BodyCodec[] ordered;
+
+    public BodyCodecRegistry(BodyCodec... codecs) {
+        for (BodyCodec codec : codecs) {
+            if (codec.id() == NONE) {
+                throw new IllegalArgumentException("codec编号0为空消息体保留：" + codec);
+            }
+            if (byId[codec.id() & 0xFF] != null) {
+                throw new IllegalArgumentException("codec编号重复：" + codec.id());
+            }
+            byId[codec.id() & 0xFF] = codec;
+        }
+        this.ordered = codecs.clone();
+    }
+
+    /**
+     * 返回追加了codec的新注册表
+     */
+    public BodyCodecRegistry with(BodyCodec codec) {
+        List<BodyCodec> codecs = new ArrayList<>(Arrays.asList(ordered));
+        codecs.add(codec);
+        return new BodyCodecRegistry(codecs.toArray(new BodyCodec[0]));
+    }
+
+    /**
+     * 按编号查找，找不到返回null
+     */
+    public BodyCodec get(byte id) {
+        return byId[id & 0xFF];
+    }
+
+    /**
+     * 按body类型选择codec
+     */
+    public BodyCodec select(Object body) {
+        for (BodyCodec codec : ordered) {
+            if (codec.supports(body)) {
+                return codec;
+            }
+        }
+        throw new EncoderException("没有可以编码该消息体的codec：" + body.getClass().getName());
+    }
+}
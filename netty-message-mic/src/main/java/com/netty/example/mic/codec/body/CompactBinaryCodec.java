@@ -0,0 +1,213 @@
+package com.netty.example.mic.codec.body;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.EncoderException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑二进制codec，用来替代java序列化传输常见的结构化数据。
+ * <p>
+ * 每个值以1个字节的类型标记开头，整数使用zigzag varint，字符串、字节数组、集合使用varint长度前缀。
+ * 支持：null、Boolean、Integer、Long、Double、String、byte[]、List、Map，集合元素可以嵌套，最多嵌套64层。
+ */
+public final class CompactBinaryCodec implements BodyCodec {
+
+    public static final byte ID = 3;
+    public static final CompactBinaryCodec INSTANCE = new CompactBinaryCodec();
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_TRUE = 1;
+    private static final byte TAG_FALSE = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_DOUBLE = 5;
+    private static final byte TAG_STRING = 6;
+    private static final byte TAG_BYTES = 7;
+    private static final byte TAG_LIST = 8;
+    private static final byte TAG_MAP = 9;
+    //集合的最大嵌套层数，对端构造深层嵌套时在栈溢出之前拒绝
+    private static final int MAX_DEPTH = 64;
+
+    private CompactBinaryCodec() {
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public boolean supports(Object body) {
+        return body instanceof Boolean || body instanceof Integer || body instanceof Long
+                || body instanceof Double || body instanceof List || body instanceof Map;
+    }
+
+    @Override
+    public void encode(Object body, ByteBuf out) {
+        writeValue(body, out);
+    }
+
+    @Override
+    public Object decode(ByteBuf in) {
+        return readValue(in, 0);
+    }
+
+    private static void writeValue(Object value, ByteBuf out) {
+        if (value == null) {
+            out.writeByte(TAG_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+        } else if (value instanceof Integer) {
+            out.writeByte(TAG_INT);
+            writeVarLong(out, zigzag((Integer) value));
+        } else if (value instanceof Long) {
+            out.writeByte(TAG_LONG);
+            writeVarLong(out, zigzag((Long) value));
+        } else if (value instanceof Double) {
+            out.writeByte(TAG_DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof CharSequence) {
+            CharSequence seq = (CharSequence) value;
+            out.writeByte(TAG_STRING);
+            writeVarLong(out, ByteBufUtil.utf8Bytes(seq));
+            ByteBufUtil.writeUtf8(out, seq);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(TAG_BYTES);
+            writeVarLong(out, bytes.length);
+            out.writeBytes(bytes);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(TAG_LIST);
+            writeVarLong(out, list.size());
+            for (Object element : list) {
+                writeValue(element, out);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(TAG_MAP);
+            writeVarLong(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(entry.getKey(), out);
+                writeValue(entry.getValue(), out);
+            }
+        } else {
+            throw new EncoderException("compact binary codec不支持的类型：" + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(ByteBuf in, int depth) {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_TRUE:
+                return Boolean.TRUE;
+            case TAG_FALSE:
+                return Boolean.FALSE;
+            case TAG_INT:
+                return (int) unzigzag(readVarLong(in));
+            case TAG_LONG:
+                return unzigzag(readVarLong(in));
+            case TAG_DOUBLE:
+                return in.readDouble();
+            case TAG_STRING: {
+                int length = readLength(in);
+                String value = in.toString(in.readerIndex(), length, StandardCharsets.UTF_8);
+                in.skipBytes(length);
+                return value;
+            }
+            case TAG_BYTES: {
+                byte[] bytes = new byte[readLength(in)];
+                in.readBytes(bytes);
+                return bytes;
+            }
+            case TAG_LIST: {
+                checkDepth(depth);
+                int size = readCount(in);
+                List<Object> list = new ArrayList<>(initialCapacity(size, in));
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in, depth + 1));
+                }
+                return list;
+            }
+            case TAG_MAP: {
+                checkDepth(depth);
+                int size = readCount(in);
+                Map<Object, Object> map = new LinkedHashMap<>(initialCapacity(size * 2, in));
+                for (int i = 0; i < size; i++) {
+                    map.put(readValue(in, depth + 1), readValue(in, depth + 1));
+                }
+                return map;
+            }
+            default:
+                throw new CorruptedFrameException("compact binary codec未知的类型标记：" + tag);
+        }
+    }
+
+    /**
+     * 读取字节长度，并校验不会超出剩余可读字节，避免按照对端声明的长度盲目分配内存
+     */
+    private static int readLength(ByteBuf in) {
+        long length = readVarLong(in);
+        if (length < 0 || length > in.readableBytes()) {
+            throw new CorruptedFrameException("compact binary codec长度非法：" + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * 集合的每个元素至少占1个字节，元素个数同样不能超过剩余可读字节
+     */
+    private static int readCount(ByteBuf in) {
+        return readLength(in);
+    }
+
+    private static void checkDepth(int depth) {
+        if (depth >= MAX_DEPTH) {
+            throw new CorruptedFrameException("compact binary codec嵌套超过" + MAX_DEPTH + "层");
+        }
+    }
+
+    /**
+     * 元素个数来自对端，预分配的容量不超过剩余可读字节，元素不够时集合按需扩容
+     */
+    private static int initialCapacity(int size, ByteBuf in) {
+        return Math.min(size, in.readableBytes());
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(ByteBuf in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new CorruptedFrameException("compact binary codec varint过长");
+    }
+}
@@ -0,0 +1,48 @@
+package com.netty.example.mic.codec.body;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * 兼容旧版本的java序列化codec。
+ * <p>
+ * 性能差并且反序列化不可信数据有安全风险，默认不注册，需要通过
+ * {@code BodyCodecRegistry.DEFAULT.with(JdkSerializationCodec.INSTANCE)}显式开启。
+ */
+public final class JdkSerializationCodec implements BodyCodec {
+
+    public static final byte ID = 127;
+    public static final JdkSerializationCodec INSTANCE = new JdkSerializationCodec();
+
+    private JdkSerializationCodec() {
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public boolean supports(Object body) {
+        return body instanceof Serializable;
+    }
+
+    @Override
+    public void encode(Object body, ByteBuf out) throws Exception {
+        try (ObjectOutputStream oos = new ObjectOutputStream(new ByteBufOutputStream(out))) {
+            oos.writeObject(body);
+        }
+    }
+
+    @Override
+    public Object decode(ByteBuf in) throws Exception {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteBufInputStream(in))) {
+            return ois.readObject();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.netty.example.mic.codec.body;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 原始字节codec：body为ByteBuf或byte[]，解码得到的是帧的retained slice，没有任何拷贝。
+ * 解码出来的ByteBuf由MessageRecord持有，使用完需要release。
+ */
+public final class RawBytesCodec implements BodyCodec {
+
+    public static final byte ID = 1;
+    public static final RawBytesCodec INSTANCE = new RawBytesCodec();
+
+    private RawBytesCodec() {
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public boolean supports(Object body) {
+        return body instanceof ByteBuf || body instanceof byte[];
+    }
+
+    @Override
+    public void encode(Object body, ByteBuf out) {
+        if (body instanceof ByteBuf) {
+            ByteBuf buf = (ByteBuf) body;
+            //不移动源buf的读指针，释放由编码器统一处理
+            out.writeBytes(buf, buf.readerIndex(), buf.readableBytes());
+        } else {
+            out.writeBytes((byte[]) body);
+        }
+    }
+
+    @Override
+    public Object decode(ByteBuf in) {
+        return in.retain();
+    }
+}
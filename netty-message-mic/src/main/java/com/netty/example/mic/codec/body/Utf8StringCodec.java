@@ -0,0 +1,40 @@
+package com.netty.example.mic.codec.body;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8字符串codec，编码时直接把字符写进ByteBuf，不经过getBytes()
+ */
+public final class Utf8StringCodec implements BodyCodec {
+
+    public static final byte ID = 2;
+    public static final Utf8StringCodec INSTANCE = new Utf8StringCodec();
+
+    private Utf8StringCodec() {
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public boolean supports(Object body) {
+        return body instanceof CharSequence;
+    }
+
+    @Override
+    public void encode(Object body, ByteBuf out) {
+        ByteBufUtil.writeUtf8(out, (CharSequence) body);
+    }
+
+    @Override
+    public Object decode(ByteBuf in) {
+        String value = in.toString(in.readerIndex(), in.readableBytes(), StandardCharsets.UTF_8);
+        in.skipBytes(in.readableBytes());
+        return value;
+    }
+}
@@ -0,0 +1,26 @@
+package com.netty.example.mic.codec.compress;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 消息体压缩算法
+ * <p>
+ * 实现直接在ByteBuf的内存上压缩和解压，不经过中间的byte[]。
+ */
+public interface BodyCompressor {
+
+    /**
+     * 压缩算法，编码器据此设置Header.flags
+     */
+    Compression compression();
+
+    /**
+     * 压缩in的全部可读字节，追加写入out，返回写入的字节数
+     */
+    int compress(ByteBuf in, ByteBuf out);
+
+    /**
+     * 解压in的全部可读字节，追加写入out，解压后的长度必须正好是originalLength
+     */
+    void decompress(ByteBuf in, ByteBuf out, int originalLength);
+}
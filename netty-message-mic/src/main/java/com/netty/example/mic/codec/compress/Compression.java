@@ -0,0 +1,63 @@
+package com.netty.example.mic.codec.compress;
+
+import com.netty.example.mic.proto.ProtocolConstants;
+
+/**
+ * 消息体的压缩方式，编号保存在Header.flags的低2位
+ */
+public enum Compression {
+    NONE(0),
+    LZ4(1),
+    ZSTD(2);
+
+    private final byte flag;
+
+    Compression(int flag) {
+        this.flag = (byte) flag;
+    }
+
+    public byte flag() {
+        return flag;
+    }
+
+    /**
+     * 创建指定压缩级别的压缩器，level为0时使用算法的默认级别
+     */
+    public BodyCompressor newCompressor(int level) {
+        switch (this) {
+            case LZ4:
+                return new Lz4BodyCompressor(level);
+            case ZSTD:
+                return new ZstdBodyCompressor(level);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 解压不需要压缩级别，所有连接共用一个实例
+     */
+    public BodyCompressor decompressor() {
+        switch (this) {
+            case LZ4:
+                return Lz4BodyCompressor.DECOMPRESSOR;
+            case ZSTD:
+                return ZstdBodyCompressor.DECOMPRESSOR;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 从Header.flags中取出压缩方式，未知的编号返回null
+     */
+    public static Compression fromFlags(byte flags) {
+        int flag = flags & ProtocolConstants.FLAG_COMPRESSION_MASK;
+        for (Compression compression : values()) {
+            if (compression.flag == flag) {
+                return compression;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.netty.example.mic.codec.compress;
+
+import lombok.Data;
+
+/**
+ * 消息体压缩配置，每个连接的编码器按这个配置创建自己的压缩器
+ */
+@Data
+public class CompressionConfig {
+    /**
+     * 压缩算法，默认不压缩。解码端总是能解压任何算法，和这里的配置无关
+     */
+    private Compression compression = Compression.NONE;
+    /**
+     * 编码后的消息体达到这个长度才压缩，小消息压缩省不了多少字节却要付出CPU
+     */
+    private int threshold = 512;
+    /**
+     * 压缩级别，0表示算法默认值：LZ4为快速模式，大于0使用LZ4 HC；zstd默认3级
+     */
+    private int level = 0;
+}
@@ -0,0 +1,67 @@
+package com.netty.example.mic.codec.compress;
+
+import io.netty.buffer.ByteBuf;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * LZ4压缩，优先使用JNI实现，不可用时退回纯Java实现
+ * <p>
+ * 解压的数据来自对端，不可信，只能用safeDecompressor：它按输入长度解析并检查输出边界，
+ * fastDecompressor只按输出长度解析，数据被篡改时会越界读取。
+ */
+public class Lz4BodyCompressor implements BodyCompressor {
+
+    private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+
+    static final Lz4BodyCompressor DECOMPRESSOR = new Lz4BodyCompressor(0);
+
+    private final LZ4Compressor compressor;
+    private final LZ4SafeDecompressor decompressor = FACTORY.safeDecompressor();
+
+    public Lz4BodyCompressor(int level) {
+        this.compressor = level > 0 ? FACTORY.highCompressor(level) : FACTORY.fastCompressor();
+    }
+
+    @Override
+    public Compression compression() {
+        return Compression.LZ4;
+    }
+
+    @Override
+    public int compress(ByteBuf in, ByteBuf out) {
+        int length = in.readableBytes();
+        int maxLength = compressor.maxCompressedLength(length);
+        out.ensureWritable(maxLength);
+        if (out.nioBufferCount() != 1) {
+            //复合缓冲区的nioBuffer是一份拷贝，写进去的数据会丢失
+            throw new IllegalArgumentException("LZ4输出缓冲区必须是连续内存");
+        }
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), length);
+        ByteBuffer dst = out.nioBuffer(out.writerIndex(), maxLength);
+        int written = compressor.compress(src, src.position(), length, dst, dst.position(), maxLength);
+        in.skipBytes(length);
+        out.writerIndex(out.writerIndex() + written);
+        return written;
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out, int originalLength) {
+        int length = in.readableBytes();
+        out.ensureWritable(originalLength);
+        if (out.nioBufferCount() != 1) {
+            throw new IllegalArgumentException("LZ4输出缓冲区必须是连续内存");
+        }
+        ByteBuffer src = in.nioBuffer(in.readerIndex(), length);
+        ByteBuffer dst = out.nioBuffer(out.writerIndex(), originalLength);
+        int written = decompressor.decompress(src, src.position(), length, dst, dst.position(), originalLength);
+        if (written != originalLength) {
+            throw new IllegalArgumentException("LZ4解压长度不匹配：" + written + " != " + originalLength);
+        }
+        in.skipBytes(length);
+        out.writerIndex(out.writerIndex() + originalLength);
+    }
+}
@@ -0,0 +1,107 @@
+package com.netty.example.mic.codec.compress;
+
+import com.github.luben.zstd.Zstd;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.nio.ByteBuffer;
+
+/**
+ * zstd压缩
+ * <p>
+ * zstd-jni只接受都是直接内存或者都是数组的缓冲区，两边不一致时把不满足的一方换成池化的直接内存。
+ */
+public class ZstdBodyCompressor implements BodyCompressor {
+
+    static final ZstdBodyCompressor DECOMPRESSOR = new ZstdBodyCompressor(0);
+
+    private static final int DEFAULT_LEVEL = 3;
+
+    private final int level;
+
+    public ZstdBodyCompressor(int level) {
+        this.level = level > 0 ? Math.min(level, Zstd.maxCompressionLevel()) : DEFAULT_LEVEL;
+    }
+
+    @Override
+    public Compression compression() {
+        return Compression.ZSTD;
+    }
+
+    @Override
+    public int compress(ByteBuf in, ByteBuf out) {
+        int written = (int) transform(in, out, (int) Zstd.compressBound(in.readableBytes()), true);
+        in.skipBytes(in.readableBytes());
+        return written;
+    }
+
+    @Override
+    public void decompress(ByteBuf in, ByteBuf out, int originalLength) {
+        long read = transform(in, out, originalLength, false);
+        if (read != originalLength) {
+            throw new IllegalArgumentException("zstd解压长度不匹配：" + read + " != " + originalLength);
+        }
+        in.skipBytes(in.readableBytes());
+    }
+
+    /**
+     * 把in的全部可读字节压缩或解压后追加到out，最多写出maxLength个字节，返回实际写出的字节数
+     */
+    private long transform(ByteBuf in, ByteBuf out, int maxLength, boolean compress) {
+        int length = in.readableBytes();
+        out.ensureWritable(maxLength);
+        long result;
+        if (in.hasArray() && out.hasArray()) {
+            byte[] dst = out.array();
+            int dstOffset = out.arrayOffset() + out.writerIndex();
+            byte[] src = in.array();
+            int srcOffset = in.arrayOffset() + in.readerIndex();
+            result = compress
+                    ? Zstd.compressByteArray(dst, dstOffset, maxLength, src, srcOffset, length, level)
+                    : Zstd.decompressByteArray(dst, dstOffset, maxLength, src, srcOffset, length);
+            check(result);
+            out.writerIndex(out.writerIndex() + (int) result);
+            return result;
+        }
+        ByteBuf src = isSingleDirect(in) ? in : copyToDirect(in);
+        ByteBuf dst = isSingleDirect(out) ? out : ByteBufAllocator.DEFAULT.directBuffer(maxLength);
+        try {
+            ByteBuffer srcBuffer = src.nioBuffer(src.readerIndex(), length);
+            ByteBuffer dstBuffer = dst.nioBuffer(dst.writerIndex(), maxLength);
+            result = compress
+                    ? Zstd.compressDirectByteBuffer(dstBuffer, dstBuffer.position(), maxLength,
+                    srcBuffer, srcBuffer.position(), length, level)
+                    : Zstd.decompressDirectByteBuffer(dstBuffer, dstBuffer.position(), maxLength,
+                    srcBuffer, srcBuffer.position(), length);
+            check(result);
+            dst.writerIndex(dst.writerIndex() + (int) result);
+            if (dst != out) {
+                out.writeBytes(dst);
+            }
+            return result;
+        } finally {
+            if (src != in) {
+                src.release();
+            }
+            if (dst != out) {
+                dst.release();
+            }
+        }
+    }
+
+    private static boolean isSingleDirect(ByteBuf buf) {
+        return buf.isDirect() && buf.nioBufferCount() == 1;
+    }
+
+    private static ByteBuf copyToDirect(ByteBuf in) {
+        ByteBuf copy = ByteBufAllocator.DEFAULT.directBuffer(in.readableBytes());
+        copy.writeBytes(in, in.readerIndex(), in.readableBytes());
+        return copy;
+    }
+
+    private static void check(long result) {
+        if (Zstd.isError(result)) {
+            throw new IllegalArgumentException("zstd失败：" + Zstd.getErrorName(result));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.netty.example.mic.heartbeat;
+
+import io.netty.channel.Channel;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接登记表，统计存活、空闲和因心跳超时被驱逐的连接数，用于按真实并发评估服务器容量
+ */
+public class ConnectionRegistry {
+    private final Set<Channel> live = ConcurrentHashMap.newKeySet();
+    private final Set<Channel> idle = ConcurrentHashMap.newKeySet();
+    private final LongAdder evicted = new LongAdder();
+
+    void register(Channel channel) {
+        live.add(channel);
+    }
+
+    void unregister(Channel channel) {
+        live.remove(channel);
+        idle.remove(channel);
+    }
+
+    void markIdle(Channel channel) {
+        idle.add(channel);
+    }
+
+    void markActive(Channel channel) {
+        idle.remove(channel);
+    }
+
+    void evict(Channel channel) {
+        evicted.increment();
+        channel.close();
+    }
+
+    /**
+     * 当前存活的连接数
+     */
+    public int getLiveCount() {
+        return live.size();
+    }
+
+    /**
+     * 至少错过一次心跳、还没有恢复的连接数
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * 累计因为心跳超时被关闭的连接数
+     */
+    public long getEvictedCount() {
+        return evicted.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "live=" + getLiveCount() + ", idle=" + getIdleCount() + ", evicted=" + getEvictedCount();
+    }
+}
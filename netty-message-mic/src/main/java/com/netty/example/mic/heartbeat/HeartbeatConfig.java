@@ -0,0 +1,20 @@
+package com.netty.example.mic.heartbeat;
+
+import lombok.Data;
+
+/**
+ * 心跳配置，客户端和服务端共用
+ */
+@Data
+public class HeartbeatConfig {
+    private boolean enabled = true;
+    /**
+     * 客户端在这段时间内没有发送任何数据时发送PING；
+     * 任意一端在这段时间内没有读到任何数据记为一次心跳丢失
+     */
+    private int intervalSeconds = 10;
+    /**
+     * 连续丢失的心跳次数达到该值时关闭连接
+     */
+    private int maxMissed = 3;
+}
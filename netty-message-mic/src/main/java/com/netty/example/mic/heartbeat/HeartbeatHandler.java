@@ -0,0 +1,110 @@
+package com.netty.example.mic.heartbeat;
+
+import com.netty.example.mic.opcode.OpCode;
+import com.netty.example.mic.proto.Header;
+import com.netty.example.mic.proto.MessageRecord;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于PING/PONG的心跳处理，放在MessageRecordDecoder之后、业务handler之前
+ * <ul>
+ *     <li>收到PING直接在IO线程回复PONG，不进入业务派发</li>
+ *     <li>客户端写空闲时发送PING</li>
+ *     <li>读空闲一次记为丢失一次心跳，连续丢失maxMissed次后关闭连接；读到任何消息都会清零</li>
+ * </ul>
+ * 心跳自己发出的PING使用sessionId=0，对应的PONG在这里消费；其他sessionId的PONG继续向后传递，
+ * 这样请求方可以把PING当成普通请求等待响应，用于连接健康检查。
+ */
+@Slf4j
+public class HeartbeatHandler extends ChannelInboundHandlerAdapter {
+
+    public static final long HEARTBEAT_SESSION_ID = 0L;
+
+    private final boolean sendPing;
+    private final int maxMissed;
+    private final ConnectionRegistry registry;
+    private int missed;
+
+    public HeartbeatHandler(boolean sendPing, int maxMissed, ConnectionRegistry registry) {
+        this.sendPing = sendPing;
+        this.maxMissed = maxMissed;
+        this.registry = registry;
+    }
+
+    /**
+     * 和HeartbeatHandler配套的空闲检测：客户端同时检测读空闲和写空闲，服务端只检测读空闲
+     */
+    public static IdleStateHandler newIdleStateHandler(boolean sendPing, HeartbeatConfig config) {
+        int interval = config.getIntervalSeconds();
+        return new IdleStateHandler(interval, sendPing ? interval : 0, 0, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        registry.register(ctx.channel());
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        registry.unregister(ctx.channel());
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (missed > 0) {
+            missed = 0;
+            registry.markActive(ctx.channel());
+        }
+        MessageRecord record = (MessageRecord) msg;
+        Header header = record.getHeader();
+        byte type = header.getType();
+        if (type == OpCode.PING.code()) {
+            ReferenceCountUtil.release(record);
+            ctx.writeAndFlush(newRecord(header.getSessionId(), OpCode.PONG));
+        } else if (type == OpCode.PONG.code() && header.getSessionId() == HEARTBEAT_SESSION_ID) {
+            ReferenceCountUtil.release(record);
+        } else {
+            ctx.fireChannelRead(msg);
+        }
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (!(evt instanceof IdleStateEvent)) {
+            super.userEventTriggered(ctx, evt);
+            return;
+        }
+        switch (((IdleStateEvent) evt).state()) {
+            case WRITER_IDLE:
+                if (sendPing) {
+                    ctx.writeAndFlush(newRecord(HEARTBEAT_SESSION_ID, OpCode.PING));
+                }
+                break;
+            case READER_IDLE:
+                registry.markIdle(ctx.channel());
+                if (++missed >= maxMissed) {
+                    log.warn(ctx.channel().remoteAddress() + " 连续" + missed + "次没有收到心跳，关闭连接");
+                    registry.evict(ctx.channel());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static MessageRecord newRecord(long sessionId, OpCode opCode) {
+        Header header = new Header();
+        header.setSessionId(sessionId);
+        header.setType(opCode.code());
+        return new MessageRecord(header, null);
+    }
+}
@@ -0,0 +1,27 @@
+package com.netty.example.mic.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按固定比例采样逐条消息的日志，避免日志本身成为吞吐量瓶颈。
+ * 调用方应当先判断日志级别是否开启，关闭时不会触碰计数器
+ */
+public class LogSampler {
+
+    private final AtomicLong counter = new AtomicLong();
+    private final int rate;
+
+    /**
+     * @param rate 每rate条记录一条
+     */
+    public LogSampler(int rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("rate必须大于0");
+        }
+        this.rate = rate;
+    }
+
+    public boolean sample() {
+        return counter.getAndIncrement() % rate == 0;
+    }
+}
@@ -0,0 +1,216 @@
+package com.netty.example.mic.metrics;
+
+import com.netty.example.mic.opcode.OpCode;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOutboundBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一个服务端的消息统计：按OpCode统计收发的消息数和字节数，解码、处理、编码三个阶段的延迟分布，
+ * 以及每个连接出站缓冲区中还没有写到socket的字节数。
+ * <p>
+ * 由{@link MetricsHandler}在IO线程上记录，计数用LongAdder、延迟用ConcurrentHistogram，读取不需要加锁；
+ * 可以直接调用getter，也可以注册成JMX的MXBean用jconsole查看。
+ */
+@Slf4j
+public class MessageMetrics implements MessageMetricsMXBean {
+
+    private static final int TYPES = 256;
+    private static final int TOP_CHANNELS = 10;
+
+    private final LongAdder[] inboundMessages = newAdders();
+    private final LongAdder[] inboundBytes = newAdders();
+    private final LongAdder[] outboundMessages = newAdders();
+    private final LongAdder[] outboundBytes = newAdders();
+    private final Histogram decodeNanos = new ConcurrentHistogram(3);
+    private final Histogram handleNanos = new ConcurrentHistogram(3);
+    private final Histogram encodeNanos = new ConcurrentHistogram(3);
+    private final Set<Channel> channels = ConcurrentHashMap.newKeySet();
+    private ObjectName objectName;
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[TYPES];
+        for (int i = 0; i < TYPES; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    void channelActive(Channel channel) {
+        channels.add(channel);
+    }
+
+    void channelInactive(Channel channel) {
+        channels.remove(channel);
+    }
+
+    void inbound(byte type, long bytes, long decodeNanos) {
+        inboundMessages[type & 0xFF].increment();
+        inboundBytes[type & 0xFF].add(bytes);
+        this.decodeNanos.recordValue(decodeNanos);
+    }
+
+    void outbound(byte type, long bytes, long encodeNanos) {
+        outboundMessages[type & 0xFF].increment();
+        outboundBytes[type & 0xFF].add(bytes);
+        this.encodeNanos.recordValue(encodeNanos);
+    }
+
+    void handled(long handleNanos) {
+        this.handleNanos.recordValue(handleNanos);
+    }
+
+    /**
+     * 注册到平台MBeanServer，名称为com.netty.example.mic:type=MessageMetrics,name=name
+     */
+    public synchronized void registerMBean(String name) {
+        try {
+            ObjectName objectName = new ObjectName("com.netty.example.mic:type=MessageMetrics,name=" + ObjectName.quote(name));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(this, objectName);
+                this.objectName = objectName;
+            }
+        } catch (JMException e) {
+            log.warn("注册MessageMetrics MBean失败", e);
+        }
+    }
+
+    public synchronized void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            log.warn("注销MessageMetrics MBean失败", e);
+        }
+        objectName = null;
+    }
+
+    @Override
+    public Map<String, Long> getInboundMessages() {
+        return byOpCode(inboundMessages);
+    }
+
+    @Override
+    public Map<String, Long> getInboundBytes() {
+        return byOpCode(inboundBytes);
+    }
+
+    @Override
+    public Map<String, Long> getOutboundMessages() {
+        return byOpCode(outboundMessages);
+    }
+
+    @Override
+    public Map<String, Long> getOutboundBytes() {
+        return byOpCode(outboundBytes);
+    }
+
+    @Override
+    public Map<String, Double> getDecodeLatency() {
+        return percentiles(decodeNanos);
+    }
+
+    @Override
+    public Map<String, Double> getHandleLatency() {
+        return percentiles(handleNanos);
+    }
+
+    @Override
+    public Map<String, Double> getEncodeLatency() {
+        return percentiles(encodeNanos);
+    }
+
+    @Override
+    public int getChannelCount() {
+        return channels.size();
+    }
+
+    @Override
+    public long getPendingOutboundBytes() {
+        long total = 0;
+        for (Channel channel : channels) {
+            total += pendingOutboundBytes(channel);
+        }
+        return total;
+    }
+
+    @Override
+    public Map<String, Long> getTopPendingOutboundBytes() {
+        Map<String, Long> top = new LinkedHashMap<>();
+        channels.stream()
+                .map(channel -> new SimpleImmutableEntry<>(String.valueOf(channel.remoteAddress()), pendingOutboundBytes(channel)))
+                .filter(entry -> entry.getValue() > 0)
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(TOP_CHANNELS)
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+
+    /**
+     * 单个连接出站缓冲区中还没有写到socket的字节数
+     */
+    public static long pendingOutboundBytes(Channel channel) {
+        ChannelOutboundBuffer buffer = channel.unsafe().outboundBuffer();
+        return buffer == null ? 0 : buffer.totalPendingWriteBytes();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < TYPES; i++) {
+            inboundMessages[i].reset();
+            inboundBytes[i].reset();
+            outboundMessages[i].reset();
+            outboundBytes[i].reset();
+        }
+        decodeNanos.reset();
+        handleNanos.reset();
+        encodeNanos.reset();
+    }
+
+    private static Map<String, Long> byOpCode(LongAdder[] adders) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < TYPES; i++) {
+            long value = adders[i].sum();
+            if (value > 0) {
+                OpCode opCode = OpCode.of((byte) i);
+                result.put(opCode == null ? "type-" + i : opCode.name(), value);
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, Double> percentiles(Histogram histogram) {
+        Histogram copy = histogram.copy();
+        Map<String, Double> result = new LinkedHashMap<>();
+        result.put("count", (double) copy.getTotalCount());
+        result.put("p50", copy.getValueAtPercentile(50) / 1000.0);
+        result.put("p99", copy.getValueAtPercentile(99) / 1000.0);
+        result.put("p999", copy.getValueAtPercentile(99.9) / 1000.0);
+        result.put("max", copy.getMaxValue() / 1000.0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "inbound=" + getInboundMessages() + ", inboundBytes=" + getInboundBytes()
+                + ", outbound=" + getOutboundMessages() + ", outboundBytes=" + getOutboundBytes()
+                + ", decodeUs=" + getDecodeLatency() + ", handleUs=" + getHandleLatency()
+                + ", encodeUs=" + getEncodeLatency() + ", pendingOutboundBytes=" + getPendingOutboundBytes();
+    }
+}
@@ -0,0 +1,37 @@
+package com.netty.example.mic.metrics;
+
+import java.util.Map;
+
+/**
+ * {@link MessageMetrics}的JMX视图，延迟单位为微秒
+ */
+public interface MessageMetricsMXBean {
+
+    Map<String, Long> getInboundMessages();
+
+    Map<String, Long> getInboundBytes();
+
+    Map<String, Long> getOutboundMessages();
+
+    Map<String, Long> getOutboundBytes();
+
+    /**
+     * 键为count、p50、p99、p999、max
+     */
+    Map<String, Double> getDecodeLatency();
+
+    Map<String, Double> getHandleLatency();
+
+    Map<String, Double> getEncodeLatency();
+
+    int getChannelCount();
+
+    long getPendingOutboundBytes();
+
+    /**
+     * 待发送字节数最多的几个连接
+     */
+    Map<String, Long> getTopPendingOutboundBytes();
+
+    void reset();
+}
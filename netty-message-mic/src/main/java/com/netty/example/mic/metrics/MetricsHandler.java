@@ -0,0 +1,121 @@
+package com.netty.example.mic.metrics;
+
+import com.netty.example.mic.opcode.OpCode;
+import com.netty.example.mic.proto.Header;
+import com.netty.example.mic.proto.MessageRecord;
+import com.netty.example.mic.proto.ProtocolConstants;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 收集一个连接的消息统计，每个连接一个实例
+ * <p>
+ * 自身放在MessageRecordEncoder/MessageRecordDecoder之后，看到的是MessageRecord；
+ * {@link #wireHandler()}放在编解码器之前，看到的是ByteBuf，两者配合得到：
+ * <ul>
+ *     <li>解码延迟：数据到达（或者上一条消息处理完）到解码出这条消息</li>
+ *     <li>处理延迟：请求解码完成到对应sessionId的响应开始编码，包含业务线程的排队时间</li>
+ *     <li>编码延迟和编码后的字节数：write经过编码器的耗时和产生的ByteBuf大小</li>
+ * </ul>
+ * 所有回调都在连接的EventLoop上执行，不需要同步。
+ */
+public class MetricsHandler extends ChannelDuplexHandler {
+
+    /**
+     * 每个连接最多跟踪的未响应请求数，超过后新的请求不再统计处理延迟
+     */
+    private static final int MAX_TRACKED_REQUESTS = 4096;
+
+    private final MessageMetrics metrics;
+    private final WireHandler wire = new WireHandler();
+    private final Map<Long, Long> pendingRequests = new HashMap<>();
+
+    public MetricsHandler(MessageMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 需要放在编解码器之前的配套handler
+     */
+    public ChannelHandler wireHandler() {
+        return wire;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        metrics.channelActive(ctx.channel());
+        ctx.fireChannelActive();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        metrics.channelInactive(ctx.channel());
+        pendingRequests.clear();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!(msg instanceof MessageRecord)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        Header header = ((MessageRecord) msg).getHeader();
+        long decoded = System.nanoTime();
+        byte type = header.getType();
+        metrics.inbound(type, ProtocolConstants.HEADER_LENGTH + header.getLength(), decoded - wire.readMark);
+        if ((type == OpCode.BUSI_REQ.code() || type == OpCode.PING.code()) && pendingRequests.size() < MAX_TRACKED_REQUESTS) {
+            pendingRequests.put(header.getSessionId(), decoded);
+        }
+        ctx.fireChannelRead(msg);
+        //同一次read里的下一条消息从这里开始解码
+        wire.readMark = System.nanoTime();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof MessageRecord)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        Header header = ((MessageRecord) msg).getHeader();
+        byte type = header.getType();
+        Long requestTime = type == OpCode.BUSI_RESP.code() || type == OpCode.PONG.code()
+                ? pendingRequests.remove(header.getSessionId()) : null;
+        long start = System.nanoTime();
+        if (requestTime != null) {
+            metrics.handled(start - requestTime);
+        }
+        wire.encodedBytes = 0;
+        ctx.write(msg, promise);
+        metrics.outbound(type, wire.encodedBytes, System.nanoTime() - start);
+    }
+
+    /**
+     * 编解码器之前的一侧：记录数据到达的时间和编码产生的字节数
+     */
+    private static final class WireHandler extends ChannelDuplexHandler {
+        long readMark;
+        long encodedBytes;
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            readMark = System.nanoTime();
+            ctx.fireChannelRead(msg);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if (msg instanceof ByteBuf) {
+                encodedBytes += ((ByteBuf) msg).readableBytes();
+            }
+            ctx.write(msg, promise);
+        }
+    }
+}
@@ -4,7 +4,25 @@ public enum OpCode {
     BUSI_REQ((byte) 0),
     BUSI_RESP((byte) 1),
     PING((byte) 3),
-    PONG((byte) 4);
+    PONG((byte) 4),
+    /**
+     * 流数据，sessionId是流id，flags中的FLAG_END_STREAM表示发送方向结束
+     */
+    DATA((byte) 5),
+    /**
+     * 流的接收方归还发送额度，消息体是4个字节的增量
+     */
+    WINDOW_UPDATE((byte) 6),
+    /**
+     * 中止一个流，消息体是4个字节的错误码
+     */
+    RST((byte) 7),
+    /**
+     * 服务端准备关闭连接，sessionId是已经接收、会继续处理完的最大sessionId，没有消息体。
+     * 更大的sessionId对应的请求和流不会被处理，客户端应当换一个连接重试。
+     * 所有请求响应完后服务端再发送一个GOAWAY并关闭连接，这时还没有响应的请求同样没有被处理
+     */
+    GOAWAY((byte) 8);
 
     private Byte code;
 
@@ -15,4 +33,16 @@ public enum OpCode {
     public byte code() {
         return code;
     }
+
+    /**
+     * 按编号查找，未知的编号返回null
+     */
+    public static OpCode of(byte code) {
+        for (OpCode opCode : values()) {
+            if (opCode.code == code) {
+                return opCode;
+            }
+        }
+        return null;
+    }
 }
@@ -17,6 +17,20 @@ public class Header {
      */
     private Byte type;
 
+    /**
+     * 消息体编码方式： 占1个字节，为空时编码器根据body类型自动选择
+     *
+     * @see com.netty.example.mic.codec.body.BodyCodec#id()
+     */
+    private Byte codec;
+
+    /**
+     * 标志位： 占1个字节，低2位是消息体的压缩方式，由编码器根据连接的压缩配置填写
+     *
+     * @see ProtocolConstants#FLAG_COMPRESSION_MASK
+     */
+    private Byte flags;
+
     /**
      * 消息长度 : 占4个字节
      */
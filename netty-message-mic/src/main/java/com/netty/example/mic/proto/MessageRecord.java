@@ -1,13 +1,58 @@
 package com.netty.example.mic.proto;
 
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+/**
+ * body为{@link io.netty.buffer.ByteBuf}等引用计数对象时，MessageRecord的引用计数委托给body，
+ * 这样编码器写出后、或者pipeline末端都能按netty的约定自动释放
+ */
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-public class MessageRecord {
+public class MessageRecord implements ReferenceCounted {
     private Header header;
     private Object body;
+
+    @Override
+    public int refCnt() {
+        return body instanceof ReferenceCounted ? ((ReferenceCounted) body).refCnt() : 1;
+    }
+
+    @Override
+    public MessageRecord retain() {
+        ReferenceCountUtil.retain(body);
+        return this;
+    }
+
+    @Override
+    public MessageRecord retain(int increment) {
+        ReferenceCountUtil.retain(body, increment);
+        return this;
+    }
+
+    @Override
+    public MessageRecord touch() {
+        ReferenceCountUtil.touch(body);
+        return this;
+    }
+
+    @Override
+    public MessageRecord touch(Object hint) {
+        ReferenceCountUtil.touch(body, hint);
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return ReferenceCountUtil.release(body);
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        return ReferenceCountUtil.release(body, decrement);
+    }
 }
@@ -0,0 +1,50 @@
+package com.netty.example.mic.proto;
+
+/**
+ * mic 协议的帧格式常量
+ * <pre>
+ * +-----------+------+-------+-------+--------+----------+
+ * | sessionId | type | codec | flags | length |   body   |
+ * |    8B     |  1B  |  1B   |  1B   |   4B   | length B |
+ * +-----------+------+-------+-------+--------+----------+
+ * </pre>
+ * flags的低2位是压缩方式，消息体被压缩时body的前4个字节是压缩前的长度，后面是压缩数据；
+ * 第3位是流的结束标志。
+ */
+public final class ProtocolConstants {
+    /**
+     * length字段之前的字节数：sessionId + type + codec + flags
+     */
+    public static final int LENGTH_FIELD_OFFSET = 11;
+    /**
+     * length字段本身占4个字节
+     */
+    public static final int LENGTH_FIELD_LENGTH = 4;
+    /**
+     * 完整消息头的长度
+     */
+    public static final int HEADER_LENGTH = LENGTH_FIELD_OFFSET + LENGTH_FIELD_LENGTH;
+    /**
+     * 消息体默认的最大长度，解码器读到消息头后先检查声明的长度，超过上限直接拒绝，不会为它分配内存
+     */
+    public static final int MAX_BODY_LENGTH = 8 * 1024 * 1024;
+    /**
+     * flags中表示压缩方式的位
+     *
+     * @see com.netty.example.mic.codec.compress.Compression
+     */
+    public static final int FLAG_COMPRESSION_MASK = 0x03;
+    /**
+     * DATA消息的标志位：发送方在这个流上不会再发送数据
+     *
+     * @see com.netty.example.mic.stream.MicStream
+     */
+    public static final int FLAG_END_STREAM = 0x04;
+    /**
+     * 解压后消息体的最大长度，防止很小的压缩帧解压出巨大的消息体
+     */
+    public static final int MAX_DECOMPRESSED_LENGTH = 8 * 1024 * 1024;
+
+    private ProtocolConstants() {
+    }
+}
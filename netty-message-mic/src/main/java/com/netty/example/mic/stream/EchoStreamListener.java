@@ -0,0 +1,22 @@
+package com.netty.example.mic.stream;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 把收到的数据原样写回同一个流，写出后才归还额度，所以客户端读得慢时服务端也会相应地停止接收
+ */
+public class EchoStreamListener implements StreamListener {
+
+    public static final EchoStreamListener INSTANCE = new EchoStreamListener();
+
+    @Override
+    public void onData(MicStream stream, ByteBuf data, boolean endStream) {
+        int length = data.readableBytes();
+        stream.write(data, endStream).whenComplete((v, e) -> stream.consumed(length));
+    }
+
+    @Override
+    public boolean autoConsume() {
+        return false;
+    }
+}
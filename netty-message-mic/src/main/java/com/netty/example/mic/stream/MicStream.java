@@ -0,0 +1,248 @@
+package com.netty.example.mic.stream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoop;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * mic连接上的一个逻辑流，流id就是消息头中的sessionId
+ * <p>
+ * 两个方向各自独立：本端发送END_STREAM后不能再写，对端发送END_STREAM后不会再收到数据，两个方向都结束后流关闭。
+ * 发送受对端授予的额度限制，额度用完后写入的数据在本端排队，收到WINDOW_UPDATE后继续发送。
+ * 公开方法可以在任意线程调用，实际操作都在连接的EventLoop上执行。
+ */
+public class MicStream {
+
+    public static final int CANCEL = 1;
+    public static final int FLOW_CONTROL_ERROR = 2;
+    public static final int STREAM_CLOSED = 3;
+    public static final int REFUSED_STREAM = 4;
+    /**
+     * 只在本地使用：连接断开
+     */
+    public static final int CONNECTION_CLOSED = 5;
+    /**
+     * 流消息的格式不对，比如没有使用raw codec
+     */
+    public static final int PROTOCOL_ERROR = 6;
+
+    private final long id;
+    private final StreamMultiplexer multiplexer;
+    private final StreamListener listener;
+    private final EventLoop eventLoop;
+
+    //以下字段只在EventLoop上访问
+    private final ArrayDeque<PendingWrite> pendingWrites = new ArrayDeque<>();
+    int sendWindow;
+    int receiveWindow;
+    private int unacknowledged;
+    boolean scheduled;
+    boolean accepted;
+    private boolean localEndQueued;
+    private boolean localEndSent;
+    private boolean remoteEnd;
+    private boolean closed;
+
+    MicStream(long id, StreamMultiplexer multiplexer, StreamListener listener, EventLoop eventLoop, int initialWindow) {
+        this.id = id;
+        this.multiplexer = multiplexer;
+        this.listener = listener;
+        this.eventLoop = eventLoop;
+        this.sendWindow = initialWindow;
+        this.receiveWindow = initialWindow;
+    }
+
+    public long id() {
+        return id;
+    }
+
+    /**
+     * 写出数据，流接管data的所有权。大数据会被切块，和其他流交替发送
+     *
+     * @param endStream 这是本端在这个流上的最后一次写
+     * @return 所有数据都交给channel写出后完成，流被中止或连接断开时以异常结束
+     */
+    public CompletableFuture<Void> write(ByteBuf data, boolean endStream) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        execute(() -> {
+            if (closed || localEndQueued) {
+                data.release();
+                future.completeExceptionally(new StreamResetException(id, STREAM_CLOSED));
+                return;
+            }
+            if (!data.isReadable() && !endStream) {
+                data.release();
+                future.complete(null);
+                return;
+            }
+            localEndQueued = endStream;
+            pendingWrites.add(new PendingWrite(data, endStream, future));
+            multiplexer.schedule(this);
+        });
+        return future;
+    }
+
+    /**
+     * 结束本端的发送方向
+     */
+    public CompletableFuture<Void> end() {
+        return write(Unpooled.EMPTY_BUFFER, true);
+    }
+
+    /**
+     * 归还已经处理完的字节数的额度，攒够初始额度的一半时才发送WINDOW_UPDATE
+     */
+    public void consumed(int bytes) {
+        execute(() -> {
+            if (closed || remoteEnd || bytes <= 0) {
+                return;
+            }
+            unacknowledged += bytes;
+            if (unacknowledged >= multiplexer.initialWindow() / 2) {
+                receiveWindow += unacknowledged;
+                multiplexer.writeWindowUpdate(id, unacknowledged);
+                unacknowledged = 0;
+            }
+        });
+    }
+
+    /**
+     * 中止这个流，通知对端并丢弃还没有发送的数据
+     */
+    public void reset(int errorCode) {
+        execute(() -> {
+            if (!closed) {
+                multiplexer.writeReset(id, errorCode);
+                close(errorCode, false);
+            }
+        });
+    }
+
+    private void execute(Runnable task) {
+        if (eventLoop.inEventLoop()) {
+            task.run();
+        } else {
+            eventLoop.execute(task);
+        }
+    }
+
+    /**
+     * 当前是否有可以发送的数据：额度不为0，或者只剩一个空的END_STREAM
+     */
+    boolean hasSendable() {
+        PendingWrite head = pendingWrites.peek();
+        return !closed && head != null && (sendWindow > 0 || !head.data.isReadable());
+    }
+
+    /**
+     * 发送队首写操作的下一块数据
+     */
+    void writeChunk(int maxChunkSize) {
+        PendingWrite head = pendingWrites.peek();
+        int length = Math.min(Math.min(head.data.readableBytes(), sendWindow), maxChunkSize);
+        boolean last = length == head.data.readableBytes();
+        boolean endStream = last && head.endStream;
+        ByteBuf chunk = head.data.readRetainedSlice(length);
+        sendWindow -= length;
+        if (!last) {
+            multiplexer.writeData(id, chunk, false);
+            return;
+        }
+        pendingWrites.poll();
+        head.data.release();
+        multiplexer.writeData(id, chunk, endStream).addListener(f -> {
+            if (f.isSuccess()) {
+                head.future.complete(null);
+            } else {
+                head.future.completeExceptionally(f.cause());
+            }
+        });
+        if (endStream) {
+            localEndSent = true;
+            closeIfDone();
+        }
+    }
+
+    void onData(ByteBuf data, boolean endStream) {
+        int length = data.readableBytes();
+        if (remoteEnd) {
+            data.release();
+            reset(STREAM_CLOSED);
+            return;
+        }
+        if (length > receiveWindow) {
+            data.release();
+            reset(FLOW_CONTROL_ERROR);
+            return;
+        }
+        if (length == 0 && !endStream) {
+            //打开流时的空DATA，不通知listener
+            data.release();
+            return;
+        }
+        receiveWindow -= length;
+        remoteEnd = endStream;
+        listener.onData(this, data, endStream);
+        if (listener.autoConsume()) {
+            consumed(length);
+        }
+        closeIfDone();
+    }
+
+    void onWindowUpdate(int increment) {
+        if (increment <= 0 || sendWindow + increment < 0) {
+            reset(FLOW_CONTROL_ERROR);
+            return;
+        }
+        sendWindow += increment;
+        multiplexer.schedule(this);
+    }
+
+    /**
+     * 流被对端中止或连接断开
+     */
+    void onReset(int errorCode) {
+        if (!closed) {
+            close(errorCode, true);
+        }
+    }
+
+    private void closeIfDone() {
+        if (localEndSent && remoteEnd && !closed) {
+            closed = true;
+            multiplexer.remove(this);
+        }
+    }
+
+    private void close(int errorCode, boolean notify) {
+        closed = true;
+        multiplexer.remove(this);
+        PendingWrite write;
+        while ((write = pendingWrites.poll()) != null) {
+            write.data.release();
+            write.future.completeExceptionally(new StreamResetException(id, errorCode));
+        }
+        if (notify) {
+            listener.onReset(this, errorCode);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private static final class PendingWrite {
+        final ByteBuf data;
+        final boolean endStream;
+        final CompletableFuture<Void> future;
+
+        PendingWrite(ByteBuf data, boolean endStream, CompletableFuture<Void> future) {
+            this.data = data;
+            this.endStream = endStream;
+            this.future = future;
+        }
+    }
+}
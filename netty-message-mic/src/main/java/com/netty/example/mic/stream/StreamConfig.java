@@ -0,0 +1,22 @@
+package com.netty.example.mic.stream;
+
+import lombok.Data;
+
+/**
+ * 流复用的配置，连接两端的initialWindow必须一致
+ */
+@Data
+public class StreamConfig {
+    /**
+     * 每个流初始的发送额度（字节），接收方处理完数据后通过WINDOW_UPDATE归还
+     */
+    private int initialWindow = 256 * 1024;
+    /**
+     * 一个DATA消息最多携带的字节数，大数据按这个大小切块，其他流和普通请求可以插在块之间发送
+     */
+    private int maxChunkSize = 16 * 1024;
+    /**
+     * 对端同时打开的流的上限，超过时以REFUSED_STREAM拒绝新的流
+     */
+    private int maxConcurrentStreams = 256;
+}
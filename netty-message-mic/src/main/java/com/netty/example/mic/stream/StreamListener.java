@@ -0,0 +1,30 @@
+package com.netty.example.mic.stream;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 流的接收回调，都在连接的EventLoop上调用，不能阻塞
+ */
+public interface StreamListener {
+
+    /**
+     * 收到一块数据，data由listener负责释放
+     *
+     * @param endStream 对端不会再在这个流上发送数据
+     */
+    void onData(MicStream stream, ByteBuf data, boolean endStream);
+
+    /**
+     * 流被对端中止或者连接断开
+     */
+    default void onReset(MicStream stream, int errorCode) {
+    }
+
+    /**
+     * 返回true时onData返回后立即归还这块数据的额度；
+     * 返回false时由listener在数据真正处理完后调用{@link MicStream#consumed(int)}，这样处理慢时对端会停止发送
+     */
+    default boolean autoConsume() {
+        return true;
+    }
+}
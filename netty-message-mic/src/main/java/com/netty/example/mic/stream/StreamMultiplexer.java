@@ -0,0 +1,266 @@
+package com.netty.example.mic.stream;
+
+import com.netty.example.mic.codec.body.RawBytesCodec;
+import com.netty.example.mic.opcode.OpCode;
+import com.netty.example.mic.proto.Header;
+import com.netty.example.mic.proto.MessageRecord;
+import com.netty.example.mic.proto.ProtocolConstants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 在一条mic连接上复用多个逻辑流，放在解码器之后、业务handler之前
+ * <p>
+ * DATA/WINDOW_UPDATE/RST消息在这里处理，其他消息原样往后传。
+ * 待发送的数据按流轮转，每次只发一块，并且只在channel可写时发送，
+ * 所以出站缓冲区里最多堆积一个高水位的流数据，普通请求和响应不会排在一个大消息体后面等待。
+ * 对端发起的流交给acceptor处理，acceptor为null时丢弃这些流的数据。
+ */
+@Slf4j
+public class StreamMultiplexer extends ChannelDuplexHandler {
+
+    private final StreamConfig config;
+    private final StreamListener acceptor;
+    private final Map<Long, MicStream> streams = new HashMap<>();
+    private final ArrayDeque<MicStream> ready = new ArrayDeque<>();
+    private final Queue<MicStream> opening = new ConcurrentLinkedQueue<>();
+    private ChannelHandlerContext ctx;
+    private long lastAcceptedId = Long.MIN_VALUE;
+    private int acceptedCount;
+    private long goAwayId = Long.MAX_VALUE;
+
+    public StreamMultiplexer(StreamConfig config, StreamListener acceptor) {
+        this.config = config;
+        this.acceptor = acceptor;
+    }
+
+    /**
+     * 打开一个本端发起的流，id由调用方保证在连接上唯一并且按调用顺序递增。
+     * 注册时先发出一个空的DATA消息，对端按打开的顺序而不是第一次写数据的顺序看到这些流
+     */
+    public MicStream open(long id, StreamListener listener) {
+        MicStream stream = new MicStream(id, this, listener, ctx.channel().eventLoop(), config.getInitialWindow());
+        //在其他线程打开、还没有注册的流可能排在前面，按加入的顺序一起注册
+        opening.add(stream);
+        if (ctx.executor().inEventLoop()) {
+            registerOpening();
+        } else {
+            //先于这个流的任何写操作执行
+            ctx.executor().execute(this::registerOpening);
+        }
+        return stream;
+    }
+
+    private void registerOpening() {
+        MicStream stream;
+        while ((stream = opening.poll()) != null) {
+            register(stream);
+        }
+    }
+
+    private void register(MicStream stream) {
+        streams.put(stream.id(), stream);
+        if (stream.id() > goAwayId) {
+            //对端已经发送GOAWAY，不会处理这个流
+            stream.onReset(MicStream.REFUSED_STREAM);
+            return;
+        }
+        writeData(stream.id(), Unpooled.EMPTY_BUFFER, false);
+        ctx.flush();
+    }
+
+    /**
+     * 发出或收到GOAWAY后在IO线程上调用：不再接受id大于lastId的对端流，
+     * 本端发起的id大于lastId的流对端不会处理，以REFUSED_STREAM结束
+     */
+    public void goAway(long lastId) {
+        goAwayId = lastId;
+        for (MicStream stream : new ArrayList<>(streams.values())) {
+            if (!stream.accepted && stream.id() > lastId) {
+                stream.onReset(MicStream.REFUSED_STREAM);
+            }
+        }
+    }
+
+    /**
+     * 还没有关闭的流的数量，只能在IO线程上调用
+     */
+    public int activeCount() {
+        return streams.size();
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        MessageRecord record = (MessageRecord) msg;
+        Header header = record.getHeader();
+        byte type = header.getType();
+        if (type != OpCode.DATA.code() && type != OpCode.WINDOW_UPDATE.code() && type != OpCode.RST.code()) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        long id = header.getSessionId();
+        MicStream stream = streams.get(id);
+        if (record.getBody() != null && !(record.getBody() instanceof ByteBuf)) {
+            //流消息只能用raw codec，对端用了其他codec时无法按字节处理，中止这个流
+            ReferenceCountUtil.release(record.getBody());
+            if (type == OpCode.DATA.code()) {
+                writeReset(id, MicStream.PROTOCOL_ERROR);
+                if (stream != null) {
+                    stream.onReset(MicStream.PROTOCOL_ERROR);
+                }
+            }
+            return;
+        }
+        ByteBuf body = record.getBody() == null ? Unpooled.EMPTY_BUFFER : (ByteBuf) record.getBody();
+        if (type == OpCode.DATA.code()) {
+            if (stream == null) {
+                stream = accept(id);
+            }
+            if (stream == null) {
+                body.release();
+                return;
+            }
+            stream.onData(body, (header.getFlags() & ProtocolConstants.FLAG_END_STREAM) != 0);
+        } else {
+            try {
+                //已经关闭的流可能还会收到对端在关闭前发出的消息，直接忽略
+                if (stream != null && body.readableBytes() >= 4) {
+                    if (type == OpCode.WINDOW_UPDATE.code()) {
+                        stream.onWindowUpdate(body.readInt());
+                    } else {
+                        stream.onReset(body.readInt());
+                    }
+                }
+            } finally {
+                ReferenceCountUtil.release(body);
+            }
+        }
+        flushStreams();
+    }
+
+    /**
+     * 对端按打开顺序发出每个流的第一条DATA，流id单调递增，小于等于已接受过的id说明是已经关闭的流。
+     * 不接受的流都回复REFUSED_STREAM，对端的流会结束而不是一直等待；流已经在对端关闭时对端忽略这个RST
+     */
+    private MicStream accept(long id) {
+        if (acceptor == null || id <= lastAcceptedId || id > goAwayId) {
+            writeReset(id, MicStream.REFUSED_STREAM);
+            return null;
+        }
+        lastAcceptedId = id;
+        if (acceptedCount >= config.getMaxConcurrentStreams()) {
+            writeReset(id, MicStream.REFUSED_STREAM);
+            return null;
+        }
+        MicStream stream = new MicStream(id, this, acceptor, ctx.channel().eventLoop(), config.getInitialWindow());
+        stream.accepted = true;
+        acceptedCount++;
+        streams.put(id, stream);
+        return stream;
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            flushStreams();
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        for (MicStream stream : new ArrayList<>(streams.values())) {
+            stream.onReset(MicStream.CONNECTION_CLOSED);
+        }
+        ready.clear();
+        ctx.fireChannelInactive();
+    }
+
+    int initialWindow() {
+        return config.getInitialWindow();
+    }
+
+    /**
+     * 流有数据可以发送时加入轮转队列
+     */
+    void schedule(MicStream stream) {
+        //流在其他线程打开后马上交给了IO线程写数据，注册任务还没有执行
+        registerOpening();
+        if (!stream.scheduled && stream.hasSendable()) {
+            stream.scheduled = true;
+            ready.add(stream);
+        }
+        flushStreams();
+    }
+
+    void remove(MicStream stream) {
+        if (streams.remove(stream.id()) != null && stream.accepted) {
+            acceptedCount--;
+        }
+    }
+
+    /**
+     * 轮流从每个流发出一块数据，直到channel不可写或者没有可以发送的数据
+     */
+    private void flushStreams() {
+        boolean written = false;
+        while (!ready.isEmpty() && ctx.channel().isWritable()) {
+            MicStream stream = ready.poll();
+            stream.scheduled = false;
+            if (!stream.hasSendable()) {
+                continue;
+            }
+            stream.writeChunk(config.getMaxChunkSize());
+            written = true;
+            if (stream.hasSendable()) {
+                stream.scheduled = true;
+                ready.add(stream);
+            }
+        }
+        if (written) {
+            ctx.flush();
+        }
+    }
+
+    ChannelFuture writeData(long id, ByteBuf chunk, boolean endStream) {
+        Header header = newHeader(id, OpCode.DATA);
+        if (endStream) {
+            header.setFlags((byte) ProtocolConstants.FLAG_END_STREAM);
+        }
+        return ctx.write(new MessageRecord(header, chunk));
+    }
+
+    void writeWindowUpdate(long id, int increment) {
+        ctx.writeAndFlush(new MessageRecord(newHeader(id, OpCode.WINDOW_UPDATE), ctx.alloc().buffer(4).writeInt(increment)));
+    }
+
+    void writeReset(long id, int errorCode) {
+        log.debug("reset stream {}, errorCode={}", id, errorCode);
+        ctx.writeAndFlush(new MessageRecord(newHeader(id, OpCode.RST), ctx.alloc().buffer(4).writeInt(errorCode)));
+    }
+
+    private static Header newHeader(long id, OpCode opCode) {
+        Header header = new Header();
+        header.setSessionId(id);
+        header.setType(opCode.code());
+        header.setCodec(RawBytesCodec.ID);
+        return header;
+    }
+}
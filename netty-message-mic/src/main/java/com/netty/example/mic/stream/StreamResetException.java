@@ -0,0 +1,20 @@
+package com.netty.example.mic.stream;
+
+import java.io.IOException;
+
+/**
+ * 流被中止时，未发送完的写操作以这个异常结束
+ */
+public class StreamResetException extends IOException {
+
+    private final int errorCode;
+
+    public StreamResetException(long streamId, int errorCode) {
+        super("stream " + streamId + " reset, errorCode=" + errorCode);
+        this.errorCode = errorCode;
+    }
+
+    public int getErrorCode() {
+        return errorCode;
+    }
+}
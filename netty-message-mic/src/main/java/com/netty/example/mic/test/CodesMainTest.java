@@ -8,12 +8,11 @@ import com.netty.example.mic.proto.MessageRecord;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.embedded.EmbeddedChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.logging.LoggingHandler;
 
 public class CodesMainTest {
     public static void main(String[] args) throws Exception {
-        EmbeddedChannel channel = new EmbeddedChannel(new LengthFieldBasedFrameDecoder(1024,9,4,0,0),new LoggingHandler(), new MessageRecordEncoder(), new MessageRecordDecoder());
+        EmbeddedChannel channel = new EmbeddedChannel(new LoggingHandler(), new MessageRecordEncoder(), new MessageRecordDecoder());
         Header header = new Header();
         header.setSessionId(123456L);
         header.setType(OpCode.PING.code());
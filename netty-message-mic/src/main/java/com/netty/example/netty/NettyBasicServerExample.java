@@ -1,12 +1,14 @@
 package com.netty.example.netty;
 
+import com.netty.example.transport.TransportConfig;
+import com.netty.example.transport.TransportFactory;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+
+import java.util.List;
 
 public class NettyBasicServerExample {
     public void bind(int port) {
@@ -15,15 +17,16 @@ public class NettyBasicServerExample {
         // 另一个是worker，可以关注除了accept之外的其它事件，处理子任务。
         //上面注意，boss线程一般设置一个线程，设置多个也只会用到一个，而且多个目前没有应用场景，
         // worker线程通常要根据服务器调优，如果不写默认就是cpu的两倍。
-        EventLoopGroup bossGroup = new NioEventLoopGroup();
-        EventLoopGroup workerGroup = new NioEventLoopGroup();
+        // 在Linux上开启SO_REUSEPORT后可以在同一端口上绑定多个监听socket，这时boss线程设置多个才有意义。
+        TransportFactory transport = new TransportFactory(new TransportConfig());
+        EventLoopGroup bossGroup = transport.newBossGroup("basic-boss");
+        EventLoopGroup workerGroup = transport.newWorkerGroup("basic-worker");
         try {
             //服务端要启动，需要创建ServerBootStrap，
             // 在这里面netty把nio的模板式的代码都给封装好了
-            ServerBootstrap bootstrap = new ServerBootstrap();
-            bootstrap.group(bossGroup, workerGroup) //配置boss和worker线程
-                    //配置Server的通道，相当于NIO中的ServerSocketChannel
-                    .channel(NioServerSocketChannel.class)
+            //配置boss和worker线程，以及Server的通道（相当于NIO中的ServerSocketChannel，epoll可用时使用native实现）
+            ServerBootstrap bootstrap = transport.newServerBootstrap(bossGroup, workerGroup);
+            bootstrap
                     //childHandler表示给worker那些线程配置了一个处理器，
                     // 配置初始化channel，也就是给worker线程配置对应的handler，当收到客户端的请求时，分配给指定的handler处理
                     .childHandler(new ChannelInitializer<SocketChannel>() {
@@ -34,10 +37,12 @@ public class NettyBasicServerExample {
                     });
             //由于默认情况下是NIO异步非阻塞，所以绑定端口后，通过sync()方法阻塞直到连接建立
             //绑定端口并同步等待客户端连接（sync方法会阻塞，直到整个启动过程完成）
-            ChannelFuture channelFuture = bootstrap.bind(port).sync();
+            List<Channel> channels = transport.bind(bootstrap, port);
             System.out.println("Netty Server Started,Listening on :" + port);
             //等待服务端监听端口关闭
-            channelFuture.channel().closeFuture().sync();
+            for (Channel channel : channels) {
+                channel.closeFuture().sync();
+            }
         } catch (InterruptedException e) {
             e.printStackTrace();
         } finally {
@@ -21,14 +21,13 @@ public class NormalMessageHandler extends ChannelInboundHandlerAdapter {
         ctx.close();
     }
 
-    //channelRead方法表示读到消息以后如何处理，这里我们把消息打印出来
+    //channelRead方法表示读到消息以后如何处理，这里把消息原样带上前缀写回，不逐条打印，避免压测时测成控制台输出
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         ByteBuf in = (ByteBuf) msg;
         byte[] req = new byte[in.readableBytes()];
         in.readBytes(req); //把数据读到byte数组中
         String body = new String(req, "UTF-8");
-        System.out.println("服务器端收到消息：" + body);
         //写回数据
         ByteBuf resp = Unpooled.copiedBuffer(("receive message:" + body + "").getBytes());
         ctx.write(resp);
@@ -1,37 +1,47 @@
 package com.netty.example.pk;
 
+import com.netty.example.pk.frame.VarintFrameDecoder;
+import com.netty.example.transport.TransportConfig;
+import com.netty.example.transport.TransportFactory;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.string.StringDecoder;
 
+/**
+ * 默认使用varint长度帧，参数为fixed时使用2个字节长度字段的LengthFieldBasedFrameDecoder，客户端要用相同的参数启动
+ */
 public class LengthFieldBasedFrameDecoderServer {
     public static void main(String[] args) {
-        EventLoopGroup bossGroup = new NioEventLoopGroup();
-        EventLoopGroup workGroup = new NioEventLoopGroup();
+        boolean fixed = args.length > 0 && "fixed".equals(args[0]);
+        TransportFactory transport = new TransportFactory(new TransportConfig());
+        EventLoopGroup bossGroup = transport.newBossGroup("length-field-boss");
+        EventLoopGroup workGroup = transport.newWorkerGroup("length-field-worker");
         try {
-            ServerBootstrap serverBootstrap = new ServerBootstrap();
-            serverBootstrap.group(bossGroup, workGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) throws Exception {
-                            ch.pipeline()
-                                    .addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 2, 0, 2))
-                                    .addLast(new StringDecoder())
-                                    .addLast(new ChannelInboundHandlerAdapter() {
-                                        @Override
-                                        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-                                            System.out.println("receive message:" + msg);
-                                        }
-                                    });
-                        }
-                    });
-            ChannelFuture channelFuture = serverBootstrap.bind(8080).sync(); //绑定端口
-            channelFuture.channel().closeFuture().sync();
+            ServerBootstrap serverBootstrap = transport.newServerBootstrap(bossGroup, workGroup);
+            serverBootstrap.childHandler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) throws Exception {
+                    if (fixed) {
+                        //2个字节的长度字段最大只能表示65535
+                        ch.pipeline().addLast(new LengthFieldBasedFrameDecoder(0xFFFF + 2, 0, 2, 0, 2));
+                    } else {
+                        ch.pipeline().addLast(new VarintFrameDecoder());
+                    }
+                    ch.pipeline()
+                            .addLast(new StringDecoder())
+                            .addLast(new ChannelInboundHandlerAdapter() {
+                                @Override
+                                public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+                                    System.out.println("receive message:" + msg);
+                                }
+                            });
+                }
+            });
+            for (Channel channel : transport.bind(serverBootstrap, 8080)) { //绑定端口
+                channel.closeFuture().sync();
+            }
         } catch (InterruptedException e) {
             e.printStackTrace();
         } finally {
@@ -1,26 +1,32 @@
 package com.netty.example.pk;
 
+import com.netty.example.pk.frame.FrameConfig;
+import com.netty.example.pk.frame.VarintFrameDecoder;
+import com.netty.example.pk.frame.VarintFrameEncoder;
+import com.netty.example.transport.TransportConfig;
+import com.netty.example.transport.TransportFactory;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 
 public class PackageNettyClient {
     public static void main(String[] args) {
-        EventLoopGroup eventLoopGroup=new NioEventLoopGroup();
+        FrameConfig frameConfig = new FrameConfig();
+        TransportFactory transport = new TransportFactory(new TransportConfig());
+        EventLoopGroup eventLoopGroup=transport.newWorkerGroup("package-client");
         try {
-            Bootstrap bootstrap = new Bootstrap();
-            bootstrap.group(eventLoopGroup)
-                    .channel(NioSocketChannel.class)
-                    .handler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) throws Exception {
-                            ch.pipeline().addLast(new SimpleClientHandler());
-                        }
-                    });
+            Bootstrap bootstrap = transport.newBootstrap(eventLoopGroup);
+            bootstrap.handler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) throws Exception {
+                    ch.pipeline()
+                            .addLast(new VarintFrameDecoder(frameConfig))
+                            .addLast(new VarintFrameEncoder(frameConfig))
+                            .addLast(new SimpleClientHandler());
+                }
+            });
             ChannelFuture channelFuture=bootstrap.connect("localhost",8080).sync();
             channelFuture.channel().closeFuture().sync();
         } catch (InterruptedException e) {
@@ -1,29 +1,40 @@
 package com.netty.example.pk;
 
+import com.netty.example.pk.frame.FrameConfig;
+import com.netty.example.pk.frame.VarintFrameDecoder;
+import com.netty.example.pk.frame.VarintFrameEncoder;
+import com.netty.example.transport.TransportConfig;
+import com.netty.example.transport.TransportFactory;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 
+/**
+ * 每收到一帧消息回复一个UUID，收发都使用varint长度帧，避免粘包拆包把多条消息混在一起
+ */
 public class PackageNettyServer {
     public static void main(String[] args) {
-        EventLoopGroup bossGroup = new NioEventLoopGroup();
-        EventLoopGroup workGroup = new NioEventLoopGroup();
+        FrameConfig frameConfig = new FrameConfig();
+        VarintFrameEncoder frameEncoder = new VarintFrameEncoder(frameConfig);
+        TransportFactory transport = new TransportFactory(new TransportConfig());
+        EventLoopGroup bossGroup = transport.newBossGroup("package-boss");
+        EventLoopGroup workGroup = transport.newWorkerGroup("package-worker");
         try {
-            ServerBootstrap serverBootstrap = new ServerBootstrap();
-            serverBootstrap.group(bossGroup, workGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) throws Exception {
-                            ch.pipeline().addLast(new SimpleServerHandler());
-                        }
-                    });
-            ChannelFuture channelFuture = serverBootstrap.bind(8080).sync(); //绑定端口
-            channelFuture.channel().closeFuture().sync();
+            ServerBootstrap serverBootstrap = transport.newServerBootstrap(bossGroup, workGroup);
+            serverBootstrap.childHandler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                protected void initChannel(SocketChannel ch) throws Exception {
+                    ch.pipeline()
+                            .addLast(new VarintFrameDecoder(frameConfig))
+                            .addLast(frameEncoder)
+                            .addLast(new SimpleServerHandler());
+                }
+            });
+            for (Channel channel : transport.bind(serverBootstrap, 8080)) { //绑定端口
+                channel.closeFuture().sync();
+            }
         } catch (InterruptedException e) {
             e.printStackTrace();
         } finally {
@@ -1,29 +1,37 @@
 package com.netty.example.pk;
 
+import com.netty.example.mic.metrics.LogSampler;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.CorruptedFrameException;
+import lombok.extern.slf4j.Slf4j;
 
 import java.nio.charset.Charset;
 import java.util.UUID;
 
+@Slf4j
 public class SimpleServerHandler extends ChannelInboundHandlerAdapter {
-    private int count;
+    private static final LogSampler LOG_SAMPLER = new LogSampler(1000);
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
-        ByteBuf in = (ByteBuf) msg;
-        byte[] buffer = new byte[in.readableBytes()]; //长度为可读的字节数
-        in.readBytes(buffer); //读取到字节数组中
-        String message = new String(buffer, "UTF-8");
-        System.out.println("服务端收到的消息内容：" + message + "\n服务端收到的消息数量" + (++count));
+        //消息内容不需要，每收到一帧回复一个UUID；压测时逐条打印会让结果变成控制台输出的速度
+        ((ByteBuf) msg).release();
         ByteBuf resBB = Unpooled.copiedBuffer(UUID.randomUUID().toString(), Charset.forName("utf-8"));
         ctx.writeAndFlush(resBB);
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        if (cause instanceof CorruptedFrameException) {
+            //VarintFrameDecoder校验和不一致时只丢弃这一帧，连接继续使用；长度字段错误时解码器已经关闭了连接
+            if (LOG_SAMPLER.sample()) {
+                log.warn("丢弃损坏的帧：{}", cause.getMessage());
+            }
+            return;
+        }
         ctx.close();//关闭连接
     }
 }
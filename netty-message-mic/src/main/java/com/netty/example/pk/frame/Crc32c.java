@@ -0,0 +1,159 @@
+package com.netty.example.pk.frame;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * CRC32C（Castagnoli）校验和
+ * <p>
+ * 运行在Java 9及以上时使用JDK的java.util.zip.CRC32C，JIT会把它编译成CPU的crc32c指令；
+ * 项目按Java 8编译，所以通过MethodHandle取得构造方法和update(ByteBuffer)。
+ * Java 8上退回到纯Java的slicing-by-8实现。
+ */
+public final class Crc32c {
+
+    private static final MethodHandle JDK_CONSTRUCTOR;
+    private static final MethodHandle JDK_UPDATE_BUFFER;
+
+    static {
+        MethodHandle constructor = null;
+        MethodHandle updateBuffer = null;
+        try {
+            Class<?> type = Class.forName("java.util.zip.CRC32C");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Checksum.class));
+            updateBuffer = lookup.findVirtual(Checksum.class, "update", MethodType.methodType(void.class, ByteBuffer.class));
+        } catch (ReflectiveOperationException e) {
+            //Java 8没有CRC32C
+        }
+        JDK_CONSTRUCTOR = constructor;
+        JDK_UPDATE_BUFFER = updateBuffer;
+    }
+
+    private static final FastThreadLocal<Checksum> CHECKSUM = new FastThreadLocal<Checksum>() {
+        @Override
+        protected Checksum initialValue() {
+            return newChecksum();
+        }
+    };
+
+    private static final FastThreadLocal<byte[]> COPY_BUFFER = new FastThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[8192];
+        }
+    };
+
+    private Crc32c() {
+    }
+
+    /**
+     * 是否使用JDK的硬件加速实现
+     */
+    public static boolean isIntrinsic() {
+        return JDK_CONSTRUCTOR != null;
+    }
+
+    public static Checksum newChecksum() {
+        if (JDK_CONSTRUCTOR != null) {
+            try {
+                return (Checksum) JDK_CONSTRUCTOR.invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return new PureJavaCrc32c();
+    }
+
+    /**
+     * 计算buf中[index, index + length)的校验和，不移动读写索引
+     */
+    public static int compute(ByteBuf buf, int index, int length) {
+        Checksum checksum = CHECKSUM.get();
+        checksum.reset();
+        if (buf.hasArray()) {
+            checksum.update(buf.array(), buf.arrayOffset() + index, length);
+        } else if (JDK_UPDATE_BUFFER != null && buf.nioBufferCount() == 1) {
+            try {
+                JDK_UPDATE_BUFFER.invokeExact(checksum, buf.internalNioBuffer(index, length));
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            //复合缓冲区或者纯Java实现处理堆外内存时，分段拷贝到堆上计算
+            byte[] copy = COPY_BUFFER.get();
+            for (int offset = 0; offset < length; offset += copy.length) {
+                int n = Math.min(copy.length, length - offset);
+                buf.getBytes(index + offset, copy, 0, n);
+                checksum.update(copy, 0, n);
+            }
+        }
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * slicing-by-8：每次查8张表处理8个字节
+     */
+    static final class PureJavaCrc32c implements Checksum {
+        private static final int POLY = 0x82F63B78;
+        private static final int[][] TABLES = new int[8][256];
+
+        static {
+            for (int i = 0; i < 256; i++) {
+                int crc = i;
+                for (int k = 0; k < 8; k++) {
+                    crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLY : crc >>> 1;
+                }
+                TABLES[0][i] = crc;
+            }
+            for (int i = 0; i < 256; i++) {
+                for (int t = 1; t < 8; t++) {
+                    int prev = TABLES[t - 1][i];
+                    TABLES[t][i] = (prev >>> 8) ^ TABLES[0][prev & 0xFF];
+                }
+            }
+        }
+
+        private int crc = ~0;
+
+        @Override
+        public void update(int b) {
+            crc = (crc >>> 8) ^ TABLES[0][(crc ^ b) & 0xFF];
+        }
+
+        @Override
+        public void update(byte[] b, int off, int len) {
+            int c = crc;
+            int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+            int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+            int end = off + len;
+            while (end - off >= 8) {
+                int lo = c ^ ((b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | b[off + 3] << 24);
+                c = t7[lo & 0xFF] ^ t6[(lo >>> 8) & 0xFF] ^ t5[(lo >>> 16) & 0xFF] ^ t4[lo >>> 24]
+                        ^ t3[b[off + 4] & 0xFF] ^ t2[b[off + 5] & 0xFF] ^ t1[b[off + 6] & 0xFF] ^ t0[b[off + 7] & 0xFF];
+                off += 8;
+            }
+            while (off < end) {
+                c = (c >>> 8) ^ t0[(c ^ b[off++]) & 0xFF];
+            }
+            crc = c;
+        }
+
+        @Override
+        public long getValue() {
+            return ~crc & 0xFFFFFFFFL;
+        }
+
+        @Override
+        public void reset() {
+            crc = ~0;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.netty.example.pk.frame;
+
+import lombok.Data;
+
+/**
+ * varint长度帧的配置，收发两端必须一致
+ */
+@Data
+public class FrameConfig {
+    /**
+     * 帧内容的长度上限，读到的长度超过时不等数据到达直接关闭连接
+     */
+    private int maxFrameLength = 1024 * 1024;
+    /**
+     * 是否在帧内容之后附加4个字节的CRC32C校验和
+     */
+    private boolean checksum = true;
+    /**
+     * 帧内容不超过这个长度时把长度、内容、校验和拷贝到一个缓冲区里写出，更大的帧不拷贝内容
+     */
+    private int copyThreshold = 512;
+}
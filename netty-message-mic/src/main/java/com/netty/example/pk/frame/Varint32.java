@@ -0,0 +1,72 @@
+package com.netty.example.pk.frame;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * 无符号varint32编码：每个字节低7位是数据，最高位表示后面还有字节，低位在前，最多5个字节
+ */
+public final class Varint32 {
+
+    public static final int MAX_SIZE = 5;
+
+    /**
+     * 数据还不够解析出完整的varint
+     */
+    public static final int INCOMPLETE = -1;
+    /**
+     * 超过5个字节或超出非负int范围
+     */
+    public static final int MALFORMED = -2;
+
+    private Varint32() {
+    }
+
+    public static int size(int value) {
+        if ((value & (~0 << 7)) == 0) {
+            return 1;
+        }
+        if ((value & (~0 << 14)) == 0) {
+            return 2;
+        }
+        if ((value & (~0 << 21)) == 0) {
+            return 3;
+        }
+        if ((value & (~0 << 28)) == 0) {
+            return 4;
+        }
+        return 5;
+    }
+
+    public static void write(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * 从index开始解析一个varint，不移动readerIndex
+     *
+     * @return 解析出的值和占用字节数打包成的long：高32位是字节数，低32位是非负的值；
+     * 数据不够时返回{@link #INCOMPLETE}，格式错误返回{@link #MALFORMED}
+     */
+    public static long read(ByteBuf in, int index, int limit) {
+        int value = 0;
+        for (int i = 0; i < MAX_SIZE; i++) {
+            if (index + i >= limit) {
+                return INCOMPLETE;
+            }
+            int b = in.getByte(index + i);
+            //第5个字节只能用低3位，再多就会进入int的符号位
+            if (i == MAX_SIZE - 1 && (b & 0xF8) != 0) {
+                return MALFORMED;
+            }
+            value |= (b & 0x7F) << (7 * i);
+            if (b >= 0) {
+                return ((long) (i + 1) << 32) | (value & 0xFFFFFFFFL);
+            }
+        }
+        return MALFORMED;
+    }
+}
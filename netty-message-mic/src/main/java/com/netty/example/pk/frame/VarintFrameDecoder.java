@@ -0,0 +1,72 @@
+package com.netty.example.pk.frame;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+
+import java.util.List;
+
+/**
+ * {@link VarintFrameEncoder}对应的拆包器，输出的ByteBuf只包含帧内容
+ * <p>
+ * 长度字段一解析出来就检查上限，格式错误或超过上限时不等待帧内容，丢弃缓冲的数据并关闭连接；
+ * 校验和不一致只丢弃这一帧，后续的帧仍然可以正常拆分。
+ */
+public class VarintFrameDecoder extends ByteToMessageDecoder {
+
+    private final FrameConfig config;
+
+    public VarintFrameDecoder() {
+        this(new FrameConfig());
+    }
+
+    public VarintFrameDecoder(FrameConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        int start = in.readerIndex();
+        long varint = Varint32.read(in, start, in.writerIndex());
+        if (varint == Varint32.INCOMPLETE) {
+            return;
+        }
+        int headerLength = (int) (varint >>> 32);
+        int length = (int) varint;
+        if (varint == Varint32.MALFORMED || length < 0) {
+            fail(ctx, in);
+            throw new CorruptedFrameException("长度字段格式错误");
+        }
+        if (length > config.getMaxFrameLength()) {
+            fail(ctx, in);
+            throw new TooLongFrameException("帧长度" + length + "超过上限" + config.getMaxFrameLength());
+        }
+        int trailer = config.isChecksum() ? 4 : 0;
+        if (in.readableBytes() < headerLength + length + trailer) {
+            return;
+        }
+        int bodyIndex = start + headerLength;
+        in.readerIndex(bodyIndex + length + trailer);
+        if (trailer > 0) {
+            int expected = in.getInt(bodyIndex + length);
+            int actual = Crc32c.compute(in, bodyIndex, length);
+            if (expected != actual) {
+                //不抛出异常，否则已经收到的后续帧要等下一次read才能被解码
+                ctx.fireExceptionCaught(new CorruptedFrameException(
+                        String.format("CRC32C校验失败，期望%08x，实际%08x", expected, actual)));
+                return;
+            }
+        }
+        out.add(in.retainedSlice(bodyIndex, length));
+    }
+
+    /**
+     * 长度不可信时无法再找到下一帧的边界，只能关闭连接
+     */
+    private void fail(ChannelHandlerContext ctx, ByteBuf in) {
+        in.skipBytes(in.readableBytes());
+        ctx.close();
+    }
+}
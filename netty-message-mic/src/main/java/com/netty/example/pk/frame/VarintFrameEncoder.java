@@ -0,0 +1,52 @@
+package com.netty.example.pk.frame;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+/**
+ * 在ByteBuf前加上varint32的长度，按配置在之后附加CRC32C校验和
+ * <p>
+ * 小于128字节的消息长度只占1个字节。小帧拷贝进一个缓冲区写出，大帧的内容不拷贝，
+ * 和长度、校验和作为多个缓冲区一起交给channel，由gathering write一次写出。
+ */
+@ChannelHandler.Sharable
+public class VarintFrameEncoder extends MessageToMessageEncoder<ByteBuf> {
+
+    private final FrameConfig config;
+
+    public VarintFrameEncoder() {
+        this(new FrameConfig());
+    }
+
+    public VarintFrameEncoder(FrameConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
+        int length = msg.readableBytes();
+        int trailer = config.isChecksum() ? 4 : 0;
+        int crc = config.isChecksum() ? Crc32c.compute(msg, msg.readerIndex(), length) : 0;
+        if (length <= config.getCopyThreshold()) {
+            ByteBuf frame = ctx.alloc().buffer(Varint32.size(length) + length + trailer);
+            Varint32.write(frame, length);
+            frame.writeBytes(msg, msg.readerIndex(), length);
+            if (trailer > 0) {
+                frame.writeInt(crc);
+            }
+            out.add(frame);
+            return;
+        }
+        ByteBuf head = ctx.alloc().buffer(Varint32.size(length));
+        Varint32.write(head, length);
+        out.add(head);
+        out.add(msg.retain());
+        if (trailer > 0) {
+            out.add(ctx.alloc().buffer(trailer).writeInt(crc));
+        }
+    }
+}
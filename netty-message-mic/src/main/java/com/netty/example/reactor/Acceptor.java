@@ -5,13 +5,16 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
 
 public class Acceptor implements Runnable{
     private Selector selector;
     private ServerSocketChannel serverSocketChannel;
-    public Acceptor(Selector selector, ServerSocketChannel serverSocketChannel) {
+    private Path fileRoot;
+    public Acceptor(Selector selector, ServerSocketChannel serverSocketChannel, Path fileRoot) {
         this.selector = selector;
         this.serverSocketChannel = serverSocketChannel;
+        this.fileRoot = fileRoot;
     }
     @Override
     public void run() {
@@ -22,7 +25,9 @@ public class Acceptor implements Runnable{
             channel.configureBlocking(false);
             //当channel连接中数据就绪时，调用DispatchHandler来处理channel
             //巧妙使用了SocketChannel的attach功能，将Hanlder和可能会发生事件的channel链接在一起，当发生事件时，可以立即触发相应链接的Handler。
-            channel.register(selector, SelectionKey.OP_READ,new DispatchHandler(channel));
+            //DispatchHandler需要通过SelectionKey打开或关闭OP_WRITE
+            SelectionKey key=channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new DispatchHandler(channel, key, fileRoot));
         } catch (IOException e) {
             e.printStackTrace();
         }
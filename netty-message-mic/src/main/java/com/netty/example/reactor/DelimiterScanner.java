@@ -0,0 +1,43 @@
+package com.netty.example.reactor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 按8个字节一组查找分隔符（SWAR，SIMD within a register）
+ * <p>
+ * 把8个字节读成一个long，和分隔符重复8次的long做异或，等于分隔符的字节变成0，
+ * 再用经典的haszero位运算一次判断8个字节里有没有0字节，比逐字节比较少7/8的分支。
+ * 要求缓冲区是小端字节序，这样最低的命中位就对应地址最小的字节。
+ */
+public final class DelimiterScanner {
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    private DelimiterScanner() {
+    }
+
+    /**
+     * 在[from, to)范围内查找第一个等于delimiter的字节，返回绝对位置，找不到返回-1
+     */
+    public static int indexOf(ByteBuffer buffer, int from, int to, byte delimiter) {
+        int i = from;
+        if (buffer.order() == ByteOrder.LITTLE_ENDIAN) {
+            long pattern = (delimiter & 0xFFL) * ONES;
+            for (; i + Long.BYTES <= to; i += Long.BYTES) {
+                long x = buffer.getLong(i) ^ pattern;
+                long found = (x - ONES) & ~x & HIGHS;
+                if (found != 0) {
+                    return i + (Long.numberOfTrailingZeros(found) >>> 3);
+                }
+            }
+        }
+        for (; i < to; i++) {
+            if (buffer.get(i) == delimiter) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,67 @@
+package com.netty.example.reactor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 固定大小的直接内存缓冲区池
+ * <p>
+ * 连接只在有未处理完的数据时才持有缓冲区，读完一批完整的帧就归还，空闲连接不占用任何缓冲区。
+ * 池中的缓冲区是小端字节序，方便按long批量扫描分隔符。
+ */
+public final class DirectBufferPool {
+
+    public static final DirectBufferPool DEFAULT = new DirectBufferPool(8 * 1024, 4096);
+
+    private final int bufferSize;
+    private final int maxPooled;
+    private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    public DirectBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 取一个已经clear的缓冲区
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            return allocate(bufferSize);
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * 归还缓冲区，大小不是bufferSize的缓冲区（比如扩容出来的）直接丢弃
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() == bufferSize && buffer.isDirect() && pooled.incrementAndGet() <= maxPooled) {
+            free.offer(buffer);
+        } else if (buffer.capacity() == bufferSize && buffer.isDirect()) {
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * 池中空闲的缓冲区数量
+     */
+    public int pooledCount() {
+        return pooled.get();
+    }
+
+    public static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
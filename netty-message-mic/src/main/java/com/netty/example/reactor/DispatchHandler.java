@@ -2,38 +2,142 @@ package com.netty.example.reactor;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
 
+/**
+ * 单Reactor的连接处理器，读写都在selector线程上完成
+ * <p>
+ * 按行读取请求：{@code file <相对路径>}返回fileRoot下的文件，先写一行{@code OK <长度>}，
+ * 文件内容用transferTo直接从页缓存发送；其他内容原样回显。
+ * 写不完的数据留在OutboundQueue里，打开OP_WRITE等socket可写时从中断的位置继续，全部写完后关闭OP_WRITE。
+ * 客户端关闭输出后不再读取，已经收到的请求的响应全部写完后才关闭连接。
+ */
 public class DispatchHandler implements Runnable{
-    private SocketChannel channel;
-    public DispatchHandler(SocketChannel channel) {
+    private static final DirectBufferPool POOL = DirectBufferPool.DEFAULT;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final ByteBuffer CRLF = ByteBuffer.wrap("\r\n".getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+    private static final byte[] FILE_COMMAND = "file ".getBytes(StandardCharsets.US_ASCII);
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final Path fileRoot;
+    private final LineFrameDecoder decoder = new LineFrameDecoder(POOL, MAX_LINE_LENGTH);
+    private final OutboundQueue outbound = new OutboundQueue(POOL);
+    private boolean inputClosed;
+
+    public DispatchHandler(SocketChannel channel, SelectionKey key, Path fileRoot) {
         this.channel = channel;
+        this.key = key;
+        this.fileRoot = fileRoot == null ? null : fileRoot.toAbsolutePath().normalize();
     }
     @Override
     public void run() {
         System.out.println(Thread.currentThread().getName()+"---handler"); //case: 打印当前线程名称，证明I/O是同一个线程来处理。
-        ByteBuffer buffer=ByteBuffer.allocate(1024);
-        int len=0,total=0;
-        String msg="";
         try {
-            do {
-                len = channel.read(buffer);
-                if (len > 0) {
-                    total += len;
-                    msg += new String(buffer.array());
+            if (key.isReadable()) {
+                if (decoder.read(channel, this::onLine) < 0) {
+                    //客户端关闭了输出，比如发完file命令就半关闭，文件还要继续发完
+                    inputClosed = true;
                 }
-                buffer.clear();
-            } while (len > buffer.capacity());
-            System.out.println(channel.getRemoteAddress()+":Server Receive msg:"+msg);
+            }
+            if (key.isValid() && (key.isWritable() || !outbound.isEmpty() || inputClosed)) {
+                flush();
+            }
         }catch (Exception e){
             e.printStackTrace();
-            if(channel!=null){
-                try {
-                    channel.close();
-                } catch (IOException ioException) {
-                    ioException.printStackTrace();
-                }
+            close();
+        }
+    }
+
+    /**
+     * 按顺序发送多个缓冲区，用一次gathering write写出
+     */
+    public void write(ByteBuffer... buffers) throws IOException {
+        write(Arrays.asList(buffers));
+    }
+
+    public void write(List<ByteBuffer> buffers) throws IOException {
+        outbound.add(buffers);
+        flush();
+    }
+
+    /**
+     * 发送文件的一个区域，发送完成或者连接关闭时关闭文件
+     */
+    public void writeFile(FileChannel file, long position, long count) throws IOException {
+        outbound.addFile(file, position, count, true);
+        flush();
+    }
+
+    private void onLine(ByteBuffer line) throws IOException {
+        if (fileRoot != null && startsWith(line, FILE_COMMAND)) {
+            //只有file命令需要解码成字符串，回显直接拷贝字节
+            ByteBuffer name = line.duplicate();
+            name.position(name.position() + FILE_COMMAND.length);
+            sendFile(StandardCharsets.UTF_8.decode(name).toString().trim());
+            return;
+        }
+        //line只在回调期间有效，回显的内容需要拷贝一份
+        ByteBuffer copy = ByteBuffer.allocate(line.remaining());
+        copy.put(line).flip();
+        outbound.add(Arrays.asList(copy, CRLF.duplicate()));
+    }
+
+    private static boolean startsWith(ByteBuffer line, byte[] prefix) {
+        if (line.remaining() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (line.get(line.position() + i) != prefix[i]) {
+                return false;
             }
         }
+        return true;
+    }
+
+    private void sendFile(String name) throws IOException {
+        Path path = fileRoot.resolve(name).normalize();
+        //不允许通过..访问fileRoot之外的文件
+        if (!path.startsWith(fileRoot) || !Files.isRegularFile(path)) {
+            outbound.add(ByteBuffer.wrap(("ERR not found: " + name + "\r\n").getBytes(StandardCharsets.UTF_8)));
+            return;
+        }
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        long size = file.size();
+        outbound.add(ByteBuffer.wrap(("OK " + size + "\r\n").getBytes(StandardCharsets.US_ASCII)));
+        outbound.addFile(file, 0, size, true);
+    }
+
+    private void flush() throws IOException {
+        boolean done = outbound.flush(channel);
+        if (done && inputClosed) {
+            close();
+            return;
+        }
+        int ops = inputClosed ? 0 : SelectionKey.OP_READ;
+        if (!done) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        if (key.interestOps() != ops) {
+            key.interestOps(ops);
+        }
+    }
+
+    private void close() {
+        decoder.release();
+        outbound.clear();
+        try {
+            channel.close();
+        } catch (IOException ioException) {
+            ioException.printStackTrace();
+        }
     }
-}
\ No newline at end of file
+}
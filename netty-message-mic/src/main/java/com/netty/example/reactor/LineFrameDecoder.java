@@ -0,0 +1,118 @@
+package com.netty.example.reactor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * 按行拆包，\n或\r\n结尾
+ * <p>
+ * 数据直接读进池化的直接内存，完整的一行以缓冲区切片的形式交给{@link FrameHandler}，不转换成String；
+ * 切片只在回调期间有效，需要保留的数据由回调自己拷贝。一批数据处理完没有剩余时立即归还缓冲区。
+ */
+public class LineFrameDecoder {
+
+    /**
+     * 完整帧的回调，frame不包含行尾的\r\n
+     */
+    @FunctionalInterface
+    public interface FrameHandler {
+        void onFrame(ByteBuffer frame) throws IOException;
+    }
+
+    private final DirectBufferPool pool;
+    private final int maxFrameLength;
+    /**
+     * 未处理完的数据，写模式；没有剩余数据时为null
+     */
+    private ByteBuffer cumulation;
+    /**
+     * cumulation中已经确认没有分隔符的字节数，下次从这里继续扫描
+     */
+    private int scanned;
+
+    public LineFrameDecoder(DirectBufferPool pool, int maxFrameLength) {
+        this.pool = pool;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * 从channel读一次数据并回调其中所有完整的帧，返回读到的字节数，对端关闭时返回-1
+     */
+    public int read(ReadableByteChannel channel, FrameHandler handler) throws IOException {
+        ByteBuffer buffer = cumulation != null ? cumulation : pool.acquire();
+        cumulation = null;
+        int n;
+        try {
+            n = channel.read(buffer);
+        } catch (IOException e) {
+            pool.release(buffer);
+            throw e;
+        }
+        if (n < 0) {
+            pool.release(buffer);
+            return n;
+        }
+        buffer.flip();
+        try {
+            decode(buffer, handler);
+        } catch (IOException | RuntimeException e) {
+            pool.release(buffer);
+            throw e;
+        }
+        return n;
+    }
+
+    /**
+     * 当前持有的未处理字节数
+     */
+    public int buffered() {
+        return cumulation == null ? 0 : cumulation.position();
+    }
+
+    /**
+     * 连接关闭时归还缓冲区
+     */
+    public void release() {
+        if (cumulation != null) {
+            pool.release(cumulation);
+            cumulation = null;
+        }
+    }
+
+    private void decode(ByteBuffer buffer, FrameHandler handler) throws IOException {
+        int start = buffer.position();
+        int limit = buffer.limit();
+        int from = start + scanned;
+        int index;
+        while ((index = DelimiterScanner.indexOf(buffer, from, limit, (byte) '\n')) >= 0) {
+            int end = index > start && buffer.get(index - 1) == '\r' ? index - 1 : index;
+            ByteBuffer frame = buffer.duplicate();
+            frame.limit(end).position(start);
+            handler.onFrame(frame.slice().order(buffer.order()));
+            start = index + 1;
+            from = start;
+        }
+        int remaining = limit - start;
+        if (remaining == 0) {
+            scanned = 0;
+            pool.release(buffer);
+            return;
+        }
+        if (remaining >= maxFrameLength) {
+            throw new IOException("单行长度超过上限" + maxFrameLength);
+        }
+        scanned = remaining;
+        buffer.position(start);
+        if (remaining == buffer.capacity()) {
+            //一行超过了一个缓冲区，扩容到两倍，扩容出来的缓冲区不放回池里
+            ByteBuffer larger = DirectBufferPool.allocate(Math.min(buffer.capacity() * 2, maxFrameLength));
+            larger.put(buffer);
+            pool.release(buffer);
+            cumulation = larger;
+        } else {
+            buffer.compact();
+            cumulation = buffer;
+        }
+    }
+}
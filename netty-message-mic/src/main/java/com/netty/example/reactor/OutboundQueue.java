@@ -0,0 +1,198 @@
+package com.netty.example.reactor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 连接的待发送队列
+ * <p>
+ * socket发送缓冲区满时write只会写出一部分，剩下的数据留在队列里，等OP_WRITE就绪后从中断的位置继续写，
+ * 而不是把写不出去当成连接异常。相邻的多个缓冲区用一次gathering write写出，减少系统调用；
+ * 文件区域用FileChannel.transferTo直接从页缓存发送，不经过用户态缓冲区。
+ */
+public class OutboundQueue {
+
+    private static final int MAX_GATHER = 64;
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final DirectBufferPool pool;
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private long pendingBytes;
+
+    private static final class Entry {
+        final ByteBuffer buffer;
+        final boolean pooled;
+        final FileChannel file;
+        final boolean closeFile;
+        long position;
+        final long end;
+
+        Entry(ByteBuffer buffer, boolean pooled) {
+            this.buffer = buffer;
+            this.pooled = pooled;
+            this.file = null;
+            this.closeFile = false;
+            this.end = 0;
+        }
+
+        Entry(FileChannel file, long position, long count, boolean closeFile) {
+            this.buffer = null;
+            this.pooled = false;
+            this.file = file;
+            this.closeFile = closeFile;
+            this.position = position;
+            this.end = position + count;
+        }
+
+        boolean isDone() {
+            return buffer != null ? !buffer.hasRemaining() : position >= end;
+        }
+    }
+
+    public OutboundQueue(DirectBufferPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * 加入一个读模式的缓冲区，写完后不做任何处理，适合共享的只读缓冲区
+     */
+    public void add(ByteBuffer buffer) {
+        add(buffer, false);
+    }
+
+    /**
+     * 按顺序加入多个缓冲区，flush时用一次gathering write写出
+     */
+    public void add(List<ByteBuffer> buffers) {
+        for (ByteBuffer buffer : buffers) {
+            add(buffer, false);
+        }
+    }
+
+    /**
+     * 加入一个从DirectBufferPool取出的缓冲区，写完后归还到池中
+     */
+    public void addPooled(ByteBuffer buffer) {
+        add(buffer, true);
+    }
+
+    /**
+     * 加入文件的[position, position + count)区域，closeFile为true时发送完或者连接关闭时关闭文件
+     */
+    public void addFile(FileChannel file, long position, long count, boolean closeFile) {
+        if (count <= 0) {
+            if (closeFile) {
+                closeQuietly(file);
+            }
+            return;
+        }
+        entries.add(new Entry(file, position, count, closeFile));
+        pendingBytes += count;
+    }
+
+    private void add(ByteBuffer buffer, boolean pooled) {
+        if (!buffer.hasRemaining()) {
+            if (pooled) {
+                pool.release(buffer);
+            }
+            return;
+        }
+        entries.add(new Entry(buffer, pooled));
+        pendingBytes += buffer.remaining();
+    }
+
+    /**
+     * 尽可能多地写出数据，全部写完返回true；返回false时应当关注OP_WRITE
+     */
+    public boolean flush(GatheringByteChannel channel) throws IOException {
+        while (!entries.isEmpty()) {
+            boolean complete = entries.peek().file != null ? transferFile(channel) : writeBuffers(channel);
+            if (!complete) {
+                //发送缓冲区满了，剩下的等OP_WRITE
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public long pendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * 连接关闭时丢弃所有待发送数据，归还池化的缓冲区，关闭文件
+     */
+    public void clear() {
+        Entry entry;
+        while ((entry = entries.poll()) != null) {
+            recycle(entry);
+        }
+        pendingBytes = 0;
+    }
+
+    /**
+     * 用一次gathering write写出队头连续的缓冲区，这一批全部写完返回true
+     */
+    private boolean writeBuffers(GatheringByteChannel channel) throws IOException {
+        int count = 0;
+        for (Entry entry : entries) {
+            if (count == MAX_GATHER || entry.buffer == null) {
+                break;
+            }
+            gather[count++] = entry.buffer;
+        }
+        long written = count == 1 ? channel.write(gather[0]) : channel.write(gather, 0, count);
+        pendingBytes -= written;
+        Arrays.fill(gather, 0, count, null);
+        int completed = 0;
+        while (!entries.isEmpty() && entries.peek().buffer != null && entries.peek().isDone()) {
+            recycle(entries.poll());
+            completed++;
+        }
+        return completed == count;
+    }
+
+    /**
+     * 用transferTo发送队头的文件区域，发送完返回true；只发送了一部分时记住位置，下次从这里继续
+     */
+    private boolean transferFile(GatheringByteChannel channel) throws IOException {
+        Entry entry = entries.peek();
+        long transferred = entry.file.transferTo(entry.position, entry.end - entry.position, channel);
+        if (transferred == 0 && entry.position >= entry.file.size()) {
+            throw new IOException("文件在发送过程中被截断");
+        }
+        entry.position += transferred;
+        pendingBytes -= transferred;
+        if (!entry.isDone()) {
+            return false;
+        }
+        recycle(entries.poll());
+        return true;
+    }
+
+    private void recycle(Entry entry) {
+        if (entry.pooled) {
+            pool.release(entry.buffer);
+        }
+        if (entry.closeFile) {
+            closeQuietly(entry.file);
+        }
+    }
+
+    private static void closeQuietly(FileChannel file) {
+        try {
+            file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
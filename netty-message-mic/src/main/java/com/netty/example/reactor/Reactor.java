@@ -5,13 +5,18 @@ import java.net.InetSocketAddress;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.Set;
 
 public class Reactor implements Runnable{
     private final Selector selector;
     private final ServerSocketChannel serverSocketChannel;
-    public Reactor(int port) throws IOException {
+    /**
+     * @param fileRoot file命令可以访问的目录，为null时不提供文件
+     */
+    public Reactor(int port, Path fileRoot) throws IOException {
         //创建选择器
         selector= Selector.open();
         //创建NIO-Server
@@ -20,7 +25,7 @@ public class Reactor implements Runnable{
         serverSocketChannel.configureBlocking(false);
         SelectionKey key=serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
         // 绑定一个附加对象
-        key.attach(new Acceptor(selector,serverSocketChannel));
+        key.attach(new Acceptor(selector,serverSocketChannel,fileRoot));
     }
     @Override
     public void run() {
@@ -46,6 +51,6 @@ public class Reactor implements Runnable{
         }
     }
     public static void main(String[] args) throws IOException {
-        new Thread(new Reactor(8888)).start();
+        new Thread(new Reactor(8888, args.length > 0 ? Paths.get(args[0]) : null)).start();
     }
 }
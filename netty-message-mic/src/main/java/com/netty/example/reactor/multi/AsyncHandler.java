@@ -1,5 +1,10 @@
 package com.netty.example.reactor.multi;
 
+import com.netty.example.reactor.DirectBufferPool;
+import com.netty.example.reactor.DelimiterScanner;
+import com.netty.example.reactor.LineFrameDecoder;
+import com.netty.example.reactor.OutboundQueue;
+
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -7,77 +12,135 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 
-public class AsyncHandler implements Runnable{
-    private SocketChannel channel;
+/**
+ * 按行回显的连接处理器
+ * <p>
+ * 连接空闲时不持有任何缓冲区：读缓冲区从DirectBufferPool按需获取，一批完整的行处理完就归还；
+ * 响应放进OutboundQueue，写不完时关注OP_WRITE继续写，待发送数据超过高水位时暂停读取。
+ */
+public class AsyncHandler implements ReactorHandler{
+    private static final DirectBufferPool POOL = DirectBufferPool.DEFAULT;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final long WRITE_HIGH_WATER_MARK = 64 * 1024;
+    private static final ByteBuffer PROMPT = readOnly("\r\nreactor> ");
+    private static final ByteBuffer WELCOME = readOnly("Multiply Reactor Pattern Example\r\nreactor> ");
+
+    private final SocketChannel channel;
+    private final LineFrameDecoder decoder = new LineFrameDecoder(POOL, MAX_LINE_LENGTH);
+    private final OutboundQueue outbound = new OutboundQueue(POOL);
     private SelectionKey sk;
-    ByteBuffer inputBuffer=ByteBuffer.allocate(1024);
-    ByteBuffer outputBuffer=ByteBuffer.allocate(1024);
-    StringBuilder builder=new StringBuilder(); //存储客户端的完整消息
-    public AsyncHandler(SocketChannel channel){
+    private Reactor reactor;
+    private long lastActiveNanos = System.nanoTime();
+    private long pendingBytes;
+
+    public AsyncHandler(SocketChannel channel) throws IOException {
         this.channel=channel;
+        // 把提示发到界面，注册到Reactor之后随第一次写出
+        outbound.add(WELCOME.duplicate());
     }
+    @Override
     public SocketChannel getChannel() {
         return channel;
     }
+    @Override
+    public SelectionKey getSk() {
+        return sk;
+    }
+    @Override
     public void setSk(SelectionKey sk) {
         this.sk = sk;
     }
     @Override
+    public void bind(Reactor reactor) {
+        this.reactor = reactor;
+        setPendingBytes(outbound.pendingBytes());
+        if (!outbound.isEmpty()) {
+            sk.interestOps(sk.interestOps() | SelectionKey.OP_WRITE);
+        }
+    }
+    @Override
+    public long getLastActiveNanos() {
+        return lastActiveNanos;
+    }
+    @Override
+    public long getPendingBytes() {
+        return pendingBytes;
+    }
+    @Override
     public void run() {
+        lastActiveNanos = System.nanoTime();
         try {
             if (sk.isReadable()) {
                 read();
-            } else if (sk.isWritable()) {
-                write();
             }
-        }catch (Exception e){
-            try {
-                this.sk.channel().close();
-            } catch (IOException ioException) {
-                ioException.printStackTrace();
+            if (sk.isValid() && sk.isWritable()) {
+                flush();
             }
+        }catch (Exception e){
+            close();
         }
     }
     protected void read() throws IOException {
-        inputBuffer.clear();
-        int n=channel.read(inputBuffer);
-        if(inputBufferComplete(n)){
-            System.out.println(Thread.currentThread().getName()+":Server端收到客户端的请求消息："+builder.toString());
-            outputBuffer.put(builder.toString().getBytes(StandardCharsets.UTF_8));
-            this.sk.interestOps(SelectionKey.OP_WRITE); //更改服务的逻辑状态以及处理的事件类型
+        if (decoder.read(channel, this::onLine) < 0) {
+            throw new EOFException(); //客户端关闭了连接
+        }
+        flush();
+    }
+    private void onLine(ByteBuffer line) throws IOException {
+        if (DelimiterScanner.indexOf(line, 0, line.limit(), (byte) 3) >= 0) { //表示Ctrl+c 关闭连接
+            throw new EOFException();
         }
+        //line只在回调期间有效，回显的内容拷贝到池化的缓冲区里
+        while (line.hasRemaining()) {
+            ByteBuffer copy = POOL.acquire();
+            int length = Math.min(copy.remaining(), line.remaining());
+            ByteBuffer part = line.duplicate();
+            part.limit(part.position() + length);
+            copy.put(part);
+            copy.flip();
+            line.position(line.position() + length);
+            outbound.addPooled(copy);
+        }
+        outbound.add(PROMPT.duplicate());
     }
-    private boolean inputBufferComplete(int bytes) throws EOFException {
-        if(bytes>0){
-            inputBuffer.flip(); //转化成读取模式
-            while(inputBuffer.hasRemaining()){ //判断缓冲区中是否还有元素
-                byte ch=inputBuffer.get(); //得到输入的字符
-                if(ch==3){ //表示Ctrl+c 关闭连接
-                    throw new EOFException();
-                }else if(ch=='\r'||ch=='\n'){ //表示换行符
-                    return true;
-                }else{
-                    builder.append((char)ch); //拼接读取到的数据
-                }
+    private void flush() throws IOException {
+        boolean done = outbound.flush(channel);
+        setPendingBytes(outbound.pendingBytes());
+        int ops = SelectionKey.OP_READ;
+        if (!done) {
+            ops |= SelectionKey.OP_WRITE;
+            if (outbound.pendingBytes() >= WRITE_HIGH_WATER_MARK) {
+                //对端读得太慢，先不读新的请求，由TCP流控把压力传回去
+                ops &= ~SelectionKey.OP_READ;
             }
-        }else if(bytes==-1){
-            throw new EOFException(); //客户端关闭了连接
         }
-        return false;
+        if (sk.interestOps() != ops) {
+            sk.interestOps(ops); //更改服务的逻辑状态以及处理的事件类型
+        }
     }
-    private void write() throws IOException {
-        int written=-1;
-        outputBuffer.flip(); //转化为读模式，判断是否有数据需要发送
-        if(outputBuffer.hasRemaining()){
-            written=channel.write(outputBuffer); //把数据写回客户端
+    private void close() {
+        decoder.release();
+        outbound.clear();
+        setPendingBytes(0);
+        try {
+            channel.close();
+        } catch (IOException ioException) {
+            ioException.printStackTrace();
         }
-        outputBuffer.clear();
-        builder.delete(0,builder.length());
-        if(written<=0){ //表示客户端没有输信息
-            this.sk.channel().close();
-        }else{
-            channel.write(ByteBuffer.wrap("\r\nreactor>".getBytes()));
-            this.sk.interestOps(SelectionKey.OP_READ);
+    }
+    /**
+     * 待发送字节数的变化同步给所在的Reactor，用于负载均衡
+     */
+    private void setPendingBytes(long bytes) {
+        if (reactor != null) {
+            reactor.addPendingBytes(bytes - pendingBytes);
         }
+        pendingBytes = bytes;
+    }
+    private static ByteBuffer readOnly(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer.asReadOnlyBuffer();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,127 @@
+package com.netty.example.reactor.multi;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * selector线程把解码好的请求交给业务线程执行的有界派发器
+ * <p>
+ * 队列满时{@link #trySubmit(Runnable)}直接返回false，不阻塞selector线程，也不会无限堆积任务；
+ * 调用方应当暂停读取，并通过{@link #whenCapacity(Runnable)}在队列有空位时得到通知；
+ * 每个执行完的任务只通知一个等待者，等待者没有提交任务时要调用{@link #signalCapacity()}把通知传下去。
+ * 记录每个任务的排队时间和执行时间直方图（微秒）。
+ */
+public class BoundedDispatcher {
+    private static final long MAX_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final ThreadPoolExecutor executor;
+    private final Queue<Runnable> capacityWaiters = new ConcurrentLinkedQueue<>();
+    private final Histogram queueTime = new ConcurrentHistogram(MAX_TRACKABLE_MICROS, 2);
+    private final Histogram serviceTime = new ConcurrentHistogram(MAX_TRACKABLE_MICROS, 2);
+    private final LongAdder rejected = new LongAdder();
+
+    public BoundedDispatcher(int threads, int queueCapacity) {
+        AtomicInteger index = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> new Thread(r, "reactor-business-" + index.getAndIncrement()));
+    }
+
+    /**
+     * 提交任务，队列已满时返回false
+     */
+    public boolean trySubmit(Runnable task) {
+        long submitTime = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long startTime = System.nanoTime();
+                queueTime.recordValue(Math.min(MAX_TRACKABLE_MICROS, (startTime - submitTime) / 1000));
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                } finally {
+                    serviceTime.recordValue(Math.min(MAX_TRACKABLE_MICROS, (System.nanoTime() - startTime) / 1000));
+                    notifyWaiter();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return false;
+        }
+    }
+
+    /**
+     * 队列有空位时回调一次，回调在业务线程上执行，应当尽快返回
+     */
+    public void whenCapacity(Runnable callback) {
+        capacityWaiters.offer(callback);
+        //注册之前所有任务可能已经执行完了，这时没有人会再通知，需要自己检查一次
+        signalCapacity();
+    }
+
+    /**
+     * 收到通知的等待者没有用上这个空位时调用（比如连接已经关闭），把通知传给下一个等待者，
+     * 否则任务全部执行完后剩下的等待者再也不会被唤醒
+     */
+    public void signalCapacity() {
+        if (executor.getQueue().remainingCapacity() > 0) {
+            notifyWaiter();
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * 排队时间直方图的副本（微秒）
+     */
+    public Histogram getQueueTime() {
+        return queueTime.copy();
+    }
+
+    /**
+     * 执行时间直方图的副本（微秒）
+     */
+    public Histogram getServiceTime() {
+        return serviceTime.copy();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "queueDepth=" + getQueueDepth() + ", rejected=" + getRejected()
+                + ", queueTime[" + summary(queueTime) + "], serviceTime[" + summary(serviceTime) + "]";
+    }
+
+    private void notifyWaiter() {
+        Runnable waiter = capacityWaiters.poll();
+        if (waiter != null) {
+            waiter.run();
+        }
+    }
+
+    private static String summary(Histogram histogram) {
+        return String.format("count=%d, p50=%dus, p99=%dus, p999=%dus, max=%dus", histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+                histogram.getValueAtPercentile(99.9), histogram.getMaxValue());
+    }
+}
@@ -1,56 +1,246 @@
 package com.netty.example.reactor.multi;
 
+import com.netty.example.reactor.DirectBufferPool;
+import com.netty.example.reactor.LineFrameDecoder;
+import com.netty.example.reactor.OutboundQueue;
+
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+/**
+ * 先解码再派发的连接处理器
+ * <p>
+ * selector线程只做非阻塞读和按行拆包，完整的请求交给{@link BoundedDispatcher}在业务线程上处理，
+ * 响应再交回selector线程写出。同一个连接的请求按顺序逐个处理，后续请求在backlog中排队；
+ * backlog满了或者派发器的队列满了就取消OP_READ，不再从socket读数据，由TCP流控把压力传回客户端。
+ */
+public class MultiDispatchHandler implements ReactorHandler {
+    private static final DirectBufferPool POOL = DirectBufferPool.DEFAULT;
+    private static final int MAX_REQUEST_LENGTH = 64 * 1024;
+    private static final long WRITE_HIGH_WATER_MARK = 64 * 1024;
 
-public class MultiDispatchHandler implements Runnable{
-    private SocketChannel channel;
-    public MultiDispatchHandler(SocketChannel channel) {
+    private final SocketChannel channel;
+    private final BoundedDispatcher dispatcher;
+    private final int maxBacklog;
+    private final LineFrameDecoder decoder = new LineFrameDecoder(POOL, MAX_REQUEST_LENGTH);
+    private final OutboundQueue outbound = new OutboundQueue(POOL);
+    /**
+     * 已经解码但还没有派发的请求
+     */
+    private final ArrayDeque<byte[]> backlog = new ArrayDeque<>();
+    private long backlogBytes;
+    private int inFlightBytes;
+    private boolean inFlight;
+    private boolean waitingForCapacity;
+    private boolean inputClosed;
+    private SelectionKey sk;
+    private volatile Reactor reactor;
+    private long lastActiveNanos = System.nanoTime();
+    private long pendingBytes;
+
+    public MultiDispatchHandler(SocketChannel channel, BoundedDispatcher dispatcher, int maxBacklog) {
         this.channel = channel;
+        this.dispatcher = dispatcher;
+        this.maxBacklog = maxBacklog;
+    }
+
+    @Override
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    public SelectionKey getSk() {
+        return sk;
+    }
+
+    @Override
+    public void setSk(SelectionKey sk) {
+        this.sk = sk;
+    }
+
+    @Override
+    public void bind(Reactor reactor) {
+        this.reactor = reactor;
+        updatePendingBytes();
+    }
+
+    @Override
+    public long getLastActiveNanos() {
+        return lastActiveNanos;
+    }
+
+    /**
+     * 包括还没有处理完的请求
+     */
+    @Override
+    public long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * 有请求在处理中或者在等待派发器空位时，回调会在原来的Reactor上执行，不能迁移。
+     * 空行请求的字节数是0，不能只看getPendingBytes
+     */
+    @Override
+    public boolean isMigratable() {
+        return pendingBytes == 0 && !inFlight && !waitingForCapacity;
     }
-    private static Executor executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() << 1);
+
     @Override
     public void run() {
-        processor();
-    }
-    private void processor(){
-        executor.execute(new ReaderHandler(channel));
-    }
-    public static class ReaderHandler implements Runnable{
-        private SocketChannel channel;
-        public ReaderHandler(SocketChannel socketChannel) {
-            this.channel = socketChannel;
-        }
-        @Override
-        public void run() {
-            System.out.println(Thread.currentThread().getName()+"---handler"); //case: 打印当前线程名称，证明I/O是同一个线程来处理。
-            ByteBuffer buffer= ByteBuffer.allocate(1024);
-            int len=0;
-            String msg="";
-            try {
-                do {
-                    len = channel.read(buffer);
-                    if (len > 0) {
-                        msg += new String(buffer.array());
-                    }
-                    buffer.clear();
-                } while (len > buffer.capacity());
-                if(len>0) {
-                    System.out.println(channel.getRemoteAddress() + ":Server Receive msg:" + msg);
-                }
-            }catch (Exception e){
-                e.printStackTrace();
-                if(channel!=null){
-                    try {
-                        channel.close();
-                    } catch (IOException ioException) {
-                        ioException.printStackTrace();
-                    }
-                }
+        lastActiveNanos = System.nanoTime();
+        try {
+            if (sk.isReadable()) {
+                read();
+            }
+            if (sk.isValid() && sk.isWritable()) {
+                flush();
+                //对端已经半关闭时，最后一个响应写完就该关闭连接，这个判断在dispatchNext里
+                dispatchNext();
+                updateInterest();
             }
+        } catch (Exception e) {
+            close();
+        }
+    }
+
+    private void read() throws IOException {
+        int n = decoder.read(channel, this::onRequest);
+        if (n < 0) {
+            //客户端关闭了输出，处理完已经收到的请求再关闭
+            inputClosed = true;
+        }
+        dispatchNext();
+        updateInterest();
+    }
+
+    private void onRequest(ByteBuffer frame) {
+        //frame只在回调期间有效，业务线程需要自己的一份拷贝
+        byte[] request = new byte[frame.remaining()];
+        frame.get(request);
+        backlog.add(request);
+        backlogBytes += request.length;
+    }
+
+    /**
+     * 在selector线程上调用，当前没有请求在处理时派发backlog中的下一个请求
+     */
+    private void dispatchNext() throws IOException {
+        if (inFlight || waitingForCapacity || !channel.isOpen()) {
+            return;
+        }
+        byte[] request = backlog.peek();
+        if (request == null) {
+            if (inputClosed && outbound.isEmpty()) {
+                throw new EOFException();
+            }
+            return;
+        }
+        Reactor owner = reactor;
+        if (dispatcher.trySubmit(() -> {
+            ByteBuffer response = process(request);
+            owner.execute(() -> onResponse(response));
+        })) {
+            backlog.poll();
+            backlogBytes -= request.length;
+            inFlightBytes = request.length;
+            inFlight = true;
+        } else {
+            //派发器的队列满了，等有空位时再派发，期间不读新的数据
+            waitingForCapacity = true;
+            dispatcher.whenCapacity(() -> owner.execute(this::onCapacity));
+        }
+    }
+
+    /**
+     * 业务处理，在业务线程上执行
+     */
+    private ByteBuffer process(byte[] request) {
+        String msg = new String(request, StandardCharsets.UTF_8);
+        byte[] reply = ("Server Response: " + msg + "\r\n").getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.wrap(reply);
+    }
+
+    private void onResponse(ByteBuffer response) {
+        inFlight = false;
+        inFlightBytes = 0;
+        if (!channel.isOpen()) {
+            return;
+        }
+        outbound.add(response);
+        afterStateChange();
+    }
+
+    private void onCapacity() {
+        waitingForCapacity = false;
+        if (channel.isOpen()) {
+            afterStateChange();
+        }
+        if (!inFlight && !waitingForCapacity) {
+            //连接已经关闭，没有用上这个空位，交给下一个等待的连接
+            dispatcher.signalCapacity();
+        }
+    }
+
+    private void afterStateChange() {
+        try {
+            flush();
+            dispatchNext();
+            updateInterest();
+        } catch (Exception e) {
+            close();
+        }
+    }
+
+    private void flush() throws IOException {
+        outbound.flush(channel);
+        updateInterest();
+    }
+
+    private void updateInterest() {
+        updatePendingBytes();
+        if (!sk.isValid()) {
+            return;
+        }
+        int ops = 0;
+        //backlog满了、等待派发器空位、对端读得太慢时都暂停读取
+        if (!inputClosed && backlog.size() < maxBacklog && !waitingForCapacity
+                && outbound.pendingBytes() < WRITE_HIGH_WATER_MARK) {
+            ops |= SelectionKey.OP_READ;
+        }
+        if (!outbound.isEmpty()) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        if (sk.interestOps() != ops) {
+            sk.interestOps(ops);
+        }
+    }
+
+    private void updatePendingBytes() {
+        long bytes = outbound.pendingBytes() + backlogBytes + inFlightBytes;
+        if (reactor != null) {
+            reactor.addPendingBytes(bytes - pendingBytes);
+        }
+        pendingBytes = bytes;
+    }
+
+    private void close() {
+        decoder.release();
+        outbound.clear();
+        backlog.clear();
+        backlogBytes = 0;
+        inFlightBytes = 0;
+        updatePendingBytes();
+        try {
+            channel.close();
+        } catch (IOException ioException) {
+            ioException.printStackTrace();
         }
     }
-}
\ No newline at end of file
+}
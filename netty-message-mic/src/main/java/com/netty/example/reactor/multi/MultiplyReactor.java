@@ -2,36 +2,59 @@ package com.netty.example.reactor.multi;
 
 
 import java.io.IOException;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class MultiplyReactor {
-    public static void main(String[] args) throws IOException {
-        MultiplyReactor mr = new MultiplyReactor(8888);
+    /**
+     * 参数为dispatch时，请求交给业务线程池处理（MultiDispatchHandler），否则在selector线程上直接回显（AsyncHandler）
+     */
+    public static void main(String[] args) throws Exception {
+        BoundedDispatcher dispatcher = args.length > 0 && "dispatch".equals(args[0])
+                ? new BoundedDispatcher(Runtime.getRuntime().availableProcessors() << 1, 1024) : null;
+        ReactorHandlerFactory handlerFactory = dispatcher != null
+                ? channel -> new MultiDispatchHandler(channel, dispatcher, 64) : AsyncHandler::new;
+        MultiplyReactor mr = new MultiplyReactor(8888, new ReactorConfig(), handlerFactory);
         mr.start();
+        while (true) {
+            TimeUnit.SECONDS.sleep(10);
+            for (ReactorStats stats : mr.getSubReactors().getStats()) {
+                System.out.println(stats);
+            }
+            if (dispatcher != null) {
+                System.out.println("dispatcher: " + dispatcher);
+            }
+        }
     }
 
-    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
-    // Reactor（Selector） 线程池，其中一个线程被 mainReactor 使用，剩余线程都被 subReactor 使用
-    static Executor mainReactorExecutor = Executors.newFixedThreadPool(POOL_SIZE);
-    // 主 Reactor，接收连接，把 SocketChannel 注册到从 Reactor 上
-    private Reactor mainReactor;
-    private int port;
-
-    public MultiplyReactor(int port) {
-        try {
-            this.port = port;
-            mainReactor = new Reactor();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    // 主 Reactor，接收连接，把 SocketChannel 注册到负载最低的子 Reactor 上
+    private final Reactor mainReactor;
+    // 子 Reactor，负责连接的读写，数量至少为 1，和主 Reactor 各自独占一个线程
+    private final ReactorGroup subReactors;
+    private final ReactorHandlerFactory handlerFactory;
+    private final int port;
+
+    public MultiplyReactor(int port, ReactorConfig config, ReactorHandlerFactory handlerFactory) throws IOException {
+        this.port = port;
+        this.handlerFactory = handlerFactory;
+        this.mainReactor = new Reactor();
+        this.subReactors = new ReactorGroup(config);
     }
 
     /**
      * 启动主从 Reactor，初始化并注册 Acceptor 到主 Reactor
      */
     public void start() throws IOException {
-        new Acceptor(mainReactor.getSelector(), port); // 将 ServerSocketChannel 注册到 mainReactor
-        mainReactorExecutor.execute(mainReactor); //使用线程池来处理main Reactor的连接请求
+        new Acceptor(mainReactor.getSelector(), port, subReactors, handlerFactory); // 将 ServerSocketChannel 注册到 mainReactor
+        subReactors.start();
+        new Thread(mainReactor, "main-reactor").start();
+    }
+
+    public ReactorGroup getSubReactors() {
+        return subReactors;
+    }
+
+    public void shutdown() {
+        mainReactor.shutdown();
+        subReactors.shutdown();
     }
-}
\ No newline at end of file
+}
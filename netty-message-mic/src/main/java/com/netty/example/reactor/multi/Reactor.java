@@ -1,51 +1,226 @@
 package com.netty.example.reactor.multi;
 
 import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.util.Iterator;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class Reactor implements Runnable{
-    private ConcurrentLinkedQueue<AsyncHandler> events=new ConcurrentLinkedQueue<>();
+/**
+ * 一个selector线程
+ * <p>
+ * 其他线程不能直接操作selector，注册连接、迁移连接都包装成任务放进队列，再wakeup selector，
+ * 由Reactor自己的线程在下一轮循环开始时执行，避免register和select互相阻塞。
+ * 属于{@link ReactorGroup}的子Reactor会定期检查自己的负载，把空闲连接迁移到负载最低的子Reactor。
+ */
+public class Reactor implements Runnable {
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
     private final Selector selector;
+    private final ReactorGroup group;
+    private final ReactorConfig config;
+    private final ReactorStats stats;
+    /**
+     * 已经提交但还没有在selector上注册的连接，acceptor连续分配连接时也能看到最新的负载
+     */
+    private final AtomicInteger pendingRegistrations = new AtomicInteger();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private volatile int connections;
+    private volatile Thread thread;
+    private volatile boolean running = true;
+    private long lastRebalanceNanos = System.nanoTime();
+
     public Reactor() throws IOException {
+        this("main-reactor", null, new ReactorConfig());
+    }
+
+    Reactor(String name, ReactorGroup group, ReactorConfig config) throws IOException {
         this.selector = Selector.open();
+        this.group = group;
+        this.config = config;
+        this.stats = new ReactorStats(name);
     }
-    public Selector getSelector(){
+
+    public Selector getSelector() {
         return selector;
     }
+
+    public ReactorStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 当前负载：连接数加上折算成连接数的待发送字节数
+     */
+    public long load() {
+        return connections + pendingRegistrations.get() + pendingBytes.get() / config.getPendingBytesPerConnection();
+    }
+
+    /**
+     * 处理器的待发送字节数发生变化时调用
+     */
+    public void addPendingBytes(long delta) {
+        pendingBytes.addAndGet(delta);
+    }
+
+    public void register(ReactorHandler handler) {
+        register(handler, SelectionKey.OP_READ);
+    }
+
+    /**
+     * 把连接注册到这个Reactor，实际的注册在Reactor线程上完成
+     */
+    public void register(ReactorHandler handler, int interestOps) {
+        pendingRegistrations.incrementAndGet();
+        execute(() -> {
+            pendingRegistrations.decrementAndGet();
+            try {
+                handler.getChannel().configureBlocking(false);
+                SelectionKey sk = handler.getChannel().register(selector, interestOps, handler);
+                handler.setSk(sk);
+                handler.bind(this);
+            } catch (ClosedChannelException e) {
+                //注册之前连接已经关闭
+            } catch (IOException e) {
+                e.printStackTrace();
+                close(handler);
+            }
+        });
+    }
+
+    /**
+     * 在Reactor线程上执行任务
+     */
+    public void execute(Runnable task) {
+        long submitTime = System.nanoTime();
+        tasks.offer(() -> {
+            stats.task(System.nanoTime() - submitTime);
+            task.run();
+        });
+        if (Thread.currentThread() != thread) {
+            selector.wakeup();
+        }
+    }
+
+    public boolean inReactorThread() {
+        return Thread.currentThread() == thread;
+    }
+
     @Override
     public void run() {
+        thread = Thread.currentThread();
         try {
-            while (!Thread.interrupted()) {
-                AsyncHandler handler;
-                while ((handler = events.poll()) != null) {
-                    handler.getChannel().configureBlocking(false);
-                    SelectionKey sk=handler.getChannel().register(selector, SelectionKey.OP_READ);
-                    sk.attach(handler);
-                    handler.setSk(sk);
-                }
-                selector.select(); //阻塞
-                Set<SelectionKey> selectionKeys=selector.selectedKeys();
-                Iterator<SelectionKey> it=selectionKeys.iterator();
-                while(it.hasNext()){
-                    SelectionKey key=it.next();
+            while (running && !Thread.interrupted()) {
+                //子Reactor需要定期醒来检查负载，主Reactor一直阻塞到有事件或者任务
+                int selected = group != null ? selector.select(config.getRebalanceIntervalMillis()) : selector.select();
+                long start = System.nanoTime();
+                runTasks();
+                Set<SelectionKey> selectionKeys = selector.selectedKeys();
+                Iterator<SelectionKey> it = selectionKeys.iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
                     //获取attach方法传入的附加对象
-                    Runnable runnable=(Runnable)key.attachment();
-                    if(runnable!=null){
+                    Runnable runnable = (Runnable) key.attachment();
+                    if (runnable != null && key.isValid()) {
                         runnable.run();
                     }
-                    it.remove();
                 }
+                if (group != null && start - lastRebalanceNanos >= TimeUnit.MILLISECONDS.toNanos(config.getRebalanceIntervalMillis())) {
+                    lastRebalanceNanos = start;
+                    rebalance(start);
+                }
+                connections = selector.keys().size();
+                stats.update(connections, pendingBytes.get());
+                stats.loop(selected, System.nanoTime() - start);
             }
-        }catch (Exception e){
+        } catch (Exception e) {
             e.printStackTrace();
+        } finally {
+            closeAll();
         }
     }
-    public void register(AsyncHandler asyncHandler){
-        events.offer(asyncHandler);
+
+    public void shutdown() {
+        running = false;
         selector.wakeup();
     }
-}
\ No newline at end of file
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 负载明显高于平均值时，把空闲的连接迁移到负载最低的子Reactor。
+     * 只迁移没有待发送数据、一段时间内没有读写的连接，迁移不会打断正在进行的请求。
+     */
+    private void rebalance(long now) {
+        Reactor target = group.leastLoaded();
+        if (target == this) {
+            return;
+        }
+        long load = load();
+        double average = group.averageLoad();
+        long excess = Math.min((load - target.load()) / 2, config.getMaxMigrationsPerRound());
+        if (load <= average * (1 + config.getImbalanceRatio()) || excess <= 0) {
+            return;
+        }
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(config.getIdleMillis());
+        int moved = 0;
+        for (SelectionKey key : selector.keys()) {
+            if (moved >= excess) {
+                break;
+            }
+            Object attachment = key.attachment();
+            if (!key.isValid() || !(attachment instanceof ReactorHandler)) {
+                continue;
+            }
+            ReactorHandler handler = (ReactorHandler) attachment;
+            if (!handler.isMigratable() || now - handler.getLastActiveNanos() < idleNanos) {
+                continue;
+            }
+            int interestOps = key.interestOps();
+            //取消后channel可以立即注册到另一个selector上，期间到达的数据留在socket缓冲区里，不会丢失
+            key.cancel();
+            target.register(handler, interestOps);
+            stats.migratedOut();
+            target.stats.migratedIn();
+            moved++;
+        }
+    }
+
+    private void closeAll() {
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void close(ReactorHandler handler) {
+        try {
+            handler.getChannel().close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
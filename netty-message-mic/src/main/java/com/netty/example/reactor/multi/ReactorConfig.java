@@ -0,0 +1,34 @@
+package com.netty.example.reactor.multi;
+
+import lombok.Data;
+
+/**
+ * 主从Reactor引擎的配置
+ */
+@Data
+public class ReactorConfig {
+    /**
+     * 子Reactor的数量，至少为1；主Reactor单独占一个线程，不计算在内
+     */
+    private int subReactors = Runtime.getRuntime().availableProcessors();
+    /**
+     * 每个子Reactor检查一次负载是否均衡的间隔
+     */
+    private long rebalanceIntervalMillis = 1000;
+    /**
+     * 超过这个时间没有读写的连接才会被迁移
+     */
+    private long idleMillis = 5000;
+    /**
+     * 负载超过所有子Reactor平均负载的比例，超过时才迁移连接
+     */
+    private double imbalanceRatio = 0.25;
+    /**
+     * 每次检查最多迁移的连接数，避免迁移本身占用太多selector线程的时间
+     */
+    private int maxMigrationsPerRound = 256;
+    /**
+     * 折算成一个连接负载的待发送字节数
+     */
+    private long pendingBytesPerConnection = 64 * 1024;
+}
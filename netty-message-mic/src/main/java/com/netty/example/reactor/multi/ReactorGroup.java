@@ -0,0 +1,77 @@
+package com.netty.example.reactor.multi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一组子Reactor，每个Reactor独占一个线程
+ * <p>
+ * 新连接分配给负载最低的Reactor，而不是轮询：长连接的活跃程度差别很大，轮询分配后各个selector的负载很快就不均衡了。
+ */
+public class ReactorGroup {
+    private final Reactor[] reactors;
+    private final Thread[] threads;
+    private final AtomicInteger startIndex = new AtomicInteger();
+
+    public ReactorGroup(ReactorConfig config) throws IOException {
+        int size = Math.max(1, config.getSubReactors());
+        this.reactors = new Reactor[size];
+        this.threads = new Thread[size];
+        for (int i = 0; i < size; i++) {
+            reactors[i] = new Reactor("sub-reactor-" + i, this, config);
+            threads[i] = new Thread(reactors[i], "sub-reactor-" + i);
+        }
+    }
+
+    public void start() {
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    /**
+     * 负载最低的Reactor，负载相同时从不同的位置开始比较，避免总是选中第一个
+     */
+    public Reactor leastLoaded() {
+        int start = (startIndex.getAndIncrement() & Integer.MAX_VALUE) % reactors.length;
+        Reactor best = null;
+        long bestLoad = Long.MAX_VALUE;
+        for (int i = 0; i < reactors.length; i++) {
+            Reactor reactor = reactors[(start + i) % reactors.length];
+            long load = reactor.load();
+            if (load < bestLoad) {
+                best = reactor;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    public double averageLoad() {
+        long total = 0;
+        for (Reactor reactor : reactors) {
+            total += reactor.load();
+        }
+        return (double) total / reactors.length;
+    }
+
+    public void register(ReactorHandler handler) {
+        leastLoaded().register(handler);
+    }
+
+    public List<ReactorStats> getStats() {
+        List<ReactorStats> stats = new ArrayList<>(reactors.length);
+        for (Reactor reactor : reactors) {
+            stats.add(reactor.getStats());
+        }
+        return stats;
+    }
+
+    public void shutdown() {
+        for (Reactor reactor : reactors) {
+            reactor.shutdown();
+        }
+    }
+}
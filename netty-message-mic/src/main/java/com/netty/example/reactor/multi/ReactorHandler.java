@@ -0,0 +1,41 @@
+package com.netty.example.reactor.multi;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 注册到子Reactor上的连接处理器
+ * <p>
+ * Reactor在selector线程上调用run()处理就绪事件；负载均衡时会把空闲的处理器从一个Reactor迁移到另一个Reactor，
+ * 所以处理器要通过{@link #bind(Reactor)}记住自己当前所在的Reactor，不能在构造时固定下来。
+ */
+public interface ReactorHandler extends Runnable {
+
+    SocketChannel getChannel();
+
+    SelectionKey getSk();
+
+    void setSk(SelectionKey sk);
+
+    /**
+     * 注册或者迁移到reactor后，在reactor的线程上调用
+     */
+    void bind(Reactor reactor);
+
+    /**
+     * 最近一次处理读写事件的时间，System.nanoTime()
+     */
+    long getLastActiveNanos();
+
+    /**
+     * 还没有写到socket的字节数
+     */
+    long getPendingBytes();
+
+    /**
+     * 当前能否迁移到其他Reactor，默认没有待发送数据时可以迁移
+     */
+    default boolean isMigratable() {
+        return getPendingBytes() == 0;
+    }
+}
@@ -0,0 +1,12 @@
+package com.netty.example.reactor.multi;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 为新接受的连接创建处理器，Acceptor在主Reactor线程上调用
+ */
+@FunctionalInterface
+public interface ReactorHandlerFactory {
+    ReactorHandler newHandler(SocketChannel channel) throws IOException;
+}
@@ -0,0 +1,114 @@
+package com.netty.example.reactor.multi;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个Reactor的统计：每轮事件循环的处理耗时、任务从提交到执行的延迟、迁移的连接数
+ */
+public class ReactorStats {
+    private final String name;
+    private final LongAdder loops = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private final LongAdder totalLoopNanos = new LongAdder();
+    private final LongAccumulator maxLoopNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder tasks = new LongAdder();
+    private final LongAdder totalTaskDelayNanos = new LongAdder();
+    private final LongAccumulator maxTaskDelayNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder migratedIn = new LongAdder();
+    private final LongAdder migratedOut = new LongAdder();
+    private volatile int connections;
+    private volatile long pendingBytes;
+
+    ReactorStats(String name) {
+        this.name = name;
+    }
+
+    void loop(int selected, long loopNanos) {
+        loops.increment();
+        events.add(selected);
+        totalLoopNanos.add(loopNanos);
+        maxLoopNanos.accumulate(loopNanos);
+    }
+
+    void task(long delayNanos) {
+        tasks.increment();
+        totalTaskDelayNanos.add(delayNanos);
+        maxTaskDelayNanos.accumulate(delayNanos);
+    }
+
+    void migratedIn() {
+        migratedIn.increment();
+    }
+
+    void migratedOut() {
+        migratedOut.increment();
+    }
+
+    void update(int connections, long pendingBytes) {
+        this.connections = connections;
+        this.pendingBytes = pendingBytes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLoops() {
+        return loops.sum();
+    }
+
+    public long getEvents() {
+        return events.sum();
+    }
+
+    /**
+     * 每轮事件循环处理就绪事件和任务的平均耗时（微秒），不包括阻塞在select上的时间
+     */
+    public double getAverageLoopMicros() {
+        long count = getLoops();
+        return count == 0 ? 0 : totalLoopNanos.sum() / 1000.0 / count;
+    }
+
+    public double getMaxLoopMicros() {
+        return maxLoopNanos.get() / 1000.0;
+    }
+
+    /**
+     * 注册、迁移等任务从提交到在selector线程上执行的平均延迟（微秒）
+     */
+    public double getAverageTaskDelayMicros() {
+        long count = tasks.sum();
+        return count == 0 ? 0 : totalTaskDelayNanos.sum() / 1000.0 / count;
+    }
+
+    public double getMaxTaskDelayMicros() {
+        return maxTaskDelayNanos.get() / 1000.0;
+    }
+
+    public long getMigratedIn() {
+        return migratedIn.sum();
+    }
+
+    public long getMigratedOut() {
+        return migratedOut.sum();
+    }
+
+    /**
+     * 最近一轮事件循环结束时注册在selector上的连接数
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    public long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: connections=%d, pendingBytes=%d, loops=%d, events=%d, avgLoop=%.1fus, maxLoop=%.1fus, avgTaskDelay=%.1fus, maxTaskDelay=%.1fus, migratedIn=%d, migratedOut=%d",
+                name, getConnections(), getPendingBytes(), getLoops(), getEvents(), getAverageLoopMicros(), getMaxLoopMicros(),
+                getAverageTaskDelayMicros(), getMaxTaskDelayMicros(), getMigratedIn(), getMigratedOut());
+    }
+}
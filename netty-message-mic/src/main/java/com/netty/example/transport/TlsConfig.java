@@ -0,0 +1,42 @@
+package com.netty.example.transport;
+
+import lombok.Data;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TLS配置，默认关闭
+ */
+@Data
+public class TlsConfig {
+    private boolean enabled = false;
+    /**
+     * netty-tcnative可用时使用OpenSSL引擎，否则使用JDK的SSLEngine
+     */
+    private boolean preferOpenSsl = true;
+    /**
+     * 服务端证书链和私钥（PEM），为空时生成自签名证书，仅用于测试
+     */
+    private String certChainFile;
+    private String keyFile;
+    /**
+     * 客户端信任的证书（PEM），同时校验服务端证书中的主机名；为空时信任任何证书，仅用于测试
+     */
+    private String trustCertFile;
+    private List<String> protocols = Arrays.asList("TLSv1.3", "TLSv1.2");
+    /**
+     * ALPN协商的应用层协议
+     */
+    private List<String> applicationProtocols = Arrays.asList("mic/1");
+    /**
+     * 会话缓存的条目数和有效期，客户端重连时可以恢复会话，省去完整握手
+     */
+    private long sessionCacheSize = 20480;
+    private long sessionTimeoutSeconds = 3600;
+    /**
+     * 服务端会话票据（session ticket）密钥的轮换间隔，只有OpenSSL引擎支持设置，0表示不轮换
+     */
+    private long ticketKeyRotationMinutes = 60;
+    private long handshakeTimeoutMillis = 10000;
+}
@@ -0,0 +1,164 @@
+package com.netty.example.transport;
+
+import io.netty.channel.Channel;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.EventExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.security.SecureRandom;
+import java.security.cert.CertificateException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 根据{@link TlsConfig}创建SslContext和SslHandler
+ * <p>
+ * netty-tcnative在classpath上（maven的openssl profile）时使用OpenSSL引擎，握手和加解密都比JDK快得多；
+ * 否则退回JDK引擎。服务端开启会话缓存，OpenSSL引擎还会定期轮换会话票据密钥；
+ * 客户端创建SslHandler时带上对端的地址，重连同一个服务端时可以恢复会话；配置了信任证书时还按这个地址校验证书的主机名。
+ * <p>
+ * SslHandler放在pipeline的最前面，编解码器看到的都是明文ByteBuf，零拷贝的消息体slice不受影响。
+ */
+@Slf4j
+public class TlsContextFactory {
+
+    /**
+     * 客户端连接的对端地址，由connect前设置，用于查找可以恢复的会话
+     */
+    public static final AttributeKey<InetSocketAddress> PEER = AttributeKey.valueOf("mic.tls.peer");
+
+    private final TlsConfig config;
+    private final SslProvider provider;
+
+    public TlsContextFactory(TlsConfig config) {
+        this.config = config;
+        this.provider = config.isPreferOpenSsl() && OpenSsl.isAvailable() ? SslProvider.OPENSSL : SslProvider.JDK;
+        if (config.isPreferOpenSsl() && provider == SslProvider.JDK) {
+            log.info("OpenSSL不可用，使用JDK SSLEngine：" + OpenSsl.unavailabilityCause());
+        }
+    }
+
+    public SslProvider provider() {
+        return provider;
+    }
+
+    public SslContext newServerContext() throws SSLException, CertificateException {
+        SslContextBuilder builder;
+        if (config.getCertChainFile() != null) {
+            builder = SslContextBuilder.forServer(new File(config.getCertChainFile()), new File(config.getKeyFile()));
+        } else {
+            SelfSignedCertificate certificate = new SelfSignedCertificate("localhost");
+            builder = SslContextBuilder.forServer(certificate.certificate(), certificate.privateKey());
+        }
+        builder.sslProvider(provider)
+                .protocols(config.getProtocols())
+                .sessionCacheSize(config.getSessionCacheSize())
+                .sessionTimeout(config.getSessionTimeoutSeconds());
+        applicationProtocols(builder, ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE);
+        return builder.build();
+    }
+
+    public SslContext newClientContext() throws SSLException {
+        SslContextBuilder builder = SslContextBuilder.forClient();
+        if (config.getTrustCertFile() != null) {
+            builder.trustManager(new File(config.getTrustCertFile()));
+        } else {
+            log.warn("没有配置trustCertFile，信任任何服务端证书，只能用于测试");
+            builder.trustManager(InsecureTrustManagerFactory.INSTANCE);
+        }
+        builder.sslProvider(provider)
+                .protocols(config.getProtocols())
+                .sessionCacheSize(config.getSessionCacheSize())
+                .sessionTimeout(config.getSessionTimeoutSeconds());
+        applicationProtocols(builder, ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE);
+        return builder.build();
+    }
+
+    private void applicationProtocols(SslContextBuilder builder, ApplicationProtocolConfig.SelectorFailureBehavior behavior) {
+        if (config.getApplicationProtocols().isEmpty()) {
+            return;
+        }
+        if (!SslProvider.isAlpnSupported(provider)) {
+            log.warn(provider + "不支持ALPN，不协商应用层协议");
+            return;
+        }
+        builder.applicationProtocolConfig(new ApplicationProtocolConfig(ApplicationProtocolConfig.Protocol.ALPN,
+                behavior, ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                config.getApplicationProtocols()));
+    }
+
+    /**
+     * OpenSSL引擎下定期生成新的票据密钥，旧密钥保留一个周期用于解密已经发出的票据
+     */
+    public void scheduleTicketKeyRotation(SslContext context, EventExecutor executor) {
+        if (!(context.sessionContext() instanceof OpenSslSessionContext) || config.getTicketKeyRotationMinutes() <= 0) {
+            return;
+        }
+        OpenSslSessionContext sessionContext = (OpenSslSessionContext) context.sessionContext();
+        OpenSslSessionTicketKey[] current = {newTicketKey()};
+        sessionContext.setTicketKeys(current[0]);
+        long period = config.getTicketKeyRotationMinutes();
+        executor.scheduleAtFixedRate(() -> {
+            //第一个密钥用于加密新票据，其余的只用于解密
+            OpenSslSessionTicketKey next = newTicketKey();
+            sessionContext.setTicketKeys(next, current[0]);
+            current[0] = next;
+        }, period, period, TimeUnit.MINUTES);
+    }
+
+    private static OpenSslSessionTicketKey newTicketKey() {
+        SecureRandom random = new SecureRandom();
+        byte[] name = new byte[OpenSslSessionTicketKey.NAME_SIZE];
+        byte[] hmacKey = new byte[OpenSslSessionTicketKey.HMAC_KEY_SIZE];
+        byte[] aesKey = new byte[OpenSslSessionTicketKey.AES_KEY_SIZE];
+        random.nextBytes(name);
+        random.nextBytes(hmacKey);
+        random.nextBytes(aesKey);
+        return new OpenSslSessionTicketKey(name, hmacKey, aesKey);
+    }
+
+    /**
+     * 服务端的SslHandler
+     */
+    public SslHandler newServerHandler(SslContext context, Channel channel) {
+        SslHandler handler = context.newHandler(channel.alloc());
+        handler.setHandshakeTimeoutMillis(config.getHandshakeTimeoutMillis());
+        return handler;
+    }
+
+    /**
+     * 客户端的SslHandler，channel上设置了{@link #PEER}时按对端地址复用会话。
+     * 配置了trustCertFile时校验服务端证书的主机名，否则同一个CA签发给其他主机的证书也会被接受
+     */
+    public SslHandler newClientHandler(SslContext context, Channel channel) {
+        InetSocketAddress peer = channel.attr(PEER).get();
+        if (peer == null && config.getTrustCertFile() != null) {
+            throw new IllegalStateException("校验服务端证书需要对端地址，connect前没有设置" + PEER);
+        }
+        SslHandler handler = peer == null
+                ? context.newHandler(channel.alloc())
+                : context.newHandler(channel.alloc(), peer.getHostString(), peer.getPort());
+        if (config.getTrustCertFile() != null) {
+            SSLEngine engine = handler.engine();
+            SSLParameters parameters = engine.getSSLParameters();
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+            engine.setSSLParameters(parameters);
+        }
+        handler.setHandshakeTimeoutMillis(config.getHandshakeTimeoutMillis());
+        return handler;
+    }
+}
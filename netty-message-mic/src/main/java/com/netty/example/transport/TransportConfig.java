@@ -0,0 +1,42 @@
+package com.netty.example.transport;
+
+import lombok.Data;
+
+/**
+ * 传输层配置，netty-message-mic中所有的服务端和客户端共用
+ */
+@Data
+public class TransportConfig {
+    /**
+     * Linux上epoll可用时优先使用native传输，否则退回NIO
+     */
+    private boolean preferNative = true;
+    /**
+     * 接收连接的线程数。只有epoll + SO_REUSEPORT时才会在同一端口上绑定多个监听socket，
+     * 由内核在它们之间分发新连接；NIO下只会用到一个
+     */
+    private int acceptorThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
+    /**
+     * IO线程数，0表示使用netty默认值（cpu核数的两倍）
+     */
+    private int workerThreads = 0;
+    /**
+     * 是否开启SO_REUSEPORT，仅native传输支持
+     */
+    private boolean reusePort = true;
+    private boolean tcpNoDelay = true;
+    private boolean keepAlive = true;
+    private int backlog = 1024;
+    /**
+     * 使用池化的直接内存
+     */
+    private boolean directBuffers = true;
+    /**
+     * 出站缓冲区低水位，低于它channel重新变为可写
+     */
+    private int writeBufferLowWaterMark = 32 * 1024;
+    /**
+     * 出站缓冲区高水位，超过它channel变为不可写
+     */
+    private int writeBufferHighWaterMark = 64 * 1024;
+}
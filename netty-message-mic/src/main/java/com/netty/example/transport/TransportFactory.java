@@ -0,0 +1,133 @@
+package com.netty.example.transport;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.PreferHeapByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 根据{@link TransportConfig}创建线程组和Bootstrap
+ * <p>
+ * Linux上epoll可用时使用native传输，否则使用NIO；统一设置池化直接内存、TCP_NODELAY、写缓冲水位，
+ * epoll下开启SO_REUSEPORT并在同一端口绑定多个监听socket，让多个线程并行accept。
+ */
+@Slf4j
+public class TransportFactory {
+
+    /**
+     * 都建立在PooledByteBufAllocator.DEFAULT上，和基准测试、压缩等直接使用默认分配器的代码共用同一套arena和线程缓存
+     */
+    private static final ByteBufAllocator POOLED_DIRECT = PooledByteBufAllocator.DEFAULT;
+    private static final ByteBufAllocator POOLED_HEAP = new PreferHeapByteBufAllocator(PooledByteBufAllocator.DEFAULT);
+
+    private final TransportConfig config;
+    private final boolean epoll;
+
+    public TransportFactory(TransportConfig config) {
+        this.config = config;
+        this.epoll = config.isPreferNative() && Epoll.isAvailable();
+        if (config.isPreferNative() && !epoll) {
+            log.info("epoll不可用，使用NIO传输：" + Epoll.unavailabilityCause());
+        }
+    }
+
+    /**
+     * 是否使用native epoll传输
+     */
+    public boolean isNative() {
+        return epoll;
+    }
+
+    public TransportConfig getConfig() {
+        return config;
+    }
+
+    public ByteBufAllocator allocator() {
+        return config.isDirectBuffers() ? POOLED_DIRECT : POOLED_HEAP;
+    }
+
+    /**
+     * 接收连接的线程组，只有多个监听socket时才需要多个线程
+     */
+    public EventLoopGroup newBossGroup(String name) {
+        return newEventLoopGroup(isReusePort() ? config.getAcceptorThreads() : 1, name);
+    }
+
+    public EventLoopGroup newWorkerGroup(String name) {
+        return newEventLoopGroup(config.getWorkerThreads(), name);
+    }
+
+    public EventLoopGroup newEventLoopGroup(int threads, String name) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(name);
+        return epoll ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    public ServerBootstrap newServerBootstrap(EventLoopGroup boss, EventLoopGroup worker) {
+        ServerBootstrap b = new ServerBootstrap();
+        b.group(boss, worker)
+                .channel(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+                .option(ChannelOption.SO_BACKLOG, config.getBacklog())
+                .option(ChannelOption.ALLOCATOR, allocator())
+                .childOption(ChannelOption.TCP_NODELAY, config.isTcpNoDelay())
+                .childOption(ChannelOption.SO_KEEPALIVE, config.isKeepAlive())
+                .childOption(ChannelOption.ALLOCATOR, allocator())
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark());
+        if (isReusePort()) {
+            b.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        return b;
+    }
+
+    public Bootstrap newBootstrap(EventLoopGroup group) {
+        Bootstrap b = new Bootstrap();
+        b.group(group)
+                .channel(epoll ? EpollSocketChannel.class : NioSocketChannel.class)
+                .option(ChannelOption.TCP_NODELAY, config.isTcpNoDelay())
+                .option(ChannelOption.SO_KEEPALIVE, config.isKeepAlive())
+                .option(ChannelOption.ALLOCATOR, allocator())
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, waterMark());
+        return b;
+    }
+
+    /**
+     * 绑定端口并阻塞到绑定完成。开启SO_REUSEPORT时绑定acceptorThreads个监听socket，
+     * 每个都落在boss线程组中不同的线程上
+     */
+    public List<Channel> bind(ServerBootstrap b, int port) throws InterruptedException {
+        int listeners = isReusePort() ? config.getAcceptorThreads() : 1;
+        List<Channel> channels = new ArrayList<>(listeners);
+        for (int i = 0; i < listeners; i++) {
+            channels.add(b.bind(port).sync().channel());
+        }
+        return channels;
+    }
+
+    /**
+     * 监听socket是否开启了SO_REUSEPORT，开启时新进程可以在旧进程退出前绑定同一个端口
+     */
+    public boolean isReusePort() {
+        return epoll && config.isReusePort();
+    }
+
+    private WriteBufferWaterMark waterMark() {
+        return new WriteBufferWaterMark(config.getWriteBufferLowWaterMark(), config.getWriteBufferHighWaterMark());
+    }
+}
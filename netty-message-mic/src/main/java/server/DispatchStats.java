@@ -0,0 +1,107 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 业务派发阶段的统计：队列深度、排队时间、执行时间、暂停读的次数
+ */
+public class DispatchStats {
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder tasks = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder totalServiceNanos = new LongAdder();
+    private final LongAccumulator maxServiceNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder readPauses = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    int enqueued() {
+        int depth = queueDepth.incrementAndGet();
+        maxQueueDepth.accumulate(depth);
+        return depth;
+    }
+
+    int completed(long waitNanos, long serviceNanos) {
+        tasks.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulate(waitNanos);
+        totalServiceNanos.add(serviceNanos);
+        maxServiceNanos.accumulate(serviceNanos);
+        return queueDepth.decrementAndGet();
+    }
+
+    /**
+     * 提交被拒绝，撤销{@link #enqueued()}增加的队列深度
+     */
+    void rejected() {
+        rejections.increment();
+        queueDepth.decrementAndGet();
+    }
+
+    void readPaused() {
+        readPauses.increment();
+    }
+
+    /**
+     * 当前已提交但还没有执行完的任务数
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long getTasks() {
+        return tasks.sum();
+    }
+
+    /**
+     * 平均排队时间（微秒）
+     */
+    public double getAverageWaitMicros() {
+        long count = getTasks();
+        return count == 0 ? 0 : totalWaitNanos.sum() / 1000.0 / count;
+    }
+
+    public double getMaxWaitMicros() {
+        return maxWaitNanos.get() / 1000.0;
+    }
+
+    /**
+     * 平均执行时间（微秒）
+     */
+    public double getAverageServiceMicros() {
+        long count = getTasks();
+        return count == 0 ? 0 : totalServiceNanos.sum() / 1000.0 / count;
+    }
+
+    public double getMaxServiceMicros() {
+        return maxServiceNanos.get() / 1000.0;
+    }
+
+    /**
+     * 因为队列超过高水位而关闭autoRead的次数
+     */
+    public long getReadPauses() {
+        return readPauses.sum();
+    }
+
+    /**
+     * 业务线程已经关闭、提交被拒绝的任务数
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("queueDepth=%d, maxQueueDepth=%d, tasks=%d, avgWait=%.1fus, maxWait=%.1fus, avgService=%.1fus, maxService=%.1fus, readPauses=%d, rejections=%d",
+                getQueueDepth(), getMaxQueueDepth(), getTasks(), getAverageWaitMicros(), getMaxWaitMicros(),
+                getAverageServiceMicros(), getMaxServiceMicros(), getReadPauses(), getRejections());
+    }
+}
@@ -0,0 +1,139 @@
+package server;
+
+import com.netty.example.mic.metrics.LogSampler;
+import com.netty.example.mic.opcode.OpCode;
+import com.netty.example.mic.proto.Header;
+import com.netty.example.mic.proto.MessageRecord;
+import com.netty.example.mic.stream.StreamMultiplexer;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录一个连接上已经接收、还没有写完响应的请求，服务端排空时负责发送GOAWAY并在请求处理完后关闭连接
+ * <p>
+ * 放在解码器之后、StreamMultiplexer之前，看得到所有的请求和流数据。
+ * GOAWAY的sessionId是发送时已经接收的最大sessionId，之后到达的更大sessionId的请求直接丢弃，
+ * 客户端收到GOAWAY后会以{@code GoAwayException}结束这些请求，两边按同一个规则判断，不会有请求被遗漏。
+ * <p>
+ * 客户端各个线程的sessionId取自同一个序列，写出的顺序不确定，sessionId小于等于lastSessionId的请求
+ * 在第一个GOAWAY之后仍然可能在路上。所以所有已接收的请求都响应完后再发送第二个GOAWAY，之后不再接收任何请求：
+ * 客户端收到第二个GOAWAY时还没有响应的请求都没有被处理过，同样以{@code GoAwayException}结束，可以重试。
+ * 排空超时被强制关闭的连接不会发送第二个GOAWAY，客户端只能得到连接关闭的异常。
+ */
+@Slf4j
+public class DrainHandler extends ChannelDuplexHandler {
+
+    private static final LogSampler LOG_SAMPLER = new LogSampler(1000);
+    private static final long CHECK_INTERVAL_MILLIS = 50;
+
+    private final ServerLifecycle lifecycle;
+    private ChannelHandlerContext ctx;
+    /**
+     * 已经接收、响应还没有写完的请求的sessionId。ServerHandler对PING等其他类型的消息也回复BUSI_RESP，
+     * 只按计数会被这些响应减成负数，所以按sessionId对应
+     */
+    private final Set<Long> pendingRequests = new HashSet<>();
+    private long lastSessionId;
+    private boolean goAwaySent;
+    private boolean closing;
+
+    public DrainHandler(ServerLifecycle lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        lifecycle.register(ctx.channel());
+        if (lifecycle.isDraining()) {
+            goAway();
+        }
+        super.channelActive(ctx);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        Header header = ((MessageRecord) msg).getHeader();
+        byte type = header.getType();
+        long sessionId = header.getSessionId();
+        if (type == OpCode.BUSI_REQ.code()) {
+            if (closing || (goAwaySent && sessionId > lastSessionId)) {
+                if (log.isDebugEnabled() && LOG_SAMPLER.sample()) {
+                    log.debug("drop request after GOAWAY, sessionId={}, lastSessionId={}, closing={}", sessionId, lastSessionId, closing);
+                }
+                ReferenceCountUtil.release(msg);
+                return;
+            }
+            pendingRequests.add(sessionId);
+            lastSessionId = Math.max(lastSessionId, sessionId);
+        } else if (type == OpCode.DATA.code() && !goAwaySent) {
+            //GOAWAY之后的新流由StreamMultiplexer拒绝
+            lastSessionId = Math.max(lastSessionId, sessionId);
+        }
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof MessageRecord && ((MessageRecord) msg).getHeader().getType() == OpCode.BUSI_RESP.code()) {
+            Long sessionId = ((MessageRecord) msg).getHeader().getSessionId();
+            if (pendingRequests.contains(sessionId)) {
+                //响应真正写出后才算处理完
+                promise = promise.unvoid().addListener(f -> pendingRequests.remove(sessionId));
+            }
+        }
+        ctx.write(msg, promise);
+    }
+
+    /**
+     * 发送GOAWAY，等在途请求处理完后关闭连接，可以在任意线程调用
+     */
+    public void goAway() {
+        ctx.executor().execute(this::sendGoAway);
+    }
+
+    private void sendGoAway() {
+        if (goAwaySent || !ctx.channel().isActive()) {
+            return;
+        }
+        goAwaySent = true;
+        StreamMultiplexer multiplexer = ctx.pipeline().get(StreamMultiplexer.class);
+        if (multiplexer != null) {
+            multiplexer.goAway(lastSessionId);
+        }
+        ctx.writeAndFlush(newGoAway());
+        closeWhenDone(multiplexer);
+    }
+
+    private MessageRecord newGoAway() {
+        Header header = new Header();
+        header.setSessionId(lastSessionId);
+        header.setType(OpCode.GOAWAY.code());
+        return new MessageRecord(header, null);
+    }
+
+    private void closeWhenDone(StreamMultiplexer multiplexer) {
+        if (!ctx.channel().isActive()) {
+            return;
+        }
+        if (!pendingRequests.isEmpty() || (multiplexer != null && multiplexer.activeCount() > 0)) {
+            ctx.executor().schedule(() -> closeWhenDone(multiplexer), CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        //第二个GOAWAY排在所有已经写出的响应之后，它写完时之前的响应都已经发出
+        closing = true;
+        ctx.writeAndFlush(newGoAway()).addListener(ChannelFutureListener.CLOSE);
+    }
+}
@@ -0,0 +1,112 @@
+package server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * 写合并：读批次进行中（channelRead到channelReadComplete之间）收到的flush先不执行，
+ * 等到channelReadComplete统一flush一次，流水线请求下每批次只需要一次write系统调用。
+ * <p>
+ * 批次内累计的write次数或字节数达到阈值时提前flush，避免在出站缓冲区里堆积过多数据。
+ * 不在读批次内的flush（比如业务线程写回的响应）合并成一个提交到EventLoop的flush任务，
+ * 任务执行前到达的响应都会在同一次flush中发出。
+ * <p>
+ * 需要放在pipeline的最前面，这样看到的是编码后的ByteBuf，才能统计字节数。
+ */
+public class FlushBatchingHandler extends ChannelDuplexHandler {
+
+    private final int maxPendingWrites;
+    private final long maxPendingBytes;
+    private final FlushBatchingStats stats;
+
+    private boolean readInProgress;
+    private boolean flushScheduled;
+    private int pendingWrites;
+    private long pendingBytes;
+
+    public FlushBatchingHandler(int maxPendingWrites, long maxPendingBytes, FlushBatchingStats stats) {
+        this.maxPendingWrites = maxPendingWrites;
+        this.maxPendingBytes = maxPendingBytes;
+        this.stats = stats;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        //先让后面的handler处理readComplete，它们在这里写出的数据也能合并进本次flush
+        ctx.fireChannelReadComplete();
+        if (readInProgress) {
+            readInProgress = false;
+            stats.recordReadBatch();
+            flushPending(ctx, false);
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        pendingWrites++;
+        pendingBytes += sizeOf(msg);
+        stats.recordWrite();
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (pendingWrites >= maxPendingWrites || pendingBytes >= maxPendingBytes) {
+            flushPending(ctx, true);
+        } else if (!readInProgress && !flushScheduled) {
+            flushScheduled = true;
+            ctx.channel().eventLoop().execute(() -> {
+                flushScheduled = false;
+                flushPending(ctx, false);
+            });
+        }
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        //出站缓冲区达到高水位时不再等待，尽快把数据刷出去
+        if (!ctx.channel().isWritable()) {
+            flushPending(ctx, true);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        flushPending(ctx, false);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        flushPending(ctx, false);
+    }
+
+    private void flushPending(ChannelHandlerContext ctx, boolean thresholdReached) {
+        if (pendingWrites > 0) {
+            pendingWrites = 0;
+            pendingBytes = 0;
+            stats.recordFlush(thresholdReached);
+            ctx.flush();
+        }
+    }
+
+    private static long sizeOf(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,69 @@
+package server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 写合并的统计数据，所有连接共享一个实例
+ */
+public class FlushBatchingStats {
+    private final LongAdder readBatches = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder thresholdFlushes = new LongAdder();
+
+    void recordWrite() {
+        writes.increment();
+    }
+
+    void recordFlush(boolean thresholdReached) {
+        flushes.increment();
+        if (thresholdReached) {
+            thresholdFlushes.increment();
+        }
+    }
+
+    void recordReadBatch() {
+        readBatches.increment();
+    }
+
+    public long getReadBatches() {
+        return readBatches.sum();
+    }
+
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    /**
+     * 因为达到条数或者字节数阈值而在读批次中途触发的flush次数
+     */
+    public long getThresholdFlushes() {
+        return thresholdFlushes.sum();
+    }
+
+    /**
+     * 平均每个读批次的flush次数
+     */
+    public double getFlushesPerReadBatch() {
+        long batches = getReadBatches();
+        return batches == 0 ? 0 : (double) getFlushes() / batches;
+    }
+
+    /**
+     * 平均每次flush合并的write数
+     */
+    public double getWritesPerFlush() {
+        long flushCount = getFlushes();
+        return flushCount == 0 ? 0 : (double) getWrites() / flushCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("readBatches=%d, writes=%d, flushes=%d, thresholdFlushes=%d, flushesPerReadBatch=%.3f, writesPerFlush=%.2f",
+                getReadBatches(), getWrites(), getFlushes(), getThresholdFlushes(), getFlushesPerReadBatch(), getWritesPerFlush());
+    }
+}
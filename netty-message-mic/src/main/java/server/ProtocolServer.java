@@ -2,48 +2,191 @@ package server;
 
 import com.netty.example.mic.codec.MessageRecordDecoder;
 import com.netty.example.mic.codec.MessageRecordEncoder;
+import com.netty.example.mic.codec.body.BodyCodecRegistry;
+import com.netty.example.mic.heartbeat.ConnectionRegistry;
+import com.netty.example.mic.heartbeat.HeartbeatConfig;
+import com.netty.example.mic.heartbeat.HeartbeatHandler;
+import com.netty.example.mic.metrics.MessageMetrics;
+import com.netty.example.mic.metrics.MetricsHandler;
+import com.netty.example.mic.stream.EchoStreamListener;
+import com.netty.example.mic.stream.StreamMultiplexer;
+import com.netty.example.transport.TlsContextFactory;
+import com.netty.example.transport.TransportFactory;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.ssl.SslContext;
 import lombok.extern.slf4j.Slf4j;
 
+import javax.net.ssl.SSLException;
+import java.security.cert.CertificateException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 @Slf4j
 public class ProtocolServer {
+
+    private final ServerConfig config;
+    private final FlushBatchingStats flushBatchingStats = new FlushBatchingStats();
+    private final WorkerDispatcher dispatcher;
+    private final ConnectionRegistry connectionRegistry = new ConnectionRegistry();
+    private final MessageMetrics metrics = new MessageMetrics();
+    private final ServerLifecycle lifecycle = new ServerLifecycle();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+
+    public ProtocolServer(ServerConfig config) {
+        this.config = config;
+        this.dispatcher = config.getBusinessThreads() > 0
+                ? new WorkerDispatcher(config.getBusinessThreads(), config.getDispatchHighWaterMark(), config.getDispatchLowWaterMark())
+                : null;
+    }
+
+    /**
+     * 参数为tls时使用自签名证书开启TLS。收到SIGTERM时先排空再退出，
+     * 热重启时先在同一端口启动新进程，再向旧进程发送SIGTERM
+     */
     public static void main(String[] args) {
-        EventLoopGroup boss = new NioEventLoopGroup();
+        ServerConfig config = new ServerConfig();
+        config.getTls().setEnabled(args.length > 0 && "tls".equals(args[0]));
+        ProtocolServer server = new ProtocolServer(config);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::shutdown, "mic-shutdown"));
+        server.start();
+    }
+
+    /**
+     * 启动服务并阻塞到排空完成
+     */
+    public void start() {
+        TransportFactory transport = new TransportFactory(config.getTransport());
+        EventLoopGroup boss = transport.newBossGroup("mic-boss");
         //2 用于对接受客户端连接读写操作的线程工作组
-        EventLoopGroup work = new NioEventLoopGroup();
-        ServerBootstrap b = new ServerBootstrap();
-        b.group(boss, work)    //绑定两个工作线程组
-                .channel(NioServerSocketChannel.class)    //设置NIO的模式
-                // 初始化绑定服务通道
-                .childHandler(new ChannelInitializer<SocketChannel>() {
-                    @Override
-                    protected void initChannel(SocketChannel sc) throws Exception {
-                        sc.pipeline()
-                                .addLast(
-                                        new LengthFieldBasedFrameDecoder(1024,
-                                                9, 4, 0, 0))
-                                .addLast(new MessageRecordEncoder())
-                                .addLast(new MessageRecordDecoder())
-                                .addLast(new ServerHandler());
-                    }
-                });
-        ChannelFuture cf = null;
+        EventLoopGroup work = transport.newWorkerGroup("mic-worker");
+        //epoll或NIO、池化直接内存、TCP_NODELAY等都由TransportFactory统一设置
+        ServerBootstrap b = transport.newServerBootstrap(boss, work);
+        TlsContextFactory tls = config.getTls().isEnabled() ? new TlsContextFactory(config.getTls()) : null;
+        SslContext sslContext = tls == null ? null : newServerContext(tls, boss);
+        // 初始化绑定服务通道
+        b.childHandler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel sc) throws Exception {
+                ChannelPipeline pipeline = sc.pipeline();
+                HeartbeatConfig heartbeat = config.getHeartbeat();
+                if (sslContext != null) {
+                    //最前面，后面的handler看到的都是明文
+                    pipeline.addLast(tls.newServerHandler(sslContext, sc));
+                }
+                if (config.isFlushBatching()) {
+                    //放在最前面，合并编码后的所有写
+                    pipeline.addLast(new FlushBatchingHandler(config.getFlushMaxWrites(),
+                            config.getFlushMaxBytes(), flushBatchingStats));
+                }
+                MetricsHandler metricsHandler = config.isMetrics() ? new MetricsHandler(metrics) : null;
+                if (metricsHandler != null) {
+                    pipeline.addLast(metricsHandler.wireHandler());
+                }
+                if (heartbeat.isEnabled()) {
+                    pipeline.addLast(HeartbeatHandler.newIdleStateHandler(false, heartbeat));
+                }
+                //MessageRecordDecoder自己完成拆包并检查长度限制
+                pipeline.addLast(new MessageRecordEncoder(BodyCodecRegistry.DEFAULT, config.getCompression()))
+                        .addLast(new MessageRecordDecoder(BodyCodecRegistry.DEFAULT, config.getDecoder()));
+                if (metricsHandler != null) {
+                    //紧跟在编解码器之后，PING/PONG和流消息也计入统计
+                    pipeline.addLast(metricsHandler);
+                }
+                if (heartbeat.isEnabled()) {
+                    //PING在IO线程上直接回复PONG，不进入业务派发
+                    pipeline.addLast(new HeartbeatHandler(false, heartbeat.getMaxMissed(), connectionRegistry));
+                }
+                pipeline.addLast(new DrainHandler(lifecycle));
+                //流数据在IO线程上处理，不进入业务派发
+                pipeline.addLast(new StreamMultiplexer(config.getStreams(), EchoStreamListener.INSTANCE))
+                        .addLast(new ServerHandler(dispatcher, config.getDecoder().getMaxConnectionMemory()));
+            }
+        });
+        if (config.isMetrics()) {
+            metrics.registerMBean("ProtocolServer-" + config.getPort());
+        }
         try {
-            cf = b.bind(8080).sync();
-            log.info("ProtocolServer start success");
-            cf.channel().closeFuture().sync();
+            List<Channel> listeners = transport.bind(b, config.getPort());
+            lifecycle.started(listeners);
+            log.info("ProtocolServer start success, native=" + transport.isNative() + ", listeners=" + listeners.size()
+                    + ", reusePort=" + transport.isReusePort() + ", tls=" + (tls == null ? "off" : tls.provider()));
+            lifecycle.awaitStopped();
         } catch (InterruptedException e) {
             e.printStackTrace();
         } finally {
             work.shutdownGracefully();
             boss.shutdownGracefully();
+            log.info("flush batching stats: " + flushBatchingStats);
+            log.info("connections: " + connectionRegistry);
+            if (config.isMetrics()) {
+                log.info("message metrics: " + metrics);
+                metrics.unregisterMBean();
+            }
+            if (dispatcher != null) {
+                dispatcher.shutdown();
+                log.info("dispatch stats: " + dispatcher.getStats());
+            }
+            terminated.countDown();
         }
     }
+
+    /**
+     * 停止接受新连接，向所有连接发送GOAWAY，等在途请求处理完或者到达drainTimeoutMillis后关闭，
+     * 阻塞到start()返回
+     *
+     * @return 所有在途请求都在截止时间前处理完返回true
+     */
+    public boolean shutdown() {
+        try {
+            boolean clean = lifecycle.drain(config.getDrainTimeoutMillis(), TimeUnit.MILLISECONDS);
+            //等待线程组关闭和统计输出
+            terminated.await(config.getDrainTimeoutMillis(), TimeUnit.MILLISECONDS);
+            return clean;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public ServerLifecycle getLifecycle() {
+        return lifecycle;
+    }
+
+    public FlushBatchingStats getFlushBatchingStats() {
+        return flushBatchingStats;
+    }
+
+    private static SslContext newServerContext(TlsContextFactory tls, EventLoopGroup boss) {
+        try {
+            SslContext sslContext = tls.newServerContext();
+            tls.scheduleTicketKeyRotation(sslContext, boss.next());
+            return sslContext;
+        } catch (SSLException | CertificateException e) {
+            throw new IllegalStateException("创建SslContext失败", e);
+        }
+    }
+
+    /**
+     * 按OpCode的消息统计和各阶段延迟，关闭统计时各项都为0
+     */
+    public MessageMetrics getMetrics() {
+        return metrics;
+    }
+
+    public ConnectionRegistry getConnectionRegistry() {
+        return connectionRegistry;
+    }
+
+    /**
+     * 业务派发阶段的统计，直接在IO线程处理业务时返回null
+     */
+    public DispatchStats getDispatchStats() {
+        return dispatcher == null ? null : dispatcher.getStats();
+    }
 }
@@ -0,0 +1,83 @@
+package server;
+
+import com.netty.example.mic.codec.DecoderLimits;
+import com.netty.example.mic.codec.compress.CompressionConfig;
+import com.netty.example.mic.heartbeat.HeartbeatConfig;
+import com.netty.example.mic.stream.StreamConfig;
+import com.netty.example.transport.TlsConfig;
+import com.netty.example.transport.TransportConfig;
+import lombok.Data;
+
+/**
+ * ProtocolServer的配置
+ */
+@Data
+public class ServerConfig {
+    private int port = 8080;
+
+    /**
+     * 传输层配置
+     */
+    private TransportConfig transport = new TransportConfig();
+
+    /**
+     * TLS配置，默认关闭
+     */
+    private TlsConfig tls = new TlsConfig();
+
+    /**
+     * 心跳配置，服务端只检测读空闲，不主动发送PING
+     */
+    private HeartbeatConfig heartbeat = new HeartbeatConfig();
+
+    /**
+     * 响应消息体的压缩配置
+     */
+    private CompressionConfig compression = new CompressionConfig();
+
+    /**
+     * 请求解码的长度和内存限制
+     */
+    private DecoderLimits decoder = new DecoderLimits();
+
+    /**
+     * 流复用的配置，客户端发起的流由EchoStreamListener处理
+     */
+    private StreamConfig streams = new StreamConfig();
+
+    /**
+     * 排空的截止时间，超过后还有在途请求的连接被强制关闭
+     */
+    private long drainTimeoutMillis = 30_000;
+
+    /**
+     * 是否收集按OpCode的消息统计和延迟分布，开启时注册名为ProtocolServer-端口的JMX MBean
+     */
+    private boolean metrics = true;
+
+    /**
+     * 是否开启写合并：一次读批次内的响应只在channelReadComplete时flush一次
+     */
+    private boolean flushBatching = true;
+    /**
+     * 读批次内累计的write次数达到该值时提前flush
+     */
+    private int flushMaxWrites = 64;
+    /**
+     * 读批次内累计的待发送字节数达到该值时提前flush，应当小于写缓冲区的高水位
+     */
+    private long flushMaxBytes = 32 * 1024;
+
+    /**
+     * 业务线程数，0表示直接在IO线程上处理业务
+     */
+    private int businessThreads = Runtime.getRuntime().availableProcessors() * 2;
+    /**
+     * 业务队列中的任务数达到高水位时暂停读取
+     */
+    private int dispatchHighWaterMark = 8192;
+    /**
+     * 业务队列中的任务数回落到低水位时恢复读取
+     */
+    private int dispatchLowWaterMark = 4096;
+}
@@ -1,27 +1,150 @@
 package server;
 
+import com.netty.example.mic.codec.DecoderLimits;
+import com.netty.example.mic.codec.SkippedMessageEvent;
+import com.netty.example.mic.metrics.LogSampler;
 import com.netty.example.mic.opcode.OpCode;
 import com.netty.example.mic.proto.Header;
 import com.netty.example.mic.proto.MessageRecord;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.ReferenceCountUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 @Slf4j
 public class ServerHandler extends ChannelInboundHandlerAdapter {
 
+    private static final LogSampler LOG_SAMPLER = new LogSampler(1000);
+
+    private final WorkerDispatcher dispatcher;
+    private final long maxConnectionMemory;
+    /**
+     * 这个连接上已经派发、还没有处理完的消息长度合计，IO线程增加，业务线程减少
+     */
+    private final AtomicLong outstandingBytes = new AtomicLong();
+    private volatile boolean memoryPaused;
+
+    /**
+     * 直接在IO线程上处理业务
+     */
+    public ServerHandler() {
+        this(null);
+    }
+
+    /**
+     * 业务交给dispatcher的业务线程处理，IO线程只负责解码和派发
+     */
+    public ServerHandler(WorkerDispatcher dispatcher) {
+        this(dispatcher, new DecoderLimits().getMaxConnectionMemory());
+    }
+
+    /**
+     * @param maxConnectionMemory 这个连接上等待业务线程处理的消息长度合计的上限，超过时暂停读取
+     */
+    public ServerHandler(WorkerDispatcher dispatcher, long maxConnectionMemory) {
+        this.dispatcher = dispatcher;
+        this.maxConnectionMemory = maxConnectionMemory;
+    }
+
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         MessageRecord messageRecord = (MessageRecord) msg;
-        log.info("server receive message:" + messageRecord);
-        MessageRecord res = new MessageRecord();
-        Header header = new Header();
-        header.setSessionId(messageRecord.getHeader().getSessionId());
-        header.setType(OpCode.BUSI_RESP.code());
-        String message = "Server Response Message!";
-        res.setBody(message);
-        header.setLength(message.length());
-        ctx.writeAndFlush(res);
+        if (dispatcher == null) {
+            handle(ctx, messageRecord);
+            return;
+        }
+        int bytes = sizeOf(messageRecord);
+        acquire(ctx, bytes);
+        boolean dispatched = dispatcher.dispatch(ctx.channel(), messageRecord.getHeader().getSessionId(), () -> {
+            try {
+                handle(ctx, messageRecord);
+            } finally {
+                release(ctx, bytes);
+            }
+        });
+        if (!dispatched) {
+            release(ctx, bytes);
+            ReferenceCountUtil.release(messageRecord);
+        }
+    }
+
+    /**
+     * 按解码出的ByteBuf的长度计算，其他类型的消息体按消息头中的长度估算
+     */
+    private static int sizeOf(MessageRecord record) {
+        Object body = record.getBody();
+        if (body instanceof ByteBuf) {
+            return ((ByteBuf) body).readableBytes();
+        }
+        Integer length = record.getHeader().getLength();
+        return length == null ? 0 : length;
+    }
+
+    /**
+     * 在IO线程上调用，超过上限时暂停读取
+     */
+    private void acquire(ChannelHandlerContext ctx, int bytes) {
+        if (outstandingBytes.addAndGet(bytes) <= maxConnectionMemory || memoryPaused) {
+            return;
+        }
+        memoryPaused = true;
+        ctx.channel().config().setAutoRead(false);
+        //设置memoryPaused之前业务线程可能已经把消息都处理完了，它们看不到暂停状态，这里再检查一次
+        resumeIfDrained(ctx);
+    }
+
+    /**
+     * 在业务线程上调用，回落到上限的一半以下时回到IO线程恢复读取
+     */
+    private void release(ChannelHandlerContext ctx, int bytes) {
+        if (outstandingBytes.addAndGet(-bytes) <= maxConnectionMemory / 2 && memoryPaused) {
+            ctx.executor().execute(() -> resumeIfDrained(ctx));
+        }
+    }
+
+    private void resumeIfDrained(ChannelHandlerContext ctx) {
+        if (memoryPaused && outstandingBytes.get() <= maxConnectionMemory / 2) {
+            memoryPaused = false;
+            //WorkerDispatcher也会按全局队列深度关闭autoRead，这里打开后如果全局队列仍然超过高水位，下一次派发会再关闭
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    private void handle(ChannelHandlerContext ctx, MessageRecord messageRecord) {
+        try {
+            if (log.isDebugEnabled() && LOG_SAMPLER.sample()) {
+                log.debug("server receive message: {}", messageRecord);
+            }
+            MessageRecord res = new MessageRecord();
+            Header header = new Header();
+            header.setSessionId(messageRecord.getHeader().getSessionId());
+            header.setType(OpCode.BUSI_RESP.code());
+            String message = "Server Response Message!";
+            res.setHeader(header);
+            res.setBody(message);
+            header.setLength(message.length());
+            ctx.writeAndFlush(res);
+        } finally {
+            //body可能是引用计数的ByteBuf，处理完需要释放
+            ReferenceCountUtil.release(messageRecord);
+        }
+    }
+
+    /**
+     * 解码器跳过了一条无法解码的请求，连接继续使用，客户端的这个请求等待超时
+     */
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof SkippedMessageEvent) {
+            if (LOG_SAMPLER.sample()) {
+                log.warn("忽略无法解码的请求：{}", evt);
+            }
+            return;
+        }
+        super.userEventTriggered(ctx, evt);
     }
 
     @Override
@@ -30,4 +153,4 @@ public class ServerHandler extends ChannelInboundHandlerAdapter {
         super.exceptionCaught(ctx, cause);
         ctx.close();
     }
-}
\ No newline at end of file
+}
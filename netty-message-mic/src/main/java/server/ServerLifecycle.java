@@ -0,0 +1,127 @@
+package server;
+
+import io.netty.channel.Channel;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务端的生命周期：启动、排空、停止
+ * <p>
+ * 排空按下面的顺序进行：
+ * <ol>
+ *     <li>关闭所有监听socket，不再接受新连接</li>
+ *     <li>向每个连接发送GOAWAY，告诉客户端已经接收的最大sessionId，客户端之后的请求改发到其他连接</li>
+ *     <li>等待每个连接上已经接收的请求都写完响应、流都结束后关闭连接</li>
+ *     <li>到达截止时间还没有关闭的连接被强制关闭</li>
+ * </ol>
+ * 热重启依赖SO_REUSEPORT：新进程在旧进程还在运行时绑定同一个端口，内核在两个进程的监听socket之间分发新连接；
+ * 之后向旧进程发送SIGTERM，旧进程关闭监听socket后新连接只会进入新进程，已有连接收到GOAWAY后重连到新进程。
+ * 旧进程关闭监听socket时，还在它的accept队列里、没有被accept的连接会被内核重置，
+ * 监听线程持续accept的情况下这个窗口很小，客户端按连接失败重试即可。
+ */
+@Slf4j
+public class ServerLifecycle {
+
+    public enum State {
+        STARTING, RUNNING, DRAINING, STOPPED
+    }
+
+    private static final long WAIT_INTERVAL_MILLIS = 100;
+
+    private final ChannelGroup channels = new DefaultChannelGroup("mic-connections", GlobalEventExecutor.INSTANCE);
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile State state = State.STARTING;
+    private volatile List<Channel> listeners = Collections.emptyList();
+
+    /**
+     * 监听socket绑定完成
+     */
+    synchronized void started(List<Channel> listeners) {
+        if (state == State.STARTING) {
+            this.listeners = new ArrayList<>(listeners);
+            state = State.RUNNING;
+        } else {
+            //启动过程中已经要求关闭
+            for (Channel listener : listeners) {
+                listener.close();
+            }
+        }
+    }
+
+    /**
+     * 登记新连接，连接关闭后自动移除
+     */
+    void register(Channel channel) {
+        channels.add(channel);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isDraining() {
+        return state == State.DRAINING;
+    }
+
+    /**
+     * 当前的连接数
+     */
+    public int getConnectionCount() {
+        return channels.size();
+    }
+
+    /**
+     * 排空并停止服务，阻塞到所有连接关闭。重复调用直接返回
+     *
+     * @return 所有连接都在截止时间前处理完在途请求返回true，有连接被强制关闭返回false
+     */
+    public boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        synchronized (this) {
+            if (state == State.DRAINING || state == State.STOPPED) {
+                return true;
+            }
+            state = State.DRAINING;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Channel listener : listeners) {
+            listener.close().awaitUninterruptibly();
+        }
+        int total = channels.size();
+        log.info("stop accepting, draining " + total + " connections, timeout=" + unit.toMillis(timeout) + "ms");
+        //在这之后完成注册的连接由DrainHandler.channelActive自己发送GOAWAY
+        for (Channel channel : channels) {
+            DrainHandler handler = channel.pipeline().get(DrainHandler.class);
+            if (handler != null) {
+                handler.goAway();
+            }
+        }
+        long remaining;
+        while (!channels.isEmpty() && (remaining = deadline - System.nanoTime()) > 0) {
+            channels.newCloseFuture().await(Math.min(TimeUnit.NANOSECONDS.toMillis(remaining) + 1, WAIT_INTERVAL_MILLIS));
+        }
+        boolean clean = channels.isEmpty();
+        if (!clean) {
+            log.warn(channels.size() + " connections still busy after " + unit.toMillis(timeout) + "ms, closing them");
+            channels.close().awaitUninterruptibly();
+        }
+        log.info("drained " + total + " connections, clean=" + clean);
+        state = State.STOPPED;
+        stopped.countDown();
+        return clean;
+    }
+
+    /**
+     * 阻塞到排空完成
+     */
+    public void awaitStopped() throws InterruptedException {
+        stopped.await();
+    }
+}
@@ -0,0 +1,104 @@
+package server;
+
+import io.netty.channel.Channel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把解码后的消息从IO线程派发到业务线程执行
+ * <p>
+ * 业务线程分成若干条单线程的lane，同一个sessionId总是落在同一条lane上，保证同一会话内的消息按顺序处理。
+ * 所有lane上排队的任务数超过高水位时，关闭提交任务的channel的autoRead，不再从socket读取新的请求，
+ * 由TCP流控把压力传回客户端；任务数回落到低水位以下时恢复读取。
+ */
+@Slf4j
+public class WorkerDispatcher {
+
+    private final ExecutorService[] lanes;
+    private final int highWaterMark;
+    private final int lowWaterMark;
+    private final DispatchStats stats = new DispatchStats();
+    private final Set<Channel> pausedChannels = ConcurrentHashMap.newKeySet();
+
+    public WorkerDispatcher(int threads, int highWaterMark, int lowWaterMark) {
+        if (lowWaterMark > highWaterMark) {
+            throw new IllegalArgumentException("lowWaterMark不能大于highWaterMark");
+        }
+        this.highWaterMark = highWaterMark;
+        this.lowWaterMark = lowWaterMark;
+        this.lanes = new ExecutorService[threads];
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory("mic-business");
+        for (int i = 0; i < threads; i++) {
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), threadFactory);
+        }
+    }
+
+    /**
+     * 在sessionId对应的lane上执行任务，由IO线程调用
+     *
+     * @return 业务线程已经关闭、任务没有提交时返回false，调用方负责释放任务持有的消息
+     */
+    public boolean dispatch(Channel channel, long sessionId, Runnable task) {
+        int depth = stats.enqueued();
+        if (depth >= highWaterMark && channel.config().isAutoRead()) {
+            channel.config().setAutoRead(false);
+            pausedChannels.add(channel);
+            stats.readPaused();
+        }
+        long enqueueTime = System.nanoTime();
+        try {
+            lanes[laneOf(sessionId)].execute(() -> {
+                long startTime = System.nanoTime();
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    log.error("业务处理异常", e);
+                } finally {
+                    long endTime = System.nanoTime();
+                    int remaining = stats.completed(startTime - enqueueTime, endTime - startTime);
+                    if (remaining <= lowWaterMark && !pausedChannels.isEmpty()) {
+                        resumeReads();
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            //服务端关闭时业务线程先于IO线程停止，IO线程的静默期内仍可能读到请求
+            stats.rejected();
+            return false;
+        }
+    }
+
+    public DispatchStats getStats() {
+        return stats;
+    }
+
+    public void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    private void resumeReads() {
+        for (Channel channel : pausedChannels) {
+            if (pausedChannels.remove(channel)) {
+                channel.config().setAutoRead(true);
+            }
+        }
+    }
+
+    private int laneOf(long sessionId) {
+        //打散连续的sessionId
+        long h = sessionId * 0x9E3779B97F4A7C15L;
+        return (int) ((h >>> 32) % lanes.length);
+    }
+}
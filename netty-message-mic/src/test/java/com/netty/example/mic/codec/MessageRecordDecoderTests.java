@@ -0,0 +1,176 @@
+package com.netty.example.mic.codec;
+
+import com.netty.example.mic.codec.body.BodyCodecRegistry;
+import com.netty.example.mic.codec.body.Utf8StringCodec;
+import com.netty.example.mic.codec.compress.Compression;
+import com.netty.example.mic.proto.MessageRecord;
+import com.netty.example.mic.proto.ProtocolConstants;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageRecordDecoderTests {
+
+    private static final byte UNKNOWN_CODEC = 99;
+    private static final byte UNKNOWN_COMPRESSION = 0x03;
+
+    @Test
+    void partialHeaderAndBody() {
+        EmbeddedChannel channel = new EmbeddedChannel(new MessageRecordDecoder());
+        ByteBuf in = frame(1, Utf8StringCodec.ID, 0, "hello mic");
+        while (in.readableBytes() > 1) {
+            assertFalse(channel.writeInbound(in.readRetainedSlice(1)));
+        }
+        assertTrue(channel.writeInbound(in.readRetainedSlice(1)));
+        in.release();
+        assertMessage(1, "hello mic", channel.readInbound());
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void largeBodyAccumulatedInPieces() {
+        DecoderLimits limits = new DecoderLimits();
+        limits.setCompositeThreshold(16);
+        EmbeddedChannel channel = new EmbeddedChannel(new MessageRecordDecoder(BodyCodecRegistry.DEFAULT, limits));
+        String body = repeat('b', 1000);
+        ByteBuf in = Unpooled.wrappedBuffer(frame(2, Utf8StringCodec.ID, 0, body), frame(3, Utf8StringCodec.ID, 0, "after"));
+        while (in.isReadable()) {
+            channel.writeInbound(in.readRetainedSlice(Math.min(97, in.readableBytes())));
+        }
+        in.release();
+        assertMessage(2, body, channel.readInbound());
+        assertMessage(3, "after", channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void emptyBodyWithoutCodec() {
+        EmbeddedChannel channel = new EmbeddedChannel(new MessageRecordDecoder());
+        ByteBuf in = header(4, BodyCodecRegistry.NONE, 0, 0);
+        assertTrue(channel.writeInbound(in));
+        MessageRecord record = channel.readInbound();
+        assertEquals(4L, record.getHeader().getSessionId());
+        assertNull(record.getBody());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void oversizeLengthClosesBeforeBodyArrives() {
+        DecoderLimits limits = new DecoderLimits();
+        limits.setMaxBodyLength(100);
+        EmbeddedChannel channel = new EmbeddedChannel(new MessageRecordDecoder(BodyCodecRegistry.DEFAULT, limits));
+        assertThrows(TooLongFrameException.class,
+                () -> channel.writeInbound(header(5, Utf8StringCodec.ID, 0, 101)));
+        assertFalse(channel.isOpen());
+        assertNull(channel.readInbound());
+    }
+
+    @Test
+    void negativeLengthCloses() {
+        EmbeddedChannel channel = new EmbeddedChannel(new MessageRecordDecoder());
+        assertThrows(TooLongFrameException.class,
+                () -> channel.writeInbound(header(6, Utf8StringCodec.ID, 0, -1)));
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    void unknownCodecAndCompressionAreSkipped() {
+        EventRecorder events = new EventRecorder();
+        EmbeddedChannel channel = new EmbeddedChannel(new MessageRecordDecoder(), events);
+        ByteBuf in = Unpooled.wrappedBuffer(
+                frame(7, UNKNOWN_CODEC, 0, repeat('x', 50)),
+                frame(8, Utf8StringCodec.ID, UNKNOWN_COMPRESSION, repeat('y', 50)),
+                frame(9, Utf8StringCodec.ID, 0, "kept"));
+        //跳过的消息体分多次到达
+        while (in.isReadable()) {
+            channel.writeInbound(in.readRetainedSlice(Math.min(20, in.readableBytes())));
+        }
+        in.release();
+
+        assertEquals(2, events.skipped.size());
+        assertEquals(7L, events.skipped.get(0).getHeader().getSessionId());
+        assertEquals(8L, events.skipped.get(1).getHeader().getSessionId());
+        assertMessage(9, "kept", channel.readInbound());
+        assertNull(channel.readInbound());
+        assertTrue(channel.isOpen());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void failedBodyDecodeResetsToHeader() {
+        DecoderLimits limits = new DecoderLimits();
+        limits.setMaxDecompressedLength(10);
+        EmbeddedChannel channel = new EmbeddedChannel(new MessageRecordDecoder(BodyCodecRegistry.DEFAULT, limits));
+        //压缩消息体声明的解压长度超过上限
+        ByteBuf compressed = Unpooled.buffer().writeInt(11).writeBytes(new byte[8]);
+        ByteBuf bad = header(10, Utf8StringCodec.ID, Compression.LZ4.flag(), compressed.readableBytes());
+        ByteBuf in = Unpooled.wrappedBuffer(bad, compressed, frame(11, Utf8StringCodec.ID, 0, "next"));
+        assertThrows(TooLongFrameException.class, () -> channel.writeInbound(in));
+        assertNull(channel.readInbound());
+
+        //后面的数据按新的消息头解析
+        channel.writeInbound(frame(12, Utf8StringCodec.ID, 0, "again"));
+        assertMessage(11, "next", channel.readInbound());
+        assertMessage(12, "again", channel.readInbound());
+        assertTrue(channel.isOpen());
+        assertFalse(channel.finish());
+    }
+
+    private static ByteBuf header(long sessionId, byte codec, int flags, int length) {
+        return Unpooled.buffer(ProtocolConstants.HEADER_LENGTH)
+                .writeLong(sessionId)
+                .writeByte(1)
+                .writeByte(codec)
+                .writeByte(flags)
+                .writeInt(length);
+    }
+
+    private static ByteBuf frame(long sessionId, byte codec, int flags, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        return header(sessionId, codec, flags, bytes.length).writeBytes(bytes);
+    }
+
+    private static String repeat(char c, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static void assertMessage(long sessionId, String body, MessageRecord record) {
+        try {
+            assertEquals(sessionId, record.getHeader().getSessionId());
+            assertEquals(body, record.getBody());
+        } finally {
+            ReferenceCountUtil.release(record);
+        }
+    }
+
+    private static class EventRecorder extends ChannelInboundHandlerAdapter {
+        private final List<SkippedMessageEvent> skipped = new ArrayList<>();
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) {
+            if (evt instanceof SkippedMessageEvent) {
+                skipped.add((SkippedMessageEvent) evt);
+            }
+        }
+    }
+}
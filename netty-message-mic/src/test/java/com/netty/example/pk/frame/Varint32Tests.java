@@ -0,0 +1,97 @@
+package com.netty.example.pk.frame;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class Varint32Tests {
+
+    /**
+     * 每种长度的最小值和最大值
+     */
+    private static final int[][] BOUNDARIES = {
+            {0, 1}, {127, 1},
+            {128, 2}, {16383, 2},
+            {16384, 3}, {2097151, 3},
+            {2097152, 4}, {268435455, 4},
+            {268435456, 5}, {Integer.MAX_VALUE, 5}
+    };
+
+    @Test
+    void sizeAndRoundTripAtBoundaries() {
+        for (int[] boundary : BOUNDARIES) {
+            int value = boundary[0];
+            int size = boundary[1];
+            assertEquals(size, Varint32.size(value), "size of " + value);
+            ByteBuf buf = Unpooled.buffer();
+            try {
+                //前面放一个无关的字节，检查index参数
+                buf.writeByte(0xAA);
+                Varint32.write(buf, value);
+                assertEquals(1 + size, buf.readableBytes(), "encoded size of " + value);
+                long result = Varint32.read(buf, 1, buf.writerIndex());
+                assertEquals(size, (int) (result >>> 32), "read size of " + value);
+                assertEquals(value, (int) result, "read value of " + value);
+                assertEquals(0, buf.readerIndex());
+            } finally {
+                buf.release();
+            }
+        }
+    }
+
+    @Test
+    void incompleteUntilLastByte() {
+        for (int[] boundary : BOUNDARIES) {
+            ByteBuf buf = Unpooled.buffer();
+            try {
+                Varint32.write(buf, boundary[0]);
+                for (int limit = 0; limit < boundary[1]; limit++) {
+                    assertEquals(Varint32.INCOMPLETE, Varint32.read(buf, 0, limit),
+                            boundary[0] + " limited to " + limit);
+                }
+            } finally {
+                buf.release();
+            }
+        }
+    }
+
+    @Test
+    void negativeValueIsMalformed() {
+        //负数写出5个字节，第5个字节用到了符号位
+        for (int value : new int[]{-1, Integer.MIN_VALUE, 0x80000000 | 5}) {
+            ByteBuf buf = Unpooled.buffer();
+            try {
+                Varint32.write(buf, value);
+                assertEquals(5, buf.readableBytes());
+                assertEquals(Varint32.MALFORMED, Varint32.read(buf, 0, buf.writerIndex()), "value " + value);
+            } finally {
+                buf.release();
+            }
+        }
+    }
+
+    @Test
+    void moreThanFiveBytesIsMalformed() {
+        assertMalformed(0xFF, 0xFF, 0xFF, 0xFF, 0x8F, 0x00);
+        assertMalformed(0x80, 0x80, 0x80, 0x80, 0x80);
+    }
+
+    @Test
+    void fifthByteHighBitsAreMalformed() {
+        assertMalformed(0x80, 0x80, 0x80, 0x80, 0x10);
+        assertMalformed(0x80, 0x80, 0x80, 0x80, 0x08);
+        ByteBuf buf = Unpooled.wrappedBuffer(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+        assertEquals(Integer.MAX_VALUE, (int) Varint32.read(buf, 0, buf.writerIndex()));
+    }
+
+    private static void assertMalformed(int... bytes) {
+        ByteBuf buf = Unpooled.buffer();
+        for (int b : bytes) {
+            buf.writeByte(b);
+        }
+        assertEquals(Varint32.MALFORMED, Varint32.read(buf, 0, buf.writerIndex()));
+        buf.release();
+    }
+}
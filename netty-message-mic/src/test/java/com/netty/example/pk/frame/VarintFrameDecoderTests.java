@@ -0,0 +1,143 @@
+package com.netty.example.pk.frame;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VarintFrameDecoderTests {
+
+    @Test
+    void frameSplitAcrossReads() {
+        EmbeddedChannel channel = new EmbeddedChannel(new VarintFrameDecoder());
+        ByteBuf frame = frame(new FrameConfig(), repeat('a', 300));
+        //300字节的长度字段占2个字节，逐字节到达时长度字段也被拆开
+        while (frame.readableBytes() > 1) {
+            assertFalse(channel.writeInbound(frame.readRetainedSlice(1)));
+        }
+        assertTrue(channel.writeInbound(frame.readRetainedSlice(1)));
+        frame.release();
+        assertFrame(repeat('a', 300), channel.readInbound());
+        assertNull(channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void severalFramesInOneRead() {
+        EmbeddedChannel channel = new EmbeddedChannel(new VarintFrameDecoder());
+        FrameConfig config = new FrameConfig();
+        ByteBuf in = Unpooled.wrappedBuffer(frame(config, "one"), frame(config, ""), frame(config, "three"));
+        assertTrue(channel.writeInbound(in));
+        assertFrame("one", channel.readInbound());
+        assertFrame("", channel.readInbound());
+        assertFrame("three", channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void crcMismatchDropsOnlyThatFrame() {
+        ExceptionRecorder recorder = new ExceptionRecorder();
+        EmbeddedChannel channel = new EmbeddedChannel(new VarintFrameDecoder(), recorder);
+        FrameConfig config = new FrameConfig();
+        ByteBuf corrupted = frame(config, "corrupted");
+        //改动内容的一个字节，长度和校验和不变
+        corrupted.setByte(3, corrupted.getByte(3) ^ 0x01);
+        assertTrue(channel.writeInbound(Unpooled.wrappedBuffer(corrupted, frame(config, "valid"))));
+
+        assertEquals(1, recorder.causes.size());
+        assertTrue(recorder.causes.get(0) instanceof CorruptedFrameException);
+        assertFrame("valid", channel.readInbound());
+        assertNull(channel.readInbound());
+        assertTrue(channel.isOpen());
+
+        assertTrue(channel.writeInbound(frame(config, "next")));
+        assertFrame("next", channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void withoutChecksum() {
+        FrameConfig config = new FrameConfig();
+        config.setChecksum(false);
+        EmbeddedChannel channel = new EmbeddedChannel(new VarintFrameDecoder(config));
+        ByteBuf frame = frame(config, "plain");
+        assertEquals(1 + 5, frame.readableBytes());
+        assertTrue(channel.writeInbound(frame));
+        assertFrame("plain", channel.readInbound());
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void tooLongFrameClosesBeforeBodyArrives() {
+        FrameConfig config = new FrameConfig();
+        config.setMaxFrameLength(100);
+        EmbeddedChannel channel = new EmbeddedChannel(new VarintFrameDecoder(config));
+        ByteBuf in = Unpooled.buffer();
+        Varint32.write(in, 101);
+        in.writeBytes(new byte[10]);
+        assertThrows(TooLongFrameException.class, () -> channel.writeInbound(in));
+        assertFalse(channel.isOpen());
+        assertNull(channel.readInbound());
+    }
+
+    @Test
+    void malformedLengthCloses() {
+        EmbeddedChannel channel = new EmbeddedChannel(new VarintFrameDecoder());
+        ByteBuf in = Unpooled.buffer();
+        Varint32.write(in, -1);
+        in.writeBytes(new byte[10]);
+        assertThrows(CorruptedFrameException.class, () -> channel.writeInbound(in));
+        assertFalse(channel.isOpen());
+        assertNull(channel.readInbound());
+    }
+
+    static ByteBuf frame(FrameConfig config, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        ByteBuf frame = Unpooled.buffer();
+        Varint32.write(frame, bytes.length);
+        frame.writeBytes(bytes);
+        if (config.isChecksum()) {
+            frame.writeInt(Crc32c.compute(Unpooled.wrappedBuffer(bytes), 0, bytes.length));
+        }
+        return frame;
+    }
+
+    static String repeat(char c, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    static void assertFrame(String expected, ByteBuf actual) {
+        try {
+            assertEquals(expected, actual.toString(StandardCharsets.UTF_8));
+        } finally {
+            actual.release();
+        }
+    }
+
+    private static class ExceptionRecorder extends ChannelInboundHandlerAdapter {
+        private final List<Throwable> causes = new ArrayList<>();
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            causes.add(cause);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.netty.example.pk.frame;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static com.netty.example.pk.frame.VarintFrameDecoderTests.assertFrame;
+import static com.netty.example.pk.frame.VarintFrameDecoderTests.frame;
+import static com.netty.example.pk.frame.VarintFrameDecoderTests.repeat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VarintFrameEncoderTests {
+
+    @Test
+    void smallFrameIsCopiedIntoOneBuffer() {
+        FrameConfig config = new FrameConfig();
+        String content = repeat('s', config.getCopyThreshold());
+        EmbeddedChannel channel = new EmbeddedChannel(new VarintFrameEncoder(config));
+        ByteBuf msg = Unpooled.copiedBuffer(content, StandardCharsets.UTF_8);
+        assertTrue(channel.writeOutbound(msg));
+        assertEquals(0, msg.refCnt());
+
+        ByteBuf out = channel.readOutbound();
+        assertNull(channel.readOutbound());
+        ByteBuf expected = frame(config, content);
+        try {
+            assertEquals(expected, out);
+        } finally {
+            out.release();
+            expected.release();
+        }
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void largeFrameIsNotCopied() {
+        FrameConfig config = new FrameConfig();
+        String content = repeat('l', config.getCopyThreshold() + 1);
+        EmbeddedChannel channel = new EmbeddedChannel(new VarintFrameEncoder(config));
+        ByteBuf msg = Unpooled.copiedBuffer(content, StandardCharsets.UTF_8);
+        assertTrue(channel.writeOutbound(msg));
+
+        ByteBuf head = channel.readOutbound();
+        ByteBuf body = channel.readOutbound();
+        ByteBuf crc = channel.readOutbound();
+        assertNull(channel.readOutbound());
+        assertEquals(Varint32.size(content.length()), head.readableBytes());
+        //内容是原来的缓冲区，只是多了一次retain交给channel
+        assertSame(msg, body);
+        assertEquals(1, msg.refCnt());
+        assertEquals(4, crc.readableBytes());
+
+        assertRoundTrip(config, content, Unpooled.wrappedBuffer(head, body, crc));
+        assertFalse(channel.finish());
+    }
+
+    @Test
+    void largeFrameWithoutChecksumHasNoTrailer() {
+        FrameConfig config = new FrameConfig();
+        config.setChecksum(false);
+        config.setCopyThreshold(0);
+        EmbeddedChannel channel = new EmbeddedChannel(new VarintFrameEncoder(config));
+        assertTrue(channel.writeOutbound(Unpooled.copiedBuffer("x", StandardCharsets.UTF_8)));
+
+        ByteBuf head = channel.readOutbound();
+        ByteBuf body = channel.readOutbound();
+        assertNull(channel.readOutbound());
+        assertRoundTrip(config, "x", Unpooled.wrappedBuffer(head, body));
+        assertFalse(channel.finish());
+    }
+
+    private static void assertRoundTrip(FrameConfig config, String content, ByteBuf encoded) {
+        EmbeddedChannel decoder = new EmbeddedChannel(new VarintFrameDecoder(config));
+        assertTrue(decoder.writeInbound(encoded));
+        assertFrame(content, decoder.readInbound());
+        assertFalse(decoder.finish());
+    }
+}